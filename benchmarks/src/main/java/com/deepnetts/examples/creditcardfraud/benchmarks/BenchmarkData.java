@@ -0,0 +1,97 @@
+package com.deepnetts.examples.creditcardfraud.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Data files used by benchmarks.
+ *
+ * "balanced" is creditcard-balanced.csv from the project root, its location can be set with -Dccfd.balanced=path.
+ * "synthetic" is a generated file with the same columns and size as the full creditcard.csv (284,807 rows, 0.172% frauds),
+ * which is created once per JVM in the temp directory.
+ */
+public final class BenchmarkData {
+
+    public static final String BALANCED = "balanced";
+    public static final String SYNTHETIC = "synthetic";
+
+    public static final int NUM_INPUTS = 29;
+    public static final int NUM_OUTPUTS = 1;
+    public static final int FULL_DATASET_ROWS = 284_807;
+    public static final double FULL_DATASET_FRAUD_RATE = 492.0 / 284_807;
+
+    private static Path syntheticFile;
+
+    private BenchmarkData() { }
+
+    /**
+     * Returns path of the csv file for the given data set name.
+     */
+    public static synchronized String csvFile(String dataSet) {
+        if (BALANCED.equals(dataSet)) {
+            return balancedFile().toString();
+        } else if (SYNTHETIC.equals(dataSet)) {
+            if (syntheticFile == null) {
+                try {
+                    syntheticFile = Files.createTempFile("creditcard-synthetic", ".csv");
+                    syntheticFile.toFile().deleteOnExit();
+                    generate(syntheticFile, FULL_DATASET_ROWS, FULL_DATASET_FRAUD_RATE, 42);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+            return syntheticFile.toString();
+        }
+        throw new IllegalArgumentException("Unknown data set: " + dataSet);
+    }
+
+    private static Path balancedFile() {
+        String configured = System.getProperty("ccfd.balanced");
+        if (configured != null) {
+            return Paths.get(configured);
+        }
+        for (String candidate : new String[]{"creditcard-balanced.csv", "../creditcard-balanced.csv"}) {
+            Path path = Paths.get(candidate);
+            if (Files.exists(path)) {
+                return path;
+            }
+        }
+        throw new IllegalStateException("creditcard-balanced.csv not found, specify its location with -Dccfd.balanced=path");
+    }
+
+    /**
+     * Writes csv file with V1-V28, Amount and Class columns, like creditcard-balanced.csv.
+     * Features are normally distributed and shifted for fraud rows, amount is exponentially distributed.
+     */
+    public static void generate(Path file, int rows, double fraudRate, long seed) throws IOException {
+        Random random = new Random(seed);
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            StringBuilder line = new StringBuilder(512);
+            for (int i = 1; i <= 28; i++) {
+                line.append('V').append(i).append(',');
+            }
+            line.append("Amount,Class");
+            out.write(line.toString());
+            out.newLine();
+
+            for (int r = 0; r < rows; r++) {
+                boolean fraud = random.nextDouble() < fraudRate;
+                line.setLength(0);
+                for (int i = 0; i < 28; i++) {
+                    double value = random.nextGaussian() + (fraud ? 1.5 : 0);
+                    line.append(Math.round(value * 1e9) / 1e9).append(',');
+                }
+                double amount = -Math.log(1 - random.nextDouble()) * 88;
+                line.append(Math.round(amount * 100) / 100.0).append(',');
+                line.append(fraud ? 1 : 0);
+                out.write(line.toString());
+                out.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.deepnetts.examples.creditcardfraud.benchmarks;
+
+import com.deepnetts.examples.creditcardfraud.ColumnChunk;
+import com.deepnetts.examples.creditcardfraud.MappedCsvReader;
+import deepnetts.data.DataSets;
+import deepnetts.data.TabularDataSet;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.io.csv.CsvReadOptions;
+
+/**
+ * Loading csv file with Deep Netts, Tablesaw and memory mapped reader.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvLoadBenchmark {
+
+    @Param({BenchmarkData.BALANCED, BenchmarkData.SYNTHETIC})
+    public String dataSet;
+
+    private String csvFile;
+
+    @Setup
+    public void setup() {
+        csvFile = BenchmarkData.csvFile(dataSet);
+    }
+
+    @Benchmark
+    public TabularDataSet<?> deepNettsReadCsv() throws IOException {
+        return DataSets.readCsv(csvFile, BenchmarkData.NUM_INPUTS, BenchmarkData.NUM_OUTPUTS, true);
+    }
+
+    @Benchmark
+    public Table tablesawRead() {
+        CsvReadOptions options = CsvReadOptions.builder(csvFile)
+                .header(true)
+                .sample(false)
+                .missingValueIndicator("NaN", "", " ", "-", "nan", "NULL")
+                .build();
+        return Table.read().usingOptions(options);
+    }
+
+    @Benchmark
+    public ColumnChunk mappedReadAll() throws IOException {
+        try (MappedCsvReader reader = new MappedCsvReader(csvFile)) {
+            return reader.readAll();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.deepnetts.examples.creditcardfraud.benchmarks;
+
+import com.deepnetts.examples.creditcardfraud.ColumnarDataSetBuilder;
+import com.deepnetts.examples.creditcardfraud.DataPreparation;
+import deepnetts.data.DataSets;
+import deepnetts.data.MLDataItem;
+import deepnetts.data.TabularDataSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.tablesaw.api.Row;
+import tech.tablesaw.api.Table;
+
+/**
+ * Data preparation steps: conversion of table to data set, balanced sampling and scaling.
+ * Columnar conversion is compared with per Row conversion which was used before {@link ColumnarDataSetBuilder},
+ * run with -prof gc to compare allocated bytes per operation as well as time.
+ * Reading all inputs once, as in a training epoch, compares items of both data sets after their tensors were created.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataPreparationBenchmark {
+
+    @Param({BenchmarkData.BALANCED, BenchmarkData.SYNTHETIC})
+    public String dataSet;
+
+    private Table table;
+    private TabularDataSet<MLDataItem> unscaled;
+    private TabularDataSet<MLDataItem> perRowDataSet;
+    private TabularDataSet<MLDataItem> columnarDataSet;
+
+    @Setup
+    public void loadTable() {
+        table = new DataPreparation(BenchmarkData.csvFile(dataSet)).getData();
+        perRowDataSet = createDataSetPerRow();
+        columnarDataSet = DataPreparation.createDataSet(table);
+    }
+
+    /**
+     * Scaling changes data set in place, so each invocation gets a new copy.
+     */
+    @Setup(Level.Invocation)
+    public void createUnscaled() {
+        unscaled = DataPreparation.createDataSet(table);
+    }
+
+    @Benchmark
+    public TabularDataSet<MLDataItem> createDataSet() {
+        return DataPreparation.createDataSet(table);
+    }
+
+    /**
+     * Conversion used before ColumnarDataSetBuilder: Row object, input and target arrays and data set item for every row.
+     */
+    @Benchmark
+    public TabularDataSet<MLDataItem> createDataSetPerRow() {
+        int numInputs = table.columnCount() - 1;
+        TabularDataSet<MLDataItem> perRow = new TabularDataSet<>(numInputs, 1);
+        perRow.setColumnNames(table.columnNames().toArray(new String[0]));
+        for (int i = 0; i < table.rowCount(); i++) {
+            Row row = table.row(i);
+            float[] in = new float[numInputs];
+            for (int c = 0; c < numInputs; c++) {
+                in[c] = (float) row.getDouble(c);
+            }
+            float[] targetOut = new float[1];
+            targetOut[0] = row.getInt(numInputs);
+            perRow.add(new TabularDataSet.Item(in, targetOut));
+        }
+        return perRow;
+    }
+
+    @Benchmark
+    public double readInputsColumnar() {
+        return sumInputs(columnarDataSet);
+    }
+
+    @Benchmark
+    public double readInputsPerRow() {
+        return sumInputs(perRowDataSet);
+    }
+
+    private static double sumInputs(TabularDataSet<MLDataItem> items) {
+        double sum = 0;
+        for (MLDataItem item : items) {
+            for (float value : item.getInput().getValues()) {
+                sum += value;
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public Table createBalancedSample() {
+        return DataPreparation.createBalancedSample(table, "Class", 1);
+    }
+
+    @Benchmark
+    public TabularDataSet<MLDataItem> scaleToMax() {
+        DataSets.scaleToMax(unscaled);
+        return unscaled;
+    }
+}
@@ -0,0 +1,77 @@
+package com.deepnetts.examples.creditcardfraud.benchmarks;
+
+import com.deepnetts.examples.creditcardfraud.ColumnChunk;
+import com.deepnetts.examples.creditcardfraud.DriftMonitor;
+import com.deepnetts.examples.creditcardfraud.MappedCsvReader;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost which drift monitor adds to each scored transaction, when all transactions are recorded and when they are sampled.
+ * Runs with several threads, so time includes contention for stripes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class DriftMonitorBenchmark {
+
+    @Param({"1", "8"})
+    public int sampleEvery;
+
+    private DriftMonitor monitor;
+    private float[][] transactions;
+    private float[] scores;
+
+    @State(Scope.Thread)
+    public static class Position {
+        int row;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        ColumnChunk data;
+        try (MappedCsvReader csvReader = new MappedCsvReader(Paths.get(BenchmarkData.csvFile(BenchmarkData.BALANCED)), ',', true)) {
+            data = csvReader.readAll();
+        }
+        String[] names = Arrays.copyOf(data.getColumnNames(), BenchmarkData.NUM_INPUTS);
+        float[][] columns = new float[names.length][];
+        for (int c = 0; c < names.length; c++) {
+            columns[c] = data.column(names[c]);
+        }
+        int rows = data.getRowCount();
+        scores = data.column("Class");
+        monitor = DriftMonitor.fit(names, columns, rows, scores, DriftMonitor.DEFAULT_BINS).sampleEvery(sampleEvery);
+
+        transactions = new float[rows][names.length];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < names.length; c++) {
+                transactions[r][c] = columns[c][r];
+            }
+        }
+    }
+
+    @Benchmark
+    public void record(Position position) {
+        int row = position.row;
+        monitor.record(transactions[row], scores[row]);
+        position.row = row + 1 == transactions.length ? 0 : row + 1;
+    }
+}
@@ -0,0 +1,109 @@
+package com.deepnetts.examples.creditcardfraud.benchmarks;
+
+import com.deepnetts.examples.creditcardfraud.DenseInferenceEngine;
+import com.deepnetts.examples.creditcardfraud.FeedForwardNetBatchClassifier;
+import deepnetts.data.DataSets;
+import deepnetts.data.TabularDataSet;
+import deepnetts.net.FeedForwardNetwork;
+import deepnetts.net.layers.activation.ActivationType;
+import deepnetts.net.loss.LossType;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.visrec.ri.ml.classification.FeedForwardNetBinaryClassifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Scoring transactions one by one with FeedForwardNetBinaryClassifier versus scoring them as a batch,
+ * and batch scoring with DenseInferenceEngine using float and int8 weights. Scores are reported per transaction.
+ * Benchmark JVM is started with Vector API module. Parity of engine results with the classifier is checked by DenseInferenceEngineTest.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class InferenceBenchmark {
+
+    static final int BATCH_SIZE = 1000;
+
+    @Param({"32", "80"})
+    public int hiddenUnits;
+
+    private FeedForwardNetBinaryClassifier classifier;
+    private FeedForwardNetBatchClassifier batchClassifier;
+    private DenseInferenceEngine engine;
+    private DenseInferenceEngine int8Engine;
+    private float[][] transactions;
+    private float[] flatTransactions;
+    private float[] probabilities;
+
+    @Setup
+    public void setup() throws IOException {
+        TabularDataSet<?> dataSet = DataSets.readCsv(BenchmarkData.csvFile(BenchmarkData.BALANCED), BenchmarkData.NUM_INPUTS, BenchmarkData.NUM_OUTPUTS, true);
+        DataSets.scaleToMax(dataSet);
+
+        FeedForwardNetwork neuralNet = FeedForwardNetwork.builder()
+                .addInputLayer(BenchmarkData.NUM_INPUTS)
+                .addFullyConnectedLayer(hiddenUnits, ActivationType.TANH)
+                .addOutputLayer(BenchmarkData.NUM_OUTPUTS, ActivationType.SIGMOID)
+                .lossFunction(LossType.CROSS_ENTROPY)
+                .randomSeed(123)
+                .build();
+
+        classifier = new FeedForwardNetBinaryClassifier(neuralNet);
+        batchClassifier = new FeedForwardNetBatchClassifier(neuralNet);
+
+        transactions = new float[BATCH_SIZE][];
+        flatTransactions = new float[BATCH_SIZE * BenchmarkData.NUM_INPUTS];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            transactions[i] = dataSet.get(i % dataSet.size()).getInput().getValues().clone();
+            System.arraycopy(transactions[i], 0, flatTransactions, i * BenchmarkData.NUM_INPUTS, BenchmarkData.NUM_INPUTS);
+        }
+        probabilities = new float[BATCH_SIZE];
+
+        engine = DenseInferenceEngine.of(neuralNet);
+        int8Engine = DenseInferenceEngine.of(neuralNet, DenseInferenceEngine.Precision.INT8);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void classifySingle(Blackhole bh) {
+        for (float[] transaction : transactions) {
+            bh.consume(classifier.classify(transaction));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public float[] classifyBatch() {
+        batchClassifier.classifyBatch(flatTransactions, BATCH_SIZE, probabilities);
+        return probabilities;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public float[] engineBatch() {
+        engine.classifyBatch(flatTransactions, BATCH_SIZE, probabilities);
+        return probabilities;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public float[] engineBatchInt8() {
+        int8Engine.classifyBatch(flatTransactions, BATCH_SIZE, probabilities);
+        return probabilities;
+    }
+}
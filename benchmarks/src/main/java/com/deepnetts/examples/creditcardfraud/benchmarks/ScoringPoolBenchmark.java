@@ -0,0 +1,90 @@
+package com.deepnetts.examples.creditcardfraud.benchmarks;
+
+import com.deepnetts.examples.creditcardfraud.FeedForwardNetBatchClassifier;
+import com.deepnetts.examples.creditcardfraud.ScoringPool;
+import deepnetts.data.DataSets;
+import deepnetts.data.TabularDataSet;
+import deepnetts.net.FeedForwardNetwork;
+import deepnetts.net.layers.activation.ActivationType;
+import deepnetts.net.loss.LossType;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Batch scoring with ScoringPool for different numbers of worker threads, compared with a single batch classifier.
+ * Throughput should grow close to linearly with threads up to the number of cores. ScoringPoolTest checks that pool results
+ * are exactly the same as results of the single classifier.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScoringPoolBenchmark {
+
+    static final int BATCH_SIZE = 100_000;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private FeedForwardNetBatchClassifier classifier;
+    private ScoringPool pool;
+    private float[] batch;
+    private float[] probabilities;
+
+    @Setup
+    public void setup() throws IOException {
+        TabularDataSet<?> dataSet = DataSets.readCsv(BenchmarkData.csvFile(BenchmarkData.BALANCED), BenchmarkData.NUM_INPUTS, BenchmarkData.NUM_OUTPUTS, true);
+        DataSets.scaleToMax(dataSet);
+
+        FeedForwardNetwork neuralNet = FeedForwardNetwork.builder()
+                .addInputLayer(BenchmarkData.NUM_INPUTS)
+                .addFullyConnectedLayer(80, ActivationType.TANH)
+                .addOutputLayer(BenchmarkData.NUM_OUTPUTS, ActivationType.SIGMOID)
+                .lossFunction(LossType.CROSS_ENTROPY)
+                .randomSeed(123)
+                .build();
+        classifier = new FeedForwardNetBatchClassifier(neuralNet);
+        pool = new ScoringPool(neuralNet, threads);
+
+        batch = new float[BATCH_SIZE * BenchmarkData.NUM_INPUTS];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            float[] inputs = dataSet.get(i % dataSet.size()).getInput().getValues();
+            System.arraycopy(inputs, 0, batch, i * BenchmarkData.NUM_INPUTS, BenchmarkData.NUM_INPUTS);
+        }
+        probabilities = new float[BATCH_SIZE];
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public float[] singleClassifier() {
+        classifier.classifyBatch(batch, BATCH_SIZE, probabilities);
+        return probabilities;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public float[] pool() {
+        pool.classifyBatch(batch, BATCH_SIZE, probabilities);
+        return probabilities;
+    }
+}
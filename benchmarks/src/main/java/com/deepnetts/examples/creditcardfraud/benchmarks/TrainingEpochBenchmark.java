@@ -0,0 +1,62 @@
+package com.deepnetts.examples.creditcardfraud.benchmarks;
+
+import deepnetts.data.DataSets;
+import deepnetts.data.TabularDataSet;
+import deepnetts.net.FeedForwardNetwork;
+import deepnetts.net.layers.activation.ActivationType;
+import deepnetts.net.loss.LossType;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One training epoch of the 29-80-1 network used in CreditCardFraudDetection.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrainingEpochBenchmark {
+
+    @Param({BenchmarkData.BALANCED, BenchmarkData.SYNTHETIC})
+    public String dataSet;
+
+    private TabularDataSet<?> trainingSet;
+    private FeedForwardNetwork neuralNet;
+
+    @Setup
+    public void setup() throws IOException {
+        trainingSet = DataSets.readCsv(BenchmarkData.csvFile(dataSet), BenchmarkData.NUM_INPUTS, BenchmarkData.NUM_OUTPUTS, true);
+        DataSets.scaleToMax(trainingSet);
+
+        neuralNet = FeedForwardNetwork.builder()
+                .addInputLayer(BenchmarkData.NUM_INPUTS)
+                .addFullyConnectedLayer(80, ActivationType.TANH)
+                .addOutputLayer(BenchmarkData.NUM_OUTPUTS, ActivationType.SIGMOID)
+                .lossFunction(LossType.CROSS_ENTROPY)
+                .randomSeed(123)
+                .build();
+
+        neuralNet.getTrainer().setStopError(0)
+                              .setStopEpochs(1)
+                              .setLearningRate(0.001f);
+    }
+
+    @Benchmark
+    public FeedForwardNetwork trainOneEpoch() {
+        neuralNet.train(trainingSet);
+        return neuralNet;
+    }
+}
@@ -0,0 +1,430 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import deepnetts.net.FeedForwardNetwork;
+import deepnetts.util.FileIO;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Scores all transactions in a CSV file of any size with a saved model, and writes scores or fraud flags to another CSV file,
+ * one line for each input row, in the same order.
+ *
+ * Job runs as a pipeline of threads connected by queues:
+ * <pre>
+ * reader (read and parse chunk of rows) -&gt; workers (preprocess and score chunk as one batch) -&gt; writer (write chunks in input order)
+ * </pre>
+ * Reader parses memory mapped file directly into float columns with {@link MappedCsvReader}, so reading and parsing are one stage.
+ * Workers score chunks in parallel with a shared {@link DenseInferenceEngine}, so chunks may be completed out of order,
+ * and writer keeps completed chunks until all chunks before them have been written.
+ *
+ * Number of chunks in the pipeline is limited: reader has to take a permit before it reads a chunk, and writer returns it when the
+ * chunk has been written. When scoring or writing is slower than reading, reader waits, so memory used by the job depends only on
+ * chunk size and number of workers, not on the size of the file.
+ *
+ * Usage: BatchScoringJob [model file] [input csv file] [output csv file] [threshold]
+ */
+public class BatchScoringJob {
+
+    public static final int DEFAULT_CHUNK_ROWS = 8192;
+
+    public enum Output { SCORES, FLAGS, SCORES_AND_FLAGS }
+
+    private final DenseInferenceEngine engine;
+    private final PreprocessingPipeline pipeline;
+    private int chunkRows = DEFAULT_CHUNK_ROWS;
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private int maxChunks = 0;
+    private Output output = Output.SCORES;
+    private float threshold = 0.5f;
+    private VelocityFeatures velocity;
+    private long progressMillis = 0;
+
+    /**
+     * Creates job which reads raw transactions and applies the given preprocessing before scoring.
+     */
+    public BatchScoringJob(FeedForwardNetwork network, PreprocessingPipeline pipeline) {
+        if (pipeline == null) {
+            throw new IllegalArgumentException("Preprocessing pipeline is required to find model inputs in csv file");
+        }
+        this.engine = DenseInferenceEngine.of(network);
+        this.pipeline = pipeline;
+        if (engine.getNumInputs() != pipeline.getNumInputs()) {
+            throw new IllegalArgumentException("Pipeline has " + pipeline.getNumInputs() + " inputs, network has " + engine.getNumInputs());
+        }
+    }
+
+    public BatchScoringJob(BinaryModel model) {
+        this(model.getNetwork(), model.getPipeline());
+    }
+
+    /**
+     * Sets number of rows read, scored and written as one chunk.
+     */
+    public BatchScoringJob chunkRows(int chunkRows) {
+        if (chunkRows < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkRows);
+        }
+        this.chunkRows = chunkRows;
+        return this;
+    }
+
+    /**
+     * Sets number of scoring threads, default is number of available processors.
+     */
+    public BatchScoringJob workers(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Number of workers must be positive: " + workers);
+        }
+        this.workers = workers;
+        return this;
+    }
+
+    /**
+     * Sets max number of chunks in the pipeline at once, default is 4 chunks per worker.
+     */
+    public BatchScoringJob maxChunks(int maxChunks) {
+        if (maxChunks < 1) {
+            throw new IllegalArgumentException("Max number of chunks must be positive: " + maxChunks);
+        }
+        this.maxChunks = maxChunks;
+        return this;
+    }
+
+    /**
+     * Sets what is written for each row, and threshold at which transaction is flagged as fraud.
+     */
+    public BatchScoringJob output(Output output, float threshold) {
+        this.output = output;
+        this.threshold = threshold;
+        return this;
+    }
+
+    /**
+     * Computes velocity features from Time and Amount columns while reading, for models trained with them.
+     * Rows of the file must be sorted by time.
+     */
+    public BatchScoringJob velocity(VelocityFeatures velocity) {
+        this.velocity = velocity;
+        return this;
+    }
+
+    /**
+     * Prints number of scored rows and throughput with given period, 0 disables progress output.
+     */
+    public BatchScoringJob progress(long periodMillis) {
+        this.progressMillis = periodMillis;
+        return this;
+    }
+
+    /**
+     * Chunk of rows moving through the pipeline.
+     */
+    private static final class Chunk {
+        static final Chunk END = new Chunk(-1, null);
+
+        final long sequence;
+        final ColumnChunk rows;
+        float[] scores;
+
+        Chunk(long sequence, ColumnChunk rows) {
+            this.sequence = sequence;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Summary of a finished job.
+     */
+    public static final class Report {
+        private final long rows;
+        private final long chunks;
+        private final long flagged;
+        private final long nanos;
+        private final long readerWaitNanos;
+
+        Report(long rows, long chunks, long flagged, long nanos, long readerWaitNanos) {
+            this.rows = rows;
+            this.chunks = chunks;
+            this.flagged = flagged;
+            this.nanos = nanos;
+            this.readerWaitNanos = readerWaitNanos;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getChunks() {
+            return chunks;
+        }
+
+        /**
+         * Returns number of rows with score at or above threshold.
+         */
+        public long getFlagged() {
+            return flagged;
+        }
+
+        public double getSeconds() {
+            return nanos / 1e9;
+        }
+
+        public double getRowsPerSecond() {
+            return nanos == 0 ? 0 : rows / (nanos / 1e9);
+        }
+
+        /**
+         * Returns time reader waited for scoring and writing to catch up. When it is close to total time, reading is not the bottleneck.
+         */
+        public double getReaderWaitSeconds() {
+            return readerWaitNanos / 1e9;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Rows: %d in %d chunks, flagged: %d, time: %.2f s, throughput: %.0f rows/s, reader waited: %.2f s",
+                    rows, chunks, flagged, getSeconds(), getRowsPerSecond(), getReaderWaitSeconds());
+        }
+    }
+
+    /**
+     * Scores all rows of the input file and writes results to the output file, with header line.
+     */
+    public Report run(Path input, Path outputFile) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        int permits = maxChunks > 0 ? maxChunks : workers * 4;
+        Semaphore inFlight = new Semaphore(permits);
+        BlockingQueue<Chunk> parsed = new LinkedBlockingQueue<>();     // bounded by permits
+        BlockingQueue<Chunk> scored = new LinkedBlockingQueue<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long[] readerWait = new long[1];
+
+        try (MappedCsvReader csvReader = new MappedCsvReader(input, ',', true);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(outputFile), StandardCharsets.UTF_8), 1 << 20)) {
+            checkColumns(csvReader.getColumnNames());
+
+            List<Thread> threads = new ArrayList<>();
+            threads.add(new Thread(() -> {
+                try {
+                    for (long sequence = 0; ; sequence++) {
+                        long waitStart = System.nanoTime();
+                        inFlight.acquire();
+                        readerWait[0] += System.nanoTime() - waitStart;
+                        ColumnChunk rows = csvReader.readChunk(chunkRows);
+                        if (rows == null) {
+                            break;
+                        }
+                        if (velocity != null) {
+                            rows = velocity.addTo(rows, "Time", "Amount");
+                        }
+                        parsed.put(new Chunk(sequence, rows));
+                    }
+                } catch (InterruptedException ex) {
+                    // job has failed, stop reading
+                } catch (Throwable ex) {
+                    failure.compareAndSet(null, ex);
+                } finally {
+                    for (int w = 0; w < workers; w++) {
+                        parsed.add(Chunk.END);
+                    }
+                }
+            }, "batch-scoring-reader"));
+
+            for (int w = 0; w < workers; w++) {
+                threads.add(new Thread(() -> {
+                    float[] inputs = new float[chunkRows * engine.getNumInputs()];
+                    try {
+                        for (Chunk chunk; (chunk = parsed.take()) != Chunk.END; ) {
+                            chunk.scores = score(chunk.rows, inputs);
+                            scored.put(chunk);
+                        }
+                    } catch (InterruptedException ex) {
+                        // job has failed, stop scoring
+                    } catch (Throwable ex) {
+                        failure.compareAndSet(null, ex);
+                    } finally {
+                        scored.add(Chunk.END);
+                    }
+                }, "batch-scoring-worker-" + w));
+            }
+            for (Thread thread : threads) {
+                thread.setDaemon(true);
+                thread.start();
+            }
+
+            long[] written = new long[3];   // rows, chunks, flagged
+            boolean completed = false;
+            try {
+                write(writer, scored, inFlight, failure, written, start);
+                completed = failure.get() == null;
+            } finally {
+                for (Thread thread : threads) {
+                    if (!completed) {
+                        thread.interrupt();     // reader may be waiting for a permit which writer will not return
+                    }
+                    thread.join();
+                }
+            }
+            rethrow(failure.get());
+            return new Report(written[0], written[1], written[2], System.nanoTime() - start, readerWait[0]);
+        }
+    }
+
+    /**
+     * Checks that all model inputs will be found in chunks, before any thread is started.
+     */
+    private void checkColumns(String[] csvColumns) {
+        List<String> available = new ArrayList<>(Arrays.asList(csvColumns));
+        if (velocity != null) {
+            if (!available.contains("Time") || !available.contains("Amount")) {
+                throw new IllegalArgumentException("Velocity features need Time and Amount columns");
+            }
+            available.addAll(Arrays.asList(velocity.getFeatureNames()));
+        }
+        for (String column : pipeline.getInputColumns()) {
+            if (!available.contains(column)) {
+                throw new IllegalArgumentException("Column not found: " + column);
+            }
+        }
+    }
+
+    /**
+     * Preprocesses rows of the chunk into row by row inputs batch, and scores them.
+     */
+    private float[] score(ColumnChunk rows, float[] inputs) {
+        String[] inputColumns = pipeline.getInputColumns();
+        int numInputs = inputColumns.length;
+        int count = rows.getRowCount();
+        for (int i = 0; i < numInputs; i++) {
+            float[] column = rows.column(inputColumns[i]);
+            for (int r = 0, pos = i; r < count; r++, pos += numInputs) {
+                inputs[pos] = pipeline.transform(i, column[r]);
+            }
+        }
+        float[] scores = new float[count];
+        engine.classifyBatch(inputs, 0, numInputs, count, scores, 0);
+        return scores;
+    }
+
+    /**
+     * Writes scored chunks in order of their sequence numbers, until all workers have finished.
+     */
+    private void write(Writer writer, BlockingQueue<Chunk> scored, Semaphore inFlight, AtomicReference<Throwable> failure,
+                       long[] written, long start) throws IOException, InterruptedException {
+        switch (output) {
+            case SCORES:
+                writer.write("score\n");
+                break;
+            case FLAGS:
+                writer.write("fraud\n");
+                break;
+            default:
+                writer.write("score,fraud\n");
+        }
+        Map<Long, Chunk> waiting = new HashMap<>();
+        StringBuilder lines = new StringBuilder(chunkRows * 16);
+        long next = 0;
+        int finishedWorkers = 0;
+        long lastProgress = start;
+        while (finishedWorkers < workers && failure.get() == null) {
+            Chunk chunk = scored.poll(100, TimeUnit.MILLISECONDS);
+            if (chunk == null) {
+                continue;
+            }
+            if (chunk == Chunk.END) {
+                finishedWorkers++;
+                continue;
+            }
+            waiting.put(chunk.sequence, chunk);
+            for (Chunk ready; (ready = waiting.remove(next)) != null; next++) {
+                lines.setLength(0);
+                for (float score : ready.scores) {
+                    boolean fraud = score >= threshold;
+                    if (fraud) {
+                        written[2]++;
+                    }
+                    if (output != Output.FLAGS) {
+                        lines.append(score);
+                    }
+                    if (output == Output.SCORES_AND_FLAGS) {
+                        lines.append(',');
+                    }
+                    if (output != Output.SCORES) {
+                        lines.append(fraud ? '1' : '0');
+                    }
+                    lines.append('\n');
+                }
+                writer.append(lines);
+                written[0] += ready.scores.length;
+                written[1]++;
+                inFlight.release();
+            }
+            long now = System.nanoTime();
+            if (progressMillis > 0 && now - lastProgress >= progressMillis * 1_000_000) {
+                System.out.printf(">> Scored %d rows, %.0f rows/s\n", written[0], written[0] / ((now - start) / 1e9));
+                lastProgress = now;
+            }
+        }
+        if (failure.get() == null && !waiting.isEmpty()) {
+            failure.compareAndSet(null, new IllegalStateException("Chunk " + next + " was not scored"));
+        }
+    }
+
+    private static void rethrow(Throwable failure) throws IOException {
+        if (failure == null) {
+            return;
+        }
+        if (failure instanceof UncheckedIOException) {
+            throw ((UncheckedIOException) failure).getCause();
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        throw new IllegalStateException("Batch scoring failed", failure);
+    }
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException, InterruptedException {
+        String modelFile = args.length > 0 ? args[0] : BinaryModel.fileFor("credit_card_fraud.dnet");
+        Path input = Paths.get(args.length > 1 ? args[1] : "creditcard.csv");
+        Path outputFile = Paths.get(args.length > 2 ? args[2] : "scores.csv");
+
+        BatchScoringJob job;
+        if (modelFile.endsWith(BinaryModel.FILE_EXTENSION)) {
+            job = new BatchScoringJob(BinaryModel.load(Paths.get(modelFile)));
+        } else {
+            FeedForwardNetwork network = FileIO.createFromFile(modelFile, FeedForwardNetwork.class);
+            job = new BatchScoringJob(network, PreprocessingPipeline.load(PreprocessingPipeline.fileFor(modelFile)));
+        }
+        if (args.length > 3) {
+            job.output(Output.SCORES_AND_FLAGS, Float.parseFloat(args[3]));
+        }
+
+        // models trained by the webinar demo use velocity features, which are computed from the file while it is read
+        try (MappedCsvReader csvReader = new MappedCsvReader(input.toString())) {
+            if (VelocityFeatures.neededFor(job.pipeline, csvReader.getColumnNames())) {
+                job.velocity(new VelocityFeatures(VelocityFeatures.DEFAULT_WINDOWS));
+                System.out.println("Computing velocity features from Time and Amount columns");
+            }
+        }
+
+        Report report = job.progress(10_000).run(input, outputFile);
+        System.out.println(report);
+    }
+}
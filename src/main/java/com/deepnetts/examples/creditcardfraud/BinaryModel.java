@@ -0,0 +1,389 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import deepnetts.net.FeedForwardNetwork;
+import deepnetts.net.layers.AbstractLayer;
+import deepnetts.net.layers.FullyConnectedLayer;
+import deepnetts.net.layers.InputLayer;
+import deepnetts.net.layers.OutputLayer;
+import deepnetts.net.layers.activation.ActivationType;
+import deepnetts.net.loss.LossType;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Feed forward network and its preprocessing stored in a compact, versioned binary file, which is loaded without Java deserialization.
+ *
+ * File is memory mapped and checked with CRC32 before anything is read, and weights are bulk copied from the mapping directly into layer tensors.
+ * All values are little endian, and every array starts at offset aligned to 4 bytes:
+ *
+ * <pre>
+ * header:  magic "DNFM" | int version | long payload length | int CRC32 of payload | int reserved
+ * payload: string loss type | int layer count
+ *          per layer: int kind (0 input, 1 fully connected, 2 output) | int width | string activation
+ *                     | float[] weights | float[] biases (not for input layer)
+ *          int 1 if preprocessing follows, otherwise 0
+ *          preprocessing: string target | string imputation | string scaling | string[] raw columns | string[] input columns
+ *                         | int[] raw indexes | float[] fill | float[] offset | float[] scale
+ * string:  int byte length | UTF-8 bytes | padding to 4 bytes
+ * array:   int length | values
+ * </pre>
+ *
+ * Only networks made of input, fully connected and output layers are supported.
+ */
+public class BinaryModel {
+
+    public static final String FILE_EXTENSION = ".dnfm";
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x4D464E44; // "DNFM" in little endian
+    private static final int HEADER_SIZE = 24;
+    private static final int INPUT = 0;
+    private static final int FULLY_CONNECTED = 1;
+    private static final int OUTPUT = 2;
+
+    private final FeedForwardNetwork network;
+    private final PreprocessingPipeline pipeline;
+
+    private BinaryModel(FeedForwardNetwork network, PreprocessingPipeline pipeline) {
+        this.network = network;
+        this.pipeline = pipeline;
+    }
+
+    public FeedForwardNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * Returns preprocessing saved with the model, or null if there is none.
+     */
+    public PreprocessingPipeline getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Creates classifier for the loaded network, which applies saved preprocessing if there is one.
+     */
+    public FeedForwardNetBatchClassifier createClassifier() {
+        return pipeline != null ? new FeedForwardNetBatchClassifier(network, pipeline) : new FeedForwardNetBatchClassifier(network);
+    }
+
+    /**
+     * Returns binary model file name for the given model file, e.g. credit_card_fraud.dnfm for credit_card_fraud.dnet.
+     */
+    public static String fileFor(String modelFile) {
+        String pipelineFile = PreprocessingPipeline.fileFor(modelFile);
+        return pipelineFile.substring(0, pipelineFile.length() - PreprocessingPipeline.FILE_EXTENSION.length()) + FILE_EXTENSION;
+    }
+
+    /**
+     * Saves network and optional preprocessing. File is written to a temporary file first and then moved, so readers never see partial file.
+     *
+     * @param pipeline preprocessing to save with the network, or null
+     */
+    public static void save(FeedForwardNetwork network, PreprocessingPipeline pipeline, Path file) throws IOException {
+        Buffer payload = new Buffer();
+        List<AbstractLayer> layers = network.getLayers();
+        payload.putString(network.getOutputLayer().getLossType().name());
+        payload.putInt(layers.size());
+        for (AbstractLayer layer : layers) {
+            int kind = kindOf(layer);
+            if (layer.getHeight() > 1 || layer.getDepth() > 1) {
+                throw new IllegalArgumentException("Only one dimensional layers are supported: " + layer);
+            }
+            payload.putInt(kind);
+            payload.putInt(layer.getWidth());
+            payload.putString(kind == INPUT ? "" : layer.getActivationType().name());
+            if (kind != INPUT) {
+                payload.putFloats(layer.getWeights().getValues());
+                payload.putFloats(layer.getBiases());
+            }
+        }
+        payload.putInt(pipeline != null ? 1 : 0);
+        if (pipeline != null) {
+            payload.putString(pipeline.getTargetColumn());
+            payload.putString(pipeline.getImputation().name());
+            payload.putString(pipeline.getScaling().name());
+            payload.putStrings(pipeline.getRawColumns());
+            payload.putStrings(pipeline.getInputColumns());
+            payload.putInts(pipeline.getRawIndexes());
+            payload.putFloats(pipeline.getFill());
+            payload.putFloats(pipeline.getOffset());
+            payload.putFloats(pipeline.getScale());
+        }
+
+        ByteBuffer data = payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(data.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(data.remaining()).putInt((int) crc.getValue()).putInt(0).flip();
+
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining() || data.hasRemaining()) {
+                channel.write(new ByteBuffer[] {header, data});
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads model from memory mapped file.
+     *
+     * @throws IOException if file is not a valid model file, has unsupported version or its checksum does not match
+     */
+    public static BinaryModel load(Path file) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a model file: " + file);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a model file: " + file);
+        }
+        int version = buffer.getInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported model file version " + version + ", supported up to " + VERSION);
+        }
+        long length = buffer.getLong();
+        int checksum = buffer.getInt();
+        buffer.getInt();
+        if (length != buffer.capacity() - HEADER_SIZE) {
+            throw new IOException("Model file is truncated or corrupted: " + file);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Model file checksum does not match: " + file);
+        }
+
+        try {
+            return read(buffer);
+        } catch (RuntimeException ex) {
+            throw new IOException("Invalid model file: " + file, ex);
+        }
+    }
+
+    private static BinaryModel read(ByteBuffer buffer) throws IOException {
+        LossType lossType = LossType.valueOf(getString(buffer));
+        int numLayers = buffer.getInt();
+        int[] kinds = new int[numLayers];
+        int[] widths = new int[numLayers];
+        ActivationType[] activations = new ActivationType[numLayers];
+        int[] weightsPositions = new int[numLayers];
+
+        // first pass reads layer shapes, and remembers where weights start
+        for (int l = 0; l < numLayers; l++) {
+            kinds[l] = buffer.getInt();
+            widths[l] = buffer.getInt();
+            String activation = getString(buffer);
+            if (kinds[l] != INPUT) {
+                activations[l] = ActivationType.valueOf(activation);
+                weightsPositions[l] = buffer.position();
+                skipArray(buffer);
+                skipArray(buffer);
+            }
+        }
+        if (numLayers < 2 || kinds[0] != INPUT || kinds[numLayers - 1] != OUTPUT) {
+            throw new IOException("Network must start with input layer and end with output layer");
+        }
+
+        FeedForwardNetwork.Builder builder = FeedForwardNetwork.builder().addInputLayer(widths[0]);
+        for (int l = 1; l < numLayers - 1; l++) {
+            builder.addFullyConnectedLayer(widths[l], activations[l]);
+        }
+        FeedForwardNetwork network = builder.addOutputLayer(widths[numLayers - 1], activations[numLayers - 1])
+                                            .lossFunction(lossType)
+                                            .build();
+
+        int pipelinePosition = buffer.position();
+        List<AbstractLayer> layers = network.getLayers();
+        for (int l = 1; l < numLayers; l++) {
+            buffer.position(weightsPositions[l]);
+            getFloats(buffer, layers.get(l).getWeights().getValues());
+            getFloats(buffer, layers.get(l).getBiases());
+        }
+        buffer.position(pipelinePosition);
+
+        PreprocessingPipeline pipeline = null;
+        if (buffer.getInt() == 1) {
+            String target = getString(buffer);
+            PreprocessingPipeline.Imputation imputation = PreprocessingPipeline.Imputation.valueOf(getString(buffer));
+            PreprocessingPipeline.Scaling scaling = PreprocessingPipeline.Scaling.valueOf(getString(buffer));
+            String[] raw = getStrings(buffer);
+            String[] inputs = getStrings(buffer);
+            int[] rawIndexes = new int[buffer.getInt()];
+            buffer.asIntBuffer().get(rawIndexes);
+            buffer.position(buffer.position() + rawIndexes.length * Integer.BYTES);
+            float[] fill = new float[inputs.length];
+            float[] offset = new float[inputs.length];
+            float[] scale = new float[inputs.length];
+            getFloats(buffer, fill);
+            getFloats(buffer, offset);
+            getFloats(buffer, scale);
+            pipeline = new PreprocessingPipeline(raw, inputs, target, rawIndexes, fill, offset, scale, imputation, scaling);
+        }
+        return new BinaryModel(network, pipeline);
+    }
+
+    /**
+     * Creates network with the same layers as the given one and a copy of its weights, which shares no state with it.
+     * Gives the same result as saving and loading the network, without a file.
+     */
+    static FeedForwardNetwork copy(FeedForwardNetwork network) {
+        List<AbstractLayer> layers = network.getLayers();
+        if (layers.size() < 2 || kindOf(layers.get(0)) != INPUT || kindOf(layers.get(layers.size() - 1)) != OUTPUT) {
+            throw new IllegalArgumentException("Network must start with input layer and end with output layer");
+        }
+        FeedForwardNetwork.Builder builder = FeedForwardNetwork.builder().addInputLayer(layers.get(0).getWidth());
+        for (int l = 1; l < layers.size() - 1; l++) {
+            AbstractLayer layer = layers.get(l);
+            if (kindOf(layer) != FULLY_CONNECTED) {
+                throw new IllegalArgumentException("Unsupported layer: " + layer.getClass().getSimpleName());
+            }
+            builder.addFullyConnectedLayer(layer.getWidth(), layer.getActivationType());
+        }
+        OutputLayer output = network.getOutputLayer();
+        FeedForwardNetwork copy = builder.addOutputLayer(output.getWidth(), output.getActivationType())
+                                         .lossFunction(output.getLossType())
+                                         .build();
+        List<AbstractLayer> copyLayers = copy.getLayers();
+        for (int l = 1; l < layers.size(); l++) {
+            float[] weights = layers.get(l).getWeights().getValues();
+            System.arraycopy(weights, 0, copyLayers.get(l).getWeights().getValues(), 0, weights.length);
+            float[] biases = layers.get(l).getBiases();
+            System.arraycopy(biases, 0, copyLayers.get(l).getBiases(), 0, biases.length);
+        }
+        return copy;
+    }
+
+    private static int kindOf(AbstractLayer layer) {
+        if (layer instanceof InputLayer) {
+            return INPUT;
+        } else if (layer instanceof OutputLayer) {
+            return OUTPUT;
+        } else if (layer instanceof FullyConnectedLayer) {
+            return FULLY_CONNECTED;
+        }
+        throw new IllegalArgumentException("Unsupported layer: " + layer.getClass().getSimpleName());
+    }
+
+    /**
+     * Reads float array into the given destination, which must have the same length.
+     */
+    private static void getFloats(ByteBuffer buffer, float[] dest) throws IOException {
+        int length = buffer.getInt();
+        if (length != dest.length) {
+            throw new IOException("Expected " + dest.length + " values, but file contains " + length);
+        }
+        buffer.asFloatBuffer().get(dest);
+        buffer.position(buffer.position() + length * Float.BYTES);
+    }
+
+    private static void skipArray(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        buffer.position(buffer.position() + length * Float.BYTES);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        buffer.position(buffer.position() + padding(length));
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String[] getStrings(ByteBuffer buffer) {
+        String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = getString(buffer);
+        }
+        return strings;
+    }
+
+    private static int padding(int length) {
+        return (4 - (length & 3)) & 3;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("BinaryModel (version " + VERSION + ")\n");
+        for (AbstractLayer layer : network.getLayers()) {
+            sb.append("  ").append(layer.getClass().getSimpleName()).append(": width=").append(layer.getWidth());
+            if (!(layer instanceof InputLayer)) {
+                sb.append(", activation=").append(layer.getActivationType());
+            }
+            sb.append('\n');
+        }
+        sb.append(pipeline != null ? pipeline.toString() : "  no preprocessing");
+        return sb.toString();
+    }
+
+    /**
+     * Growing little endian buffer used to write payload.
+     */
+    private static final class Buffer {
+        private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+        void putInt(int value) {
+            ensureCapacity(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putInts(int[] values) {
+            putInt(values.length);
+            ensureCapacity(values.length * Integer.BYTES);
+            buffer.asIntBuffer().put(values);
+            buffer.position(buffer.position() + values.length * Integer.BYTES);
+        }
+
+        void putFloats(float[] values) {
+            putInt(values.length);
+            ensureCapacity(values.length * Float.BYTES);
+            buffer.asFloatBuffer().put(values);
+            buffer.position(buffer.position() + values.length * Float.BYTES);
+        }
+
+        void putString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            ensureCapacity(bytes.length + 3);
+            buffer.put(bytes);
+            buffer.put(new byte[padding(bytes.length)]);
+        }
+
+        void putStrings(String[] values) {
+            putInt(values.length);
+            for (String value : values) {
+                putString(value);
+            }
+        }
+
+        ByteBuffer flip() {
+            return buffer.flip();
+        }
+
+        private void ensureCapacity(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes)).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.flip();
+                bigger.put(buffer);
+                buffer = bigger;
+            }
+        }
+    }
+}
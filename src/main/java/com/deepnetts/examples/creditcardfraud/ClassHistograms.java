@@ -0,0 +1,314 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.FloatColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.LongColumn;
+import tech.tablesaw.api.NumericColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+import tech.tablesaw.plotly.components.Figure;
+import tech.tablesaw.plotly.components.Layout;
+import tech.tablesaw.plotly.components.Marker;
+import tech.tablesaw.plotly.traces.BarTrace;
+
+/**
+ * Histograms of numeric features for each class of the target column, computed in a single pass over each feature.
+ * Features are processed in parallel, and only bin counts are kept, so plots of large data sets stay small.
+ *
+ * Bins are either of fixed width between min and max value, or adaptive with approximately the same number of values in each bin,
+ * based on quantiles. Bin ranges are taken from {@link TableProfile}, which is computed if it is not given.
+ */
+public class ClassHistograms {
+
+    public static final int DEFAULT_BINS = 50;
+
+    private static final String[] COLORS = {"#1f77b4", "#ff7f0e", "#2ca02c", "#d62728"};
+
+    public enum Binning { FIXED, ADAPTIVE }
+
+    private int bins = DEFAULT_BINS;
+    private Binning binning = Binning.FIXED;
+
+    public ClassHistograms bins(int bins) {
+        if (bins < 1) {
+            throw new IllegalArgumentException("Number of bins must be positive: " + bins);
+        }
+        this.bins = bins;
+        return this;
+    }
+
+    public ClassHistograms binning(Binning binning) {
+        this.binning = binning;
+        return this;
+    }
+
+    /**
+     * Bin counts of one feature for each class.
+     */
+    public static final class Histogram {
+        private final String feature;
+        private final String target;
+        private final int[] classes;
+        private final double[] edges;
+        private final long[][] counts;
+        private final long[] missing;
+
+        Histogram(String feature, String target, int[] classes, double[] edges, long[][] counts, long[] missing) {
+            this.feature = feature;
+            this.target = target;
+            this.classes = classes;
+            this.edges = edges;
+            this.counts = counts;
+            this.missing = missing;
+        }
+
+        public String getFeature() {
+            return feature;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        /**
+         * Returns sorted class values.
+         */
+        public int[] getClasses() {
+            return classes;
+        }
+
+        /**
+         * Returns bin edges, where bin i contains values in range [edges[i], edges[i + 1]), and the last bin also contains max value.
+         */
+        public double[] getEdges() {
+            return edges;
+        }
+
+        public int getBinCount() {
+            return edges.length - 1;
+        }
+
+        /**
+         * Returns counts for each class and bin.
+         */
+        public long[][] getCounts() {
+            return counts;
+        }
+
+        /**
+         * Returns number of missing feature values for each class.
+         */
+        public long[] getMissing() {
+            return missing;
+        }
+
+        public long getClassTotal(int classIdx) {
+            long total = 0;
+            for (long count : counts[classIdx]) {
+                total += count;
+            }
+            return total;
+        }
+
+        /**
+         * Returns table with bin ranges and counts for each class.
+         */
+        public Table toTable() {
+            int numBins = getBinCount();
+            Table table = Table.create(feature + " by " + target,
+                    StringColumn.create("Feature", numBins),
+                    DoubleColumn.create("Lower", Arrays.copyOf(edges, numBins)),
+                    DoubleColumn.create("Upper", Arrays.copyOfRange(edges, 1, edges.length)));
+            table.stringColumn("Feature").setMissingTo(feature);
+            for (int c = 0; c < classes.length; c++) {
+                table.addColumns(LongColumn.create(target + "=" + classes[c], counts[c]));
+            }
+            return table;
+        }
+
+        /**
+         * Returns bar plot with fraction of values of each class in each bin, so that classes of very different size can be compared.
+         */
+        public Figure toFigure() {
+            int numBins = getBinCount();
+            String[] binLabels = new String[numBins];
+            for (int b = 0; b < numBins; b++) {
+                binLabels[b] = String.format("%.4g", (edges[b] + edges[b + 1]) / 2);
+            }
+            BarTrace[] traces = new BarTrace[classes.length];
+            for (int c = 0; c < classes.length; c++) {
+                long total = Math.max(1, getClassTotal(c));
+                double[] fractions = new double[numBins];
+                for (int b = 0; b < numBins; b++) {
+                    fractions[b] = (double) counts[c][b] / total;
+                }
+                traces[c] = BarTrace.builder(binLabels, fractions)
+                        .name("Class " + classes[c])
+                        .marker(Marker.builder().color(COLORS[Math.floorMod(classes[c], COLORS.length)]).opacity(0.6).build())
+                        .build();
+            }
+            Layout layout = Layout.builder()
+                    .title("Distribution of " + feature + " by class " + target)
+                    .barMode(Layout.BarMode.OVERLAY)
+                    .build();
+            return new Figure(layout, traces);
+        }
+    }
+
+    /**
+     * Computes histograms of all numeric columns except target.
+     */
+    public List<Histogram> compute(Table table, String targetColumn) {
+        return compute(table, targetColumn, ColumnProfiler.profile(table));
+    }
+
+    /**
+     * Computes histograms of all numeric columns except target, using already computed profile for bin ranges.
+     */
+    public List<Histogram> compute(Table table, String targetColumn, TableProfile profile) {
+        List<String> features = new ArrayList<>();
+        for (Column<?> column : table.columns()) {
+            if (column instanceof NumericColumn<?> && !column.name().equals(targetColumn)) {
+                features.add(column.name());
+            }
+        }
+        return compute(table, features, targetColumn, profile);
+    }
+
+    /**
+     * Computes histograms of the given features in parallel.
+     */
+    public List<Histogram> compute(Table table, List<String> features, String targetColumn, TableProfile profile) {
+        int[] classes = classValues(table.numberColumn(targetColumn));
+        int[] classIdx = classIndexes(table.numberColumn(targetColumn), classes);
+        return features.parallelStream()
+                       .map(f -> compute(table.numberColumn(f), profile.get(f), targetColumn, classes, classIdx))
+                       .collect(Collectors.toList());
+    }
+
+    public Histogram compute(Table table, String feature, String targetColumn, TableProfile profile) {
+        return compute(table, List.of(feature), targetColumn, profile).get(0);
+    }
+
+    private Histogram compute(NumericColumn<?> feature, ColumnProfile profile, String target, int[] classes, int[] classIdx) {
+        double[] edges = edges(profile);
+        int numBins = edges.length - 1;
+        long[][] counts = new long[classes.length][numBins];
+        long[] missing = new long[classes.length];
+        double min = edges[0];
+        double width = (edges[numBins] - min) / numBins;
+        boolean fixed = binning == Binning.FIXED;
+
+        for (int i = 0; i < classIdx.length; i++) {
+            int c = classIdx[i];
+            if (c < 0) {
+                continue;
+            }
+            double value = value(feature, i);
+            if (Double.isNaN(value)) {
+                missing[c]++;
+                continue;
+            }
+            int bin;
+            if (fixed) {
+                bin = width > 0 ? (int) ((value - min) / width) : 0;
+            } else {
+                bin = Arrays.binarySearch(edges, value);
+                bin = bin >= 0 ? bin : -bin - 2;
+            }
+            counts[c][Math.max(0, Math.min(numBins - 1, bin))]++;
+        }
+        return new Histogram(feature.name(), target, classes, edges, counts, missing);
+    }
+
+    private double[] edges(ColumnProfile profile) {
+        double min = profile.getMin();
+        double max = profile.getMax();
+        if (profile.getCount() == 0) {
+            return new double[] {0, 1};
+        }
+        if (binning == Binning.FIXED || min == max) {
+            double[] edges = new double[bins + 1];
+            for (int b = 0; b <= bins; b++) {
+                edges[b] = min + (max - min) * b / bins;
+            }
+            return edges;
+        }
+        // adaptive: edges at quantiles, equal quantiles are merged into one edge
+        double[] qs = new double[bins + 1];
+        for (int b = 0; b <= bins; b++) {
+            qs[b] = (double) b / bins;
+        }
+        double[] quantiles = profile.getQuantiles().quantiles(qs);
+        double[] edges = new double[bins + 1];
+        int n = 0;
+        for (double edge : quantiles) {
+            if (n == 0 || edge > edges[n - 1]) {
+                edges[n++] = edge;
+            }
+        }
+        return n > 1 ? Arrays.copyOf(edges, n) : new double[] {min, max};
+    }
+
+    private static double value(NumericColumn<?> column, int row) {
+        if (column instanceof DoubleColumn) {
+            return ((DoubleColumn) column).getDouble(row);
+        } else if (column instanceof FloatColumn) {
+            return ((FloatColumn) column).getFloat(row);
+        } else if (column instanceof IntColumn) {
+            IntColumn ic = (IntColumn) column;
+            return ic.isMissing(row) ? Double.NaN : ic.getInt(row);
+        }
+        return column.isMissing(row) ? Double.NaN : column.getDouble(row);
+    }
+
+    private static int[] classValues(NumericColumn<?> target) {
+        LongCountMap values = new LongCountMap();
+        for (int i = 0; i < target.size(); i++) {
+            if (!target.isMissing(i)) {
+                values.add((int) target.getDouble(i));
+            }
+        }
+        int[] classes = new int[values.size()];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = (int) values.keyAt(i);
+        }
+        Arrays.sort(classes);
+        return classes;
+    }
+
+    /**
+     * Returns index of class for each row, or -1 for missing class.
+     */
+    private static int[] classIndexes(NumericColumn<?> target, int[] classes) {
+        int[] idx = new int[target.size()];
+        for (int i = 0; i < idx.length; i++) {
+            idx[i] = target.isMissing(i) ? -1 : Arrays.binarySearch(classes, (int) target.getDouble(i));
+        }
+        return idx;
+    }
+
+    /**
+     * Writes plot and bin counts of each histogram to output, and summary CSV with counts of all features.
+     */
+    public static void write(List<Histogram> histograms, PlotOutput output) {
+        StringBuilder csv = new StringBuilder("feature,class,lower,upper,count\n");
+        for (Histogram histogram : histograms) {
+            output.show(histogram.toFigure(), histogram.getFeature() + "_by_" + histogram.getTarget());
+            for (int c = 0; c < histogram.classes.length; c++) {
+                for (int b = 0; b < histogram.getBinCount(); b++) {
+                    csv.append(histogram.feature).append(',').append(histogram.classes[c]).append(',')
+                       .append(histogram.edges[b]).append(',').append(histogram.edges[b + 1]).append(',')
+                       .append(histogram.counts[c][b]).append('\n');
+                }
+            }
+        }
+        output.write("histograms.csv", csv.toString());
+    }
+}
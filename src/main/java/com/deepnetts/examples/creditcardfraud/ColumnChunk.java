@@ -0,0 +1,115 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.Table;
+
+/**
+ * Block of CSV rows stored column by column in primitive float arrays.
+ * Missing or non numeric values are stored as NaN.
+ */
+public class ColumnChunk {
+
+    private final String[] columnNames;
+    private final float[][] columns;
+    private final int rowCount;
+
+    public ColumnChunk(String[] columnNames, float[][] columns, int rowCount) {
+        if (columnNames.length != columns.length) {
+            throw new IllegalArgumentException("Number of column names and columns must be the same");
+        }
+        this.columnNames = columnNames;
+        this.columns = columns;
+        this.rowCount = rowCount;
+    }
+
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * Returns backing array of the specified column. Array may be longer than row count.
+     */
+    public float[] column(int idx) {
+        return columns[idx];
+    }
+
+    public float[] column(String name) {
+        return columns[columnIndex(name)];
+    }
+
+    public int columnIndex(String name) {
+        for (int i = 0; i < columnNames.length; i++) {
+            if (columnNames[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Column not found: " + name);
+    }
+
+    public float get(int row, int col) {
+        return columns[col][row];
+    }
+
+    /**
+     * Returns new chunk with the specified rows of this chunk, in the given order.
+     */
+    public ColumnChunk select(int[] rows) {
+        float[][] selected = new float[columns.length][rows.length];
+        for (int c = 0; c < columns.length; c++) {
+            float[] values = columns[c];
+            float[] dest = selected[c];
+            for (int i = 0; i < rows.length; i++) {
+                dest[i] = values[rows[i]];
+            }
+        }
+        return new ColumnChunk(columnNames, selected, rows.length);
+    }
+
+    /**
+     * Creates Tablesaw table from this chunk.
+     * Columns that contain only whole numbers without missing values become IntColumn, all others DoubleColumn,
+     * which matches the types Tablesaw detects for creditcard.csv.
+     */
+    public Table toTable(String tableName) {
+        Table table = Table.create(tableName);
+        for (int c = 0; c < columns.length; c++) {
+            float[] values = columns[c];
+            if (isWholeNumbers(values)) {
+                int[] ints = new int[rowCount];
+                for (int r = 0; r < rowCount; r++) {
+                    ints[r] = (int) values[r];
+                }
+                table.addColumns(IntColumn.create(columnNames[c], ints));
+            } else {
+                double[] doubles = new double[rowCount];
+                for (int r = 0; r < rowCount; r++) {
+                    doubles[r] = values[r];
+                }
+                table.addColumns(DoubleColumn.create(columnNames[c], doubles));
+            }
+        }
+        return table;
+    }
+
+    private boolean isWholeNumbers(float[] values) {
+        if (rowCount == 0) {
+            return false;
+        }
+        for (int r = 0; r < rowCount; r++) {
+            float v = values[r];
+            if (Float.isNaN(v) || v != (int) v) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,178 @@
+package com.deepnetts.examples.creditcardfraud;
+
+/**
+ * Statistics for a single column, computed in one pass by {@link ColumnProfiler}:
+ * missing count, min/max, mean, variance, estimated number of distinct values and quantile sketch.
+ * Min, max, mean, variance and quantiles are available only for numeric columns.
+ *
+ * Profiles of different row ranges of the same column can be merged.
+ */
+public class ColumnProfile {
+
+    private final String name;
+    private final String type;
+    private final boolean numeric;
+
+    private long count;      // number of non missing values
+    private long missing;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private double mean;
+    private double m2;       // sum of squared differences from the mean
+    private final DistinctCounter distinct = new DistinctCounter();
+    private final QuantileSketch quantiles;
+
+    public ColumnProfile(String name, String type, boolean numeric) {
+        this.name = name;
+        this.type = type;
+        this.numeric = numeric;
+        this.quantiles = numeric ? new QuantileSketch() : null;
+    }
+
+    /**
+     * Adds numeric value, NaN is counted as missing.
+     */
+    void add(double value) {
+        if (Double.isNaN(value)) {
+            missing++;
+            return;
+        }
+        if (count == 0) {
+            min = value;
+            max = value;
+        } else {
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+        }
+        count++;
+        double delta = value - mean; // Welford's online algorithm
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        distinct.add(value);
+        quantiles.update(value);
+    }
+
+    /**
+     * Adds non numeric value, null is counted as missing.
+     */
+    void add(String value) {
+        if (value == null) {
+            missing++;
+            return;
+        }
+        count++;
+        distinct.add(value);
+    }
+
+    void addMissing() {
+        missing++;
+    }
+
+    void merge(ColumnProfile other) {
+        if (other.count > 0) {
+            if (count == 0) {
+                min = other.min;
+                max = other.max;
+                mean = other.mean;
+                m2 = other.m2;
+            } else if (numeric) {
+                min = Math.min(min, other.min);
+                max = Math.max(max, other.max);
+                double delta = other.mean - mean;
+                long total = count + other.count;
+                mean += delta * other.count / total;
+                m2 += other.m2 + delta * delta * count * other.count / total;
+            }
+            count += other.count;
+        }
+        missing += other.missing;
+        distinct.merge(other.distinct);
+        if (numeric) {
+            quantiles.merge(other.quantiles);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public boolean isNumeric() {
+        return numeric;
+    }
+
+    /**
+     * Returns number of non missing values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public long getMissing() {
+        return missing;
+    }
+
+    public double getMissingPercent() {
+        long total = count + missing;
+        return total == 0 ? 0 : missing * 100.0 / total;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * Returns sample variance.
+     */
+    public double getVariance() {
+        return count < 2 ? Double.NaN : m2 / (count - 1);
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    public long getDistinctEstimate() {
+        return distinct.estimate();
+    }
+
+    /**
+     * Returns quantile sketch of non missing values, or null for non numeric columns.
+     */
+    public QuantileSketch getQuantiles() {
+        return quantiles;
+    }
+
+    public double getQuartile1() {
+        return numeric ? quantiles.quantile(0.25) : Double.NaN;
+    }
+
+    public double getMedian() {
+        return numeric ? quantiles.quantile(0.5) : Double.NaN;
+    }
+
+    public double getQuartile3() {
+        return numeric ? quantiles.quantile(0.75) : Double.NaN;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%s): count=%d, missing=%d, min=%.4f, max=%.4f, mean=%.4f, std=%.4f, q1=%.4f, median=%.4f, q3=%.4f, distinct~%d",
+                name, type, count, missing, min, max, getMean(), getStandardDeviation(), getQuartile1(), getMedian(), getQuartile3(), getDistinctEstimate());
+    }
+}
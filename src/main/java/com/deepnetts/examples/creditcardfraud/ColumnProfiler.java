@@ -0,0 +1,132 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.FloatColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.NumericColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+
+/**
+ * Computes profiles of all table columns in a single pass over each column.
+ * Columns are processed in parallel using fork join pool, and large columns are additionally split into row ranges,
+ * whose partial profiles are merged.
+ */
+public class ColumnProfiler {
+
+    private static final int MIN_ROWS_PER_TASK = 64 * 1024;
+
+    private final ForkJoinPool pool;
+
+    public ColumnProfiler() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ColumnProfiler(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Profiles all columns of the given table using common fork join pool.
+     */
+    public static TableProfile profile(Table table) {
+        return new ColumnProfiler().profileTable(table);
+    }
+
+    public TableProfile profileTable(Table table) {
+        List<ProfileTask> tasks = new ArrayList<>(table.columnCount());
+        for (Column<?> column : table.columns()) {
+            tasks.add(new ProfileTask(column, 0, column.size()));
+        }
+
+        List<ColumnProfile> profiles = new ArrayList<>(tasks.size());
+        pool.invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                ForkJoinTask.invokeAll(tasks);
+                return null;
+            }
+        });
+        for (ProfileTask task : tasks) {
+            profiles.add(task.join());
+        }
+        return new TableProfile(table, profiles);
+    }
+
+    /**
+     * Profiles given range of rows in a column, splitting it into smaller ranges if it is large.
+     */
+    private static final class ProfileTask extends RecursiveTask<ColumnProfile> {
+        private static final long serialVersionUID = 1L;
+
+        private final Column<?> column;
+        private final int from;
+        private final int to;
+
+        ProfileTask(Column<?> column, int from, int to) {
+            this.column = column;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ColumnProfile compute() {
+            if (to - from > 2 * MIN_ROWS_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                ProfileTask left = new ProfileTask(column, from, mid);
+                ProfileTask right = new ProfileTask(column, mid, to);
+                left.fork();
+                ColumnProfile profile = right.compute();
+                ColumnProfile leftProfile = left.join();
+                leftProfile.merge(profile);
+                return leftProfile;
+            }
+            return profileRange(column, from, to);
+        }
+    }
+
+    static ColumnProfile profileRange(Column<?> column, int from, int to) {
+        boolean numeric = column instanceof NumericColumn<?>;
+        ColumnProfile profile = new ColumnProfile(column.name(), column.type().name(), numeric);
+
+        if (column instanceof DoubleColumn) {
+            DoubleColumn dc = (DoubleColumn) column;
+            for (int i = from; i < to; i++) {
+                profile.add(dc.getDouble(i)); // missing values are NaN
+            }
+        } else if (column instanceof IntColumn) {
+            IntColumn ic = (IntColumn) column;
+            for (int i = from; i < to; i++) {
+                if (ic.isMissing(i)) {
+                    profile.addMissing();
+                } else {
+                    profile.add(ic.getInt(i));
+                }
+            }
+        } else if (column instanceof FloatColumn) {
+            FloatColumn fc = (FloatColumn) column;
+            for (int i = from; i < to; i++) {
+                profile.add(fc.getFloat(i));
+            }
+        } else if (numeric) {
+            NumericColumn<?> nc = (NumericColumn<?>) column;
+            for (int i = from; i < to; i++) {
+                if (nc.isMissing(i)) {
+                    profile.addMissing();
+                } else {
+                    profile.add(nc.getDouble(i));
+                }
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                profile.add(column.isMissing(i) ? null : column.getString(i));
+            }
+        }
+        return profile;
+    }
+}
@@ -0,0 +1,163 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import deepnetts.data.MLDataItem;
+import deepnetts.data.TabularDataSet;
+import deepnetts.util.Tensor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import javax.visrec.ml.data.DataSet;
+
+/**
+ * Tabular data set which keeps all values in one contiguous float buffer, row by row: inputs followed by target outputs.
+ * Data items are lightweight views over the buffer, which create input and target tensors of their row on first access
+ * and keep them, so code which only reads the buffer, like batch scoring, never creates per row arrays,
+ * while training creates them once and reuses them in every epoch.
+ *
+ * Once created, item tensors hold the current values of their row, so changes made through them (for example by
+ * DataSets.scaleToMax) are kept, and are written back to the buffer by {@link #getValues()}.
+ *
+ * @see ColumnarDataSetBuilder
+ */
+public class ColumnarDataSet extends TabularDataSet<MLDataItem> {
+
+    private final float[] values;
+    private final int rowCount;
+    private final int stride;
+
+    ColumnarDataSet(float[] values, int rowCount, int numInputs, int numOutputs, String[] columnNames) {
+        super(numInputs, numOutputs);
+        this.values = values;
+        this.rowCount = rowCount;
+        this.stride = numInputs + numOutputs;
+        setColumnNames(columnNames);
+
+        items = new ArrayList<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            items.add(new RowView(this, i));
+        }
+    }
+
+    /**
+     * Returns the backing buffer, with {@link #getStride()} values per row.
+     * For each row input values come first, followed by target values. Buffer may be longer than row count * stride.
+     * Values of items whose tensors were created are copied into the buffer first, so that it includes changes made through them.
+     */
+    public float[] getValues() {
+        for (int i = 0; i < rowCount; i++) {
+            MLDataItem item = items.get(i);
+            if (item instanceof RowView) {
+                ((RowView) item).writeBack();
+            }
+        }
+        return values;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns offset of the first input value for the specified row in the buffer.
+     */
+    public int offsetOf(int row) {
+        return row * stride;
+    }
+
+    /**
+     * Splits items into data sets of the given sizes, like TabularDataSet, which declares the result with raw types.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public DataSet<MLDataItem>[] split(double... parts) {
+        return super.split(parts);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public DataSet<MLDataItem>[] split(int parts) {
+        return super.split(parts);
+    }
+
+    /**
+     * Data item which is a view of one row in the columnar data set buffer.
+     */
+    public static final class RowView implements MLDataItem {
+
+        private final ColumnarDataSet dataSet;
+        private final int row;
+        private volatile Tensor input;          // created together with target output on first access
+        private volatile Tensor targetOutput;
+
+        RowView(ColumnarDataSet dataSet, int row) {
+            this.dataSet = dataSet;
+            this.row = row;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        /**
+         * Returns input tensor of this row, which is created from the buffer on first access and then reused.
+         */
+        @Override
+        public Tensor getInput() {
+            Tensor tensor = input;
+            if (tensor == null) {
+                createTensors();
+                tensor = input;
+            }
+            return tensor;
+        }
+
+        @Override
+        public Tensor getTargetOutput() {
+            if (targetOutput == null) {
+                createTensors();
+            }
+            return targetOutput;
+        }
+
+        private synchronized void createTensors() {
+            if (input == null) {
+                int from = dataSet.offsetOf(row);
+                int numInputs = dataSet.getNumInputs();
+                targetOutput = new Tensor(Arrays.copyOfRange(dataSet.values, from + numInputs, from + dataSet.stride));
+                input = new Tensor(Arrays.copyOfRange(dataSet.values, from, from + numInputs));
+            }
+        }
+
+        /**
+         * Copies values of tensors into the buffer, if tensors were created.
+         */
+        private void writeBack() {
+            Tensor tensor = input;
+            if (tensor != null) {
+                int from = dataSet.offsetOf(row);
+                System.arraycopy(tensor.getValues(), 0, dataSet.values, from, dataSet.getNumInputs());
+                System.arraycopy(targetOutput.getValues(), 0, dataSet.values, from + dataSet.getNumInputs(), dataSet.getNumOutputs());
+            }
+        }
+
+        /**
+         * Copies input values of this row into the given array, without creating the input tensor.
+         */
+        public void copyInputTo(float[] dest, int destPos) {
+            Tensor tensor = input;
+            if (tensor != null) {
+                System.arraycopy(tensor.getValues(), 0, dest, destPos, dataSet.getNumInputs());
+            } else {
+                System.arraycopy(dataSet.values, dataSet.offsetOf(row), dest, destPos, dataSet.getNumInputs());
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "RowView{row=" + row + ", input=" + getInput() + ", targetOutput=" + getTargetOutput() + "}";
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import java.util.stream.IntStream;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.FloatColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.NumericColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+
+/**
+ * Builds {@link ColumnarDataSet} by reading table columns in bulk into one contiguous float buffer,
+ * instead of copying values row by row.
+ * By default all columns except the last one are used as inputs, and the last column is the target.
+ *
+ * Example:
+ * <pre>
+ * ColumnarDataSet dataSet = ColumnarDataSetBuilder.builder()
+ *                              .inputColumns("V1", "V2", "Amount")
+ *                              .targetColumns("Class")
+ *                              .build(table);
+ * </pre>
+ */
+public class ColumnarDataSetBuilder {
+
+    private int[] inputColumns;
+    private int[] targetColumns;
+    private String[] inputColumnNames;
+    private String[] targetColumnNames;
+
+    public static ColumnarDataSetBuilder builder() {
+        return new ColumnarDataSetBuilder();
+    }
+
+    public ColumnarDataSetBuilder inputColumns(int... columnIdxs) {
+        this.inputColumns = columnIdxs.clone();
+        this.inputColumnNames = null;
+        return this;
+    }
+
+    public ColumnarDataSetBuilder inputColumns(String... columnNames) {
+        this.inputColumnNames = columnNames.clone();
+        this.inputColumns = null;
+        return this;
+    }
+
+    public ColumnarDataSetBuilder targetColumns(int... columnIdxs) {
+        this.targetColumns = columnIdxs.clone();
+        this.targetColumnNames = null;
+        return this;
+    }
+
+    public ColumnarDataSetBuilder targetColumns(String... columnNames) {
+        this.targetColumnNames = columnNames.clone();
+        this.targetColumns = null;
+        return this;
+    }
+
+    /**
+     * Creates data set from the given table. All selected columns must be numeric.
+     */
+    public ColumnarDataSet build(Table table) {
+        int[] inputs = resolve(inputColumns, inputColumnNames, table.columnNames().toArray(new String[0]), true);
+        int[] targets = resolve(targetColumns, targetColumnNames, table.columnNames().toArray(new String[0]), false);
+
+        int rows = table.rowCount();
+        int stride = inputs.length + targets.length;
+        float[] values = new float[rows * stride];
+
+        for (int i = 0; i < inputs.length; i++) {
+            copyColumn(table.column(inputs[i]), values, i, stride, rows);
+        }
+        for (int i = 0; i < targets.length; i++) {
+            copyColumn(table.column(targets[i]), values, inputs.length + i, stride, rows);
+        }
+
+        return new ColumnarDataSet(values, rows, inputs.length, targets.length, columnNames(table.columnNames().toArray(new String[0]), inputs, targets));
+    }
+
+    /**
+     * Creates data set from the chunk of float columns loaded by {@link MappedCsvReader}.
+     */
+    public ColumnarDataSet build(ColumnChunk chunk) {
+        String[] names = chunk.getColumnNames();
+        int[] inputs = resolve(inputColumns, inputColumnNames, names, true);
+        int[] targets = resolve(targetColumns, targetColumnNames, names, false);
+
+        int rows = chunk.getRowCount();
+        int stride = inputs.length + targets.length;
+        float[] values = new float[rows * stride];
+
+        for (int i = 0; i < inputs.length; i++) {
+            copyColumn(chunk.column(inputs[i]), values, i, stride, rows);
+        }
+        for (int i = 0; i < targets.length; i++) {
+            copyColumn(chunk.column(targets[i]), values, inputs.length + i, stride, rows);
+        }
+
+        return new ColumnarDataSet(values, rows, inputs.length, targets.length, columnNames(names, inputs, targets));
+    }
+
+    private static void copyColumn(float[] column, float[] values, int offset, int stride, int rows) {
+        for (int r = 0, pos = offset; r < rows; r++, pos += stride) {
+            values[pos] = column[r];
+        }
+    }
+
+    private static void copyColumn(Column<?> column, float[] values, int offset, int stride, int rows) {
+        if (column instanceof DoubleColumn) {
+            DoubleColumn dc = (DoubleColumn) column;
+            for (int r = 0, pos = offset; r < rows; r++, pos += stride) {
+                values[pos] = (float) dc.getDouble(r);
+            }
+        } else if (column instanceof IntColumn) {
+            IntColumn ic = (IntColumn) column;
+            for (int r = 0, pos = offset; r < rows; r++, pos += stride) {
+                values[pos] = ic.getInt(r);
+            }
+        } else if (column instanceof FloatColumn) {
+            FloatColumn fc = (FloatColumn) column;
+            for (int r = 0, pos = offset; r < rows; r++, pos += stride) {
+                values[pos] = fc.getFloat(r);
+            }
+        } else if (column instanceof NumericColumn<?>) {
+            NumericColumn<?> nc = (NumericColumn<?>) column;
+            for (int r = 0, pos = offset; r < rows; r++, pos += stride) {
+                values[pos] = (float) nc.getDouble(r);
+            }
+        } else {
+            throw new IllegalArgumentException("Column '" + column.name() + "' is not numeric: " + column.type());
+        }
+    }
+
+    private static int[] resolve(int[] idxs, String[] names, String[] allNames, boolean inputs) {
+        if (idxs != null) {
+            return idxs;
+        }
+        if (names != null) {
+            int[] result = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                result[i] = indexOf(allNames, names[i]);
+            }
+            return result;
+        }
+        // default: last column is target, all others are inputs
+        return inputs ? IntStream.range(0, allNames.length - 1).toArray() : new int[]{allNames.length - 1};
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Column not found: " + name);
+    }
+
+    private static String[] columnNames(String[] allNames, int[] inputs, int[] targets) {
+        String[] names = new String[inputs.length + targets.length];
+        for (int i = 0; i < inputs.length; i++) {
+            names[i] = allNames[inputs[i]];
+        }
+        for (int i = 0; i < targets.length; i++) {
+            names[inputs.length + i] = allNames[targets[i]];
+        }
+        return names;
+    }
+}
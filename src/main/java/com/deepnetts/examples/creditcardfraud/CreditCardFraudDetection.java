@@ -1,17 +1,18 @@
 package com.deepnetts.examples.creditcardfraud;
 
 import deepnetts.core.DeepNetts;
-import deepnetts.data.DataSets;
 import deepnetts.net.FeedForwardNetwork;
 import deepnetts.net.layers.activation.ActivationType;
 import deepnetts.net.loss.LossType;
 import deepnetts.util.DeepNettsException;
 import java.io.IOException;
+import java.nio.file.Paths;
 import javax.visrec.ml.data.DataSet;
 import javax.visrec.ml.eval.EvaluationMetrics;
 import javax.visrec.ml.classification.BinaryClassifier;
 import javax.visrec.ri.ml.classification.FeedForwardNetBinaryClassifier;
 import deepnetts.data.MLDataItem;
+import tech.tablesaw.api.Table;
 
 /**
  * Credit Card Fraud Detection. 
@@ -45,16 +46,21 @@ public class CreditCardFraudDetection {
         int numOutputs = 1;
         boolean hasColumnNames = true;
 
-        // load spam data  set from csv file 
-        DataSet dataSet = DataSets.readCsv("creditcard-balanced.csv", numInputs, numOutputs, hasColumnNames);
-        
-        // scale data to [0, 1] range which is used by neural network
-        DataSets.scaleToMax(dataSet);
+        // load data set from csv file 
+        Table dataTable;
+        try (MappedCsvReader csvReader = new MappedCsvReader(Paths.get("creditcard-balanced.csv"), ',', hasColumnNames)) {
+            dataTable = csvReader.readAll().toTable("creditcard-balanced.csv");
+        }
         
         // split data into training and test set
-        DataSet<MLDataItem>[] trainTestSet = dataSet.split(0.6);
-        DataSet<MLDataItem> trainingSet = trainTestSet[0];
-        DataSet<MLDataItem> testSet = trainTestSet[1];
+        Table[] trainTestTables = DataPreparation.trainTestSplit(dataTable, 0.6, 1);
+        
+        // scale data to [-1, 1] range which is used by neural network, using max values from training set only
+        PreprocessingPipeline preprocessing = PreprocessingPipeline.builder()
+                                                                   .scaling(PreprocessingPipeline.Scaling.MAX)
+                                                                   .fit(trainTestTables[0]);
+        DataSet<MLDataItem> trainingSet = preprocessing.transform(trainTestTables[0]);
+        DataSet<MLDataItem> testSet = preprocessing.transform(trainTestTables[1]);
         
         // create instance of feed forward neural network using its builder
         FeedForwardNetwork neuralNet = FeedForwardNetwork.builder()
@@ -82,9 +88,18 @@ public class CreditCardFraudDetection {
         float[] testTransaction = testSet.get(0).getInput().getValues();
         
         Float fraudProbability = fraudDetector.classify(testTransaction);
-        System.out.println("Fraud probability: "+fraudProbability);            
+        System.out.println("Fraud probability: "+fraudProbability);
+
+        // Score whole test set as one batch, classifier applies the same preprocessing to raw transactions
+        FeedForwardNetBatchClassifier batchDetector = new FeedForwardNetBatchClassifier(neuralNet, preprocessing);
+        float[][] testTransactions = new float[testSet.size()][];
+        for (int i = 0; i < testSet.size(); i++) {
+            testTransactions[i] = preprocessing.rawInputs(trainTestTables[1], i);
+        }
+        float[] fraudProbabilities = new float[testTransactions.length];
+        batchDetector.classifyBatch(testTransactions, fraudProbabilities);
+        System.out.println("Scored "+fraudProbabilities.length+" test transactions in a batch");
 
-        
 
         
     }
@@ -1,19 +1,16 @@
 package com.deepnetts.examples.creditcardfraud;
 
-import deepnetts.data.DataSets;
 import deepnetts.data.MLDataItem;
-import deepnetts.data.TabularDataSet;
-import deepnetts.data.TrainTestSplit;
 import deepnetts.net.FeedForwardNetwork;
 import deepnetts.net.layers.activation.ActivationType;
 import deepnetts.net.loss.LossType;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import javax.visrec.ml.classification.BinaryClassifier;
 import javax.visrec.ml.data.DataSet;
 import javax.visrec.ml.eval.EvaluationMetrics;
-import javax.visrec.ri.ml.classification.FeedForwardNetBinaryClassifier;
 import tech.tablesaw.api.Table;
-import tech.tablesaw.io.csv.CsvReadOptions;
 
 /**
  * Credit Card Fraud Detection. 
@@ -35,25 +32,48 @@ import tech.tablesaw.io.csv.CsvReadOptions;
  * Step-by-step guide for setting up Deep Netts is available at
  * https://www.deepnetts.com/quickstart/
  * 
+ * Usage: CreditCardFraudWebinarDemo [report directory]
+ * If report directory is given, plots are written to it instead of being shown in browser, so the example can run without display.
  */
 public class CreditCardFraudWebinarDemo {
 
+    // cost of declining a legitimate transaction, such as customer support call, in the same currency as transaction amount
+    private static final double FALSE_DECLINE_COST = 10;
+
     public static void main(String[] args) throws IOException {
             
         // Load data set from CSV file
         // justr make sure that you unzip it first (could not put it on github due to size over 100Mb)
-        // specify CSV file options
-        CsvReadOptions.Builder builder = 
-	CsvReadOptions.builder("creditcard.csv") // csv file path 
-		.separator(',') // values are coma-delimited
-		.header(true); // first line contains column names
-        CsvReadOptions options = builder.build();
+        // file is memory mapped and parsed directly into float columns, which is much faster than Tablesaw csv reader
+        ColumnChunk csvData;
+        try (MappedCsvReader csvReader = new MappedCsvReader("creditcard.csv")) { // values are coma-delimited and first line contains column names
+            csvData = csvReader.readAll();
+        }
+
+        // remove duplicate rows if there are any, keeping the first occurrence
+        DuplicateDetector duplicates = new DuplicateDetector(csvData.getColumnNames());
+        csvData = csvData.select(duplicates.add(csvData));
+        System.out.println(duplicates);
+
+        // the same transaction at a different time may be a replay, these rows are only reported
+        String[] replayKeys = Arrays.stream(csvData.getColumnNames()).filter(name -> !name.equals("Time")).toArray(String[]::new);
+        DuplicateDetector replays = new DuplicateDetector(csvData.getColumnNames(), replayKeys);
+        replays.add(csvData);
+        System.out.println("Possibly replayed transactions: " + replays.getDuplicateCount());
+
+        // transactions are sorted by time, so velocity features are computed in one pass, before rows are sampled and shuffled
+        VelocityFeatures velocity = new VelocityFeatures(VelocityFeatures.DEFAULT_WINDOWS);
+        csvData = velocity.addTo(csvData, "Time", "Amount");
+        System.out.println("Velocity features: " + String.join(", ", velocity.getFeatureNames()));
 
         // load data into a data frame
-        Table dataTable = Table.read().usingOptions(options);
+        Table dataTable = csvData.toTable("creditcard.csv");
         
         // Prepare data for training
         DataPreparation dataPrep = new DataPreparation(dataTable);
+        if (args.length > 0) {
+            dataPrep.setPlotOutput(PlotOutput.toDirectory(Paths.get(args[0])));
+        }
 
         // print first few rows to see what's loaded
         dataPrep.previewRows(5);
@@ -61,13 +81,6 @@ public class CreditCardFraudWebinarDemo {
         // print columns with corresponding types
         System.out.println("Basic column info");
         dataPrep.columnInfo();        
-              
-        // remove column Time since it is not relevant
-        System.out.println("Removing column Time"); 
-        dataTable.removeColumns("Time");
-
-        // remove duplicate rows if there are any
-        dataTable.dropDuplicateRows();
         
         // check if there are any missing values
         dataPrep.countMissingValues();
@@ -77,26 +90,41 @@ public class CreditCardFraudWebinarDemo {
         System.out.println("Basic statistics for all columns:");        
         dataPrep.statistics();
 
+        // histograms of all features for each class, written to report directory in headless mode
+        if (!dataPrep.getPlotOutput().isInteractive()) {
+            dataPrep.plotFeatureDistributions("Class", ClassHistograms.DEFAULT_BINS, ClassHistograms.Binning.FIXED);
+        }
+
         // check if data set is balanced - is there the same amount of positive or negative examples
         dataPrep.checkClassBalance("Class");
         
         // create balanced subset
         Table balancedData  = DataPreparation.createBalancedSample(dataTable, "Class", 1);
-        DataPreparation.checkClassBalance(balancedData, "Class");
+        DataPreparation.checkClassBalance(balancedData, "Class", dataPrep.getPlotOutput(), "class_balance_balanced");
                                    
-        // create data set for neural network training   
-        TabularDataSet dataSet = DataPreparation.createDataSet(balancedData );
-        DataSets.scaleToMax(dataSet);
-        
         // split data into training and test set
-        TrainTestSplit split = DataSets.trainTestSplit(dataSet, 0.6);
-        DataSet<MLDataItem> trainingSet = split.getTrainingSet();
-        DataSet<MLDataItem> testSet = split.getTestSet();
+        Table[] trainTestTables = DataPreparation.trainTestSplit(balancedData, 0.6, 1);
+        
+        // fit preprocessing on training set only: column Time is removed since it is used only through velocity features,
+        // missing values are replaced with median and inputs are scaled to max values
+        PreprocessingPipeline preprocessing = PreprocessingPipeline.builder()
+                                                                   .dropColumns("Time")
+                                                                   .targetColumn("Class")
+                                                                   .imputation(PreprocessingPipeline.Imputation.MEDIAN)
+                                                                   .scaling(PreprocessingPipeline.Scaling.MAX)
+                                                                   .fit(trainTestTables[0]);
+        System.out.println(preprocessing);
+        
+        // create data sets for neural network training and testing, part of training set is kept for validation during training
+        Table[] trainValidationTables = DataPreparation.trainTestSplit(trainTestTables[0], 0.8, 1);
+        DataSet<MLDataItem> trainingSet = preprocessing.transform(trainValidationTables[0]);
+        DataSet<MLDataItem> validationSet = preprocessing.transform(trainValidationTables[1]);
+        ColumnarDataSet testSet = preprocessing.transform(trainTestTables[1]);
         
         
         // CREATE AND TRAIN A MODEL
         
-        int numInputs= 29;
+        int numInputs = preprocessing.getNumInputs();   // V1-V28, Amount and velocity features
         int numOutputs = 1;
         
         // create instance of feed forward neural network using its builder
@@ -112,23 +140,48 @@ public class CreditCardFraudWebinarDemo {
                               .setStopEpochs(500) // or this number of epochs is reached (training iterations)
                               .setLearningRate(0.01f); // controls size of learning step ~ 1% of error
      
-        neuralNet.train(trainingSet);
+        // record loss, throughput, allocations and GC time of each epoch (also as JFR events),
+        // and stop when validation loss has not improved for 20 epochs
+        try (TrainingMonitor monitor = new TrainingMonitor(trainingSet.size())
+                                               .addSink(TrainingMonitor.csv(Paths.get("training_epochs.csv")))
+                                               .earlyStopping(20, 0.0001f)) {
+            neuralNet.getTrainer().addListener(monitor);
+            try {
+                neuralNet.getTrainer().train(trainingSet, validationSet);
+            } finally {
+                neuralNet.getTrainer().removeListener(monitor);
+            }
+        }
                 
         // TEST/EVALUATE THE MODEL
         
         // test neural network and print evaluation metrics
         EvaluationMetrics em = neuralNet.test(testSet);
         System.out.println(em);
+        
+        // metrics above are at fixed threshold 0.5, evaluate all thresholds and find the one with the lowest cost,
+        // where missed fraud costs transaction amount and declined legitimate transaction costs a fixed amount
+        float[] amounts = trainTestTables[1].numberColumn("Amount").asFloatColumn().asFloatArray();
+        ScoreEvaluation evaluation = ScoreEvaluation.of(neuralNet, testSet, amounts);
+        System.out.println(evaluation);
+        System.out.printf("Precision at top 100: %.4f\n", evaluation.getPrecisionAtK(Math.min(100, testSet.getRowCount())));
+        System.out.println("Optimal threshold: " + evaluation.getOptimalThreshold(1, FALSE_DECLINE_COST));
+
+        // inputs are anonymized, so check which of them the model relies on by shuffling them one at a time
+        System.out.println(PermutationImportance.of(neuralNet, testSet, 5, 123));
         System.out.println("Done!");    
         
-        // save the model, so it can be reused later
+        // save the model and preprocessing next to it, so they can be reused later
         neuralNet.save("credit_card_fraud.dnet");
+        preprocessing.save(PreprocessingPipeline.fileFor("credit_card_fraud.dnet"));
+        // compact binary format with network and preprocessing, which scoring service loads without deserialization
+        BinaryModel.save(neuralNet, preprocessing, Paths.get(BinaryModel.fileFor("credit_card_fraud.dnet")));
         
         // USE THE MODEL WITH JSR381
         
-        // Example usage of the trained network with vis rec api
-        BinaryClassifier<float[]> fraudDetector = new FeedForwardNetBinaryClassifier(neuralNet);    
-        float[] testTransaction = testSet.get(0).getInput().getValues();
+        // Example usage of the trained network with vis rec api, classifier applies preprocessing to raw transaction
+        BinaryClassifier<float[]> fraudDetector = new FeedForwardNetBatchClassifier(neuralNet, preprocessing);    
+        float[] testTransaction = preprocessing.rawInputs(trainTestTables[1], 0);
         
         System.out.println("Using model for prediction...");
         Float fraudProbability = fraudDetector.classify(testTransaction);
@@ -0,0 +1,216 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.FloatColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.LongColumn;
+import tech.tablesaw.api.ShortColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+
+/**
+ * Contingency table with number of rows for each pair of values of two columns.
+ *
+ * Computed in a single pass: values of both columns are encoded as dense integer codes, using primitive keys for numeric columns,
+ * and the pair of codes is counted in a hash map. Counts are then copied into a dense matrix.
+ * Categories are ordered by their first appearance in the table.
+ */
+public class CrossTab {
+
+    private final String rowName;
+    private final String columnName;
+    private final List<String> rowLabels;
+    private final List<String> columnLabels;
+    private final long[][] counts;
+
+    private CrossTab(String rowName, String columnName, List<String> rowLabels, List<String> columnLabels, long[][] counts) {
+        this.rowName = rowName;
+        this.columnName = columnName;
+        this.rowLabels = rowLabels;
+        this.columnLabels = columnLabels;
+        this.counts = counts;
+    }
+
+    /**
+     * Counts rows for all pairs of values in the given columns, e.g. feature and class.
+     */
+    public static CrossTab of(Column<?> rows, Column<?> columns) {
+        if (rows.size() != columns.size()) {
+            throw new IllegalArgumentException("Columns must have the same size");
+        }
+        Encoder rowEncoder = Encoder.of(rows);
+        Encoder columnEncoder = Encoder.of(columns);
+
+        LongCountMap pairs = new LongCountMap();
+        for (int i = 0; i < rows.size(); i++) {
+            long pair = ((long) rowEncoder.encode(i) << 32) | columnEncoder.encode(i);
+            pairs.add(pair);
+        }
+
+        long[][] counts = new long[rowEncoder.labels.size()][columnEncoder.labels.size()];
+        for (int e = 0; e < pairs.size(); e++) {
+            long pair = pairs.keyAt(e);
+            counts[(int) (pair >>> 32)][(int) pair] = pairs.countAt(e);
+        }
+        return new CrossTab(rows.name(), columns.name(), rowEncoder.labels, columnEncoder.labels, counts);
+    }
+
+    public static CrossTab of(Table table, String rowColumn, String columnColumn) {
+        return of(table.column(rowColumn), table.column(columnColumn));
+    }
+
+    public String getRowName() {
+        return rowName;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    /**
+     * Returns values of the first column, missing value is empty string.
+     */
+    public List<String> getRowLabels() {
+        return rowLabels;
+    }
+
+    /**
+     * Returns values of the second column, missing value is empty string.
+     */
+    public List<String> getColumnLabels() {
+        return columnLabels;
+    }
+
+    public long getCount(int row, int column) {
+        return counts[row][column];
+    }
+
+    /**
+     * Returns dense count matrix, with a row for each value of the first column and a column for each value of the second.
+     */
+    public long[][] getCounts() {
+        return counts;
+    }
+
+    /**
+     * Returns counts of all values of the first column, for the specified value of the second.
+     */
+    public long[] getColumnCounts(int column) {
+        long[] result = new long[counts.length];
+        for (int r = 0; r < counts.length; r++) {
+            result[r] = counts[r][column];
+        }
+        return result;
+    }
+
+    public long[] getRowTotals() {
+        long[] totals = new long[counts.length];
+        for (int r = 0; r < counts.length; r++) {
+            for (long count : counts[r]) {
+                totals[r] += count;
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Returns table with a row for each value of the first column, and count column for each value of the second,
+     * named as column=value.
+     */
+    public Table toTable() {
+        Table table = Table.create(rowName + " x " + columnName, StringColumn.create(rowName, rowLabels));
+        for (int c = 0; c < columnLabels.size(); c++) {
+            LongColumn column = LongColumn.create(columnName + "=" + columnLabels.get(c), getColumnCounts(c));
+            table.addColumns(column);
+        }
+        table.addColumns(LongColumn.create("Total", getRowTotals()));
+        return table;
+    }
+
+    @Override
+    public String toString() {
+        return toTable().printAll();
+    }
+
+    /**
+     * Assigns codes 0, 1, 2... to column values in order of their first appearance.
+     */
+    private abstract static class Encoder {
+
+        final List<String> labels = new ArrayList<>();
+
+        abstract int encode(int row);
+
+        static Encoder of(Column<?> column) {
+            if (column instanceof IntColumn || column instanceof LongColumn || column instanceof ShortColumn
+                    || column instanceof DoubleColumn || column instanceof FloatColumn) {
+                return new NumericEncoder(column);
+            }
+            return new StringEncoder(column);
+        }
+    }
+
+    /**
+     * Encodes string values, used for string and other non numeric columns.
+     */
+    private static final class StringEncoder extends Encoder {
+
+        private final Column<?> column;
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        StringEncoder(Column<?> column) {
+            this.column = column;
+        }
+
+        @Override
+        int encode(int row) {
+            String value = column.getString(row);
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = labels.size();
+                codes.put(value, code);
+                labels.add(value);
+            }
+            return code;
+        }
+    }
+
+    private static final class NumericEncoder extends Encoder {
+
+        private final Column<?> column;
+        private final LongCountMap codes = new LongCountMap();
+
+        NumericEncoder(Column<?> column) {
+            this.column = column;
+        }
+
+        @Override
+        int encode(int row) {
+            int code = codes.add(key(row));
+            if (code == labels.size()) { // value seen for the first time
+                labels.add(column.getString(row));
+            }
+            return code;
+        }
+
+        private long key(int row) {
+            if (column instanceof IntColumn) {
+                return ((IntColumn) column).getInt(row);
+            } else if (column instanceof LongColumn) {
+                return ((LongColumn) column).getLong(row);
+            } else if (column instanceof ShortColumn) {
+                return ((ShortColumn) column).getShort(row);
+            } else if (column instanceof DoubleColumn) {
+                double v = ((DoubleColumn) column).getDouble(row);
+                return Double.doubleToLongBits(v == 0 ? 0.0 : v); // the same key for 0.0 and -0.0, and for all NaNs
+            }
+            double v = ((FloatColumn) column).getFloat(row);
+            return Double.doubleToLongBits(v == 0 ? 0.0 : v);
+        }
+    }
+}
@@ -2,25 +2,25 @@ package com.deepnetts.examples.creditcardfraud;
 
 import deepnetts.data.MLDataItem;
 import deepnetts.data.TabularDataSet;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.stream.IntStream;
-import org.apache.commons.math3.distribution.NormalDistribution;
-import org.apache.commons.math3.stat.inference.KolmogorovSmirnovTest;
 import tech.tablesaw.api.*;
 import tech.tablesaw.columns.Column;
 import tech.tablesaw.io.csv.CsvReadOptions;
-import tech.tablesaw.plotly.Plot;
 
 import tech.tablesaw.plotly.api.BoxPlot;
 import tech.tablesaw.plotly.api.VerticalBarPlot;
 
 import tech.tablesaw.plotly.components.Figure;
 import tech.tablesaw.plotly.components.Layout;
-import tech.tablesaw.plotly.components.Marker;
 import tech.tablesaw.plotly.traces.BarTrace;
-import tech.tablesaw.plotly.traces.HistogramTrace;
 
 /**
  * Data preparation utilities for dataframe from TableSaw.
@@ -28,6 +28,10 @@ import tech.tablesaw.plotly.traces.HistogramTrace;
 public class DataPreparation {
 
     private final Table dataSet;   
+    private TableProfile profile;
+    private final ImputationEngine imputationEngine = new ImputationEngine();
+    private final OutlierDetector outlierDetector = new OutlierDetector();
+    private PlotOutput plotOutput = PlotOutput.interactive();
        
     public DataPreparation(Table dataSet) {
         this.dataSet = dataSet;
@@ -37,31 +41,63 @@ public class DataPreparation {
         return dataSet;
     }
 
-    public DataPreparation(String csvFile) {
-        CsvReadOptions options = CsvReadOptions.builder(csvFile)
-                .header(true)
-                .sample(false) // Read the entire file
-                .missingValueIndicator("NaN", "", " ", "-", "nan", "NULL")
-                .build();
+    /**
+     * Sets where plots are shown: in browser (default) or written to output directory, see {@link PlotOutput}.
+     */
+    public void setPlotOutput(PlotOutput plotOutput) {
+        this.plotOutput = plotOutput;
+    }
 
-        this.dataSet = Table.read().usingOptions(options);
+    public PlotOutput getPlotOutput() {
+        return plotOutput;
+    }
+
+    /**
+     * Loads data from csv file with header using {@link MappedCsvReader}.
+     * Values are parsed to float and stored in DoubleColumn, or IntColumn for whole numbers, so decimal values
+     * differ from values read by Tablesaw after the 7th significant digit. Use {@link #DataPreparation(CsvReadOptions)}
+     * when full double precision or non numeric columns are needed.
+     */
+    public DataPreparation(String csvFile) {
+        try (MappedCsvReader csvReader = new MappedCsvReader(csvFile)) {
+            this.dataSet = csvReader.readAll().toTable(Paths.get(csvFile).getFileName().toString());
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not read " + csvFile, ex);
+        }
     }
 
     public DataPreparation(CsvReadOptions options) {
         this.dataSet = Table.read().usingOptions(options);
     }
 
+    /**
+     * Returns profile with statistics for all columns, which is computed in a single parallel pass and reused
+     * until data is changed by this class or table rows/columns change.
+     */
+    public TableProfile getProfile() {
+        if (profile == null || !profile.matches(dataSet)) {
+            profile = ColumnProfiler.profile(dataSet);
+        }
+        return profile;
+    }
+
+    /**
+     * Discards column profile, should be called after values in table are changed outside of this class.
+     */
+    public void invalidateProfile() {
+        profile = null;
+    }
  
     public void countMissingValues() {
         int totalRows = dataSet.rowCount();
 
         System.out.println(">> Overview of missing values per column:");
 
-        for (Column<?> column : dataSet.columns()) {
-            int missing = column.countMissing();
+        for (ColumnProfile column : getProfile().getColumns()) {
+            long missing = column.getMissing();
             double percent = (missing * 100.0) / totalRows;
 
-            System.out.printf("Column: %s | Missing: %d (%.2f%%)\n", column.name(), missing, percent);
+            System.out.printf("Column: %s | Missing: %d (%.2f%%)\n", column.getName(), missing, percent);
 
             if (missing == 0) {
                 continue;
@@ -82,10 +118,12 @@ public class DataPreparation {
 
     public Table handleMissingValues() {
         List<String> columnsToRemove = new ArrayList<>();
+        List<Column<?>> columnsToImpute = new ArrayList<>();
         int totalRows = dataSet.rowCount();
+        TableProfile tableProfile = getProfile(); // missing values are counted only once
 
         for (Column<?> column : dataSet.columns()) {
-            int missing = column.countMissing(); // izbeci da ovo radi ponovo ako je vec uradio gore sa brojanjem
+            long missing = tableProfile.get(column.name()).getMissing();
             double percent = (missing * 100.0) / totalRows;
 
             System.out.printf("Column: %s | Missing: %d (%.2f%%)\n", column.name(), missing, percent);
@@ -100,38 +138,18 @@ public class DataPreparation {
                 continue;
             }
 
-            if (column instanceof StringColumn) {
-                StringColumn sc = (StringColumn) column;
-                Table freqTable = sc.countByCategory().sortDescendingOn("Count");
-                String mostFrequent = freqTable.stringColumn("Category").get(0); 
-
-                sc.set(sc.isMissing(), mostFrequent);
-                System.out.printf(">> Categorical column '%s' - missing values replaced with the most frequent: %s\n", column.name(), mostFrequent);
-            } else if (column instanceof DoubleColumn) {
-                DoubleColumn dc = (DoubleColumn) column;
-                DoubleColumn filtered = dc.where(dc.isNotMissing());
-
-                double[] values = filtered.asDoubleArray();
-                double mean = filtered.mean();
-                double std = filtered.standardDeviation();
-
-                KolmogorovSmirnovTest ksTest = new KolmogorovSmirnovTest();
-                NormalDistribution normalDist = new NormalDistribution(mean, std);
-
-                double pValue = ksTest.kolmogorovSmirnovTest(normalDist, values);
-                boolean isNormal = pValue > 0.05;
-
-                if (isNormal) {
-                    dc.set(dc.isMissing(), mean);
-                    System.out.printf(">> Column '%s' is normally distributed (p=%.4f), NaNs replaced with mean: %.2f\n", column.name(), pValue, mean);
-                } else {
-                    double median = filtered.median();
-                    dc.set(dc.isMissing(), median);
-                    System.out.printf(">> Column '%s' is not normally distributed (p=%.4f), NaNs replaced with median: %.2f\n", column.name(), pValue, median);
-                }
+            if (column instanceof StringColumn || column instanceof DoubleColumn) {
+                columnsToImpute.add(column);
             }
         }
 
+        // all columns are imputed concurrently, results are in the same order as columns
+        for (ImputationEngine.Result result : imputationEngine.impute(columnsToImpute)) {
+            printImputation(result);
+        }
+
+        invalidateProfile();
+
         System.out.println("\nThe following columns may be removed due to a high percentage of missing values:");
         for (String colName : columnsToRemove) {
             System.out.println(" - " + colName);
@@ -139,74 +157,57 @@ public class DataPreparation {
 
         return dataSet;
     }
+
+    private static void printImputation(ImputationEngine.Result result) {
+        switch (result.getMethod()) {
+            case MODE:
+                System.out.printf(">> Categorical column '%s' - missing values replaced with the most frequent: %s\n", result.getColumnName(), result.getValue());
+                break;
+            case MEAN:
+                System.out.printf(">> Column '%s' is normally distributed (p=%.4f), NaNs replaced with mean: %.2f\n", result.getColumnName(), result.getPValue(), result.getValue());
+                break;
+            default:
+                System.out.printf(">> Column '%s' is not normally distributed (p=%.4f), NaNs replaced with median: %.2f\n", result.getColumnName(), result.getPValue(), result.getValue());
+        }
+    }
    
     /**
      * Replaces missing values with most frequent value
      * @param columnName 
      */
     public void imputeCategorical(String columnName) {
-
         Column<?> column = dataSet.column(columnName);
-
-        StringColumn asString = column.asStringColumn();
-
-        Table freqTable = asString.countByCategory().sortDescendingOn("Count");
-        String mostFrequent = freqTable.stringColumn("Category").get(0);
-
-        for (int i = 0; i < column.size(); i++) {
-            if (column.isMissing().contains(i)) {
-                try {
-                    if (column instanceof StringColumn) {
-                        ((StringColumn) column).set(i, mostFrequent);
-                    } else if (column instanceof IntColumn) {
-                        int value = Integer.parseInt(mostFrequent);
-                        ((IntColumn) column).set(i, value);
-                    } else if (column instanceof DoubleColumn) { // ovo i nema smisla za kategorijske i ovo dole
-                        double value = Double.parseDouble(mostFrequent);
-                        ((DoubleColumn) column).set(i, value);
-                    } else if (column instanceof LongColumn) {
-                        long value = Long.parseLong(mostFrequent);
-                        ((LongColumn) column).set(i, value);
-                    } else {
-                        System.out.printf(">> [WARNING] Column '%s' has unsupported type: %s\n", column.name(), column.type());
-                    }
-                } catch (NumberFormatException e) {
-                    System.out.printf(">> [ERROR] Failed to parse '%s' for column '%s'\n", mostFrequent, column.name());
-                }
-            }
-        }
+        ImputationEngine.Result result = imputationEngine.imputeCategorical(column);
 
         System.out.printf(">> Column '%s' (treated as categorical) - missing values replaced with the most frequent: %s\n",
-                column.name(), mostFrequent);
+                column.name(), result.getValue());
+        invalidateProfile();
     }
 
+    /**
+     * Replaces missing values with mean if column is normally distributed, or with median otherwise
+     * @param columnName 
+     */
     public void imputeNumeric(String columnName) {
+        ImputationEngine.Result result = imputationEngine.imputeNumeric(dataSet.column(columnName));
+        printImputation(result);
+        invalidateProfile();
+    }
 
-        DoubleColumn column = (DoubleColumn) dataSet.column(columnName);
-
-        DoubleColumn filtered = column.where(column.isNotMissing());
-        double[] values = filtered.asDoubleArray();
-        double mean = filtered.mean();
-        double std = filtered.standardDeviation();
-
-        KolmogorovSmirnovTest ksTest = new KolmogorovSmirnovTest();
-        NormalDistribution normalDist = new NormalDistribution(mean, std);
-        double pValue = ksTest.kolmogorovSmirnovTest(normalDist, values);
-        boolean isNormal = pValue > 0.05;
+    public List<OutlierDetector.Report> showBoxPlotsAndOutliers(List<String> columnNames) {
+        return findOutliers(columnNames, true);
+    }
 
-        if (isNormal) {
-            column.set(column.isMissing(), mean);
-            System.out.printf(">> Column '%s' is normally distributed (p=%.4f), NaNs replaced with mean: %.2f\n",
-                    column.name(), pValue, mean);
-        } else {
-            double median = filtered.median();
-            column.set(column.isMissing(), median);
-            System.out.printf(">> Column '%s' is not normally distributed (p=%.4f), NaNs replaced with median: %.2f\n",
-                    column.name(), pValue, median);
-        }
+    /**
+     * Finds outliers in given numeric columns without plotting, using interquartile range rule.
+     * Table is not changed, outlier rows are returned as bitmaps.
+     */
+    public List<OutlierDetector.Report> findOutliers(List<String> columnNames) {
+        return findOutliers(columnNames, false);
     }
 
-    public void showBoxPlotsAndOutliers(List<String> columnNames) {
+    private List<OutlierDetector.Report> findOutliers(List<String> columnNames, boolean plot) {
+        List<OutlierDetector.Report> reports = new ArrayList<>();
         for (String columnName : columnNames) {
             Column<?> col = dataSet.column(columnName);
 
@@ -214,47 +215,41 @@ public class DataPreparation {
                 NumericColumn<?> numCol = (NumericColumn<?>) col;
                 String numericColName = numCol.name();
 
-                double q1 = numCol.quartile1();
-                double q3 = numCol.quartile3();
-                double iqr = q3 - q1;
-                double lowerBound = q1 - 1.5 * iqr;
-                double upperBound = q3 + 1.5 * iqr;
-
-                NumericColumn<?> outliers = numCol.where(numCol.isLessThan(lowerBound).or(numCol.isGreaterThan(upperBound)));
+                OutlierDetector.Report report = outlierDetector.detect(numCol);
+                reports.add(report);
 
                 System.out.println("Column: " + numericColName);
-                System.out.println("   Total outliers: " + outliers.size());
-                if (outliers.size() > 0) {
-                    System.out.println("   Outlier values: " + outliers.unique().asList());
+                System.out.println("   Total outliers: " + report.getCount());
+                if (report.getCount() > 0) {
+                    System.out.println("   Below " + report.getBounds().getLower() + ": " + report.getBelowCount());
+                    System.out.println("   Above " + report.getBounds().getUpper() + ": " + report.getAboveCount());
                 } else {
                     System.out.println("   No outliers detected.");
                 }
 
-                // Dummy kolona za boxplot
-                String dummyGroupColName = "group_for_" + numericColName;
-                StringColumn groupCol = StringColumn.create(dummyGroupColName, dataSet.rowCount());
-                groupCol.setMissingTo("All");
-                dataSet.addColumns(groupCol);
-
-                // Kreiranje i prikazivanje boxplot-a
-                Figure fig = BoxPlot.create("Boxplot - " + numericColName, dataSet, dummyGroupColName, numericColName);
-                Plot.show(fig);
+                if (plot) {
+                    // boxplot needs group column, so it is created in a separate table which shares the numeric column
+                    StringColumn groupCol = StringColumn.create("group_for_" + numericColName, dataSet.rowCount());
+                    groupCol.setMissingTo("All");
+                    Table plotTable = Table.create(dataSet.name(), numCol, groupCol);
 
-                // Uklanjanje dummy kolone
-                dataSet.removeColumns(dummyGroupColName);
+                    Figure fig = BoxPlot.create("Boxplot - " + numericColName, plotTable, groupCol.name(), numericColName);
+                    plotOutput.show(fig, "boxplot_" + numericColName);
+                }
                 System.out.println("--------------------------------------------------");
             } else {
                 System.out.println("Column '" + columnName + "' is not numeric and will not be plotted.");
             }
         }
+        return reports;
     }
 
     public void countUniqueValues() {
-        for (Column<?> col : dataSet.columns()) {
-            String colName = col.name();
+        for (ColumnProfile col : getProfile().getColumns()) {
+            String colName = col.getName();
 
-            int uniqueCount = col.unique().size();
-            System.out.println("Column: " + colName + " has " + uniqueCount + " unique values.");
+            long uniqueCount = col.getDistinctEstimate();
+            System.out.println("Column: " + colName + " has approximately " + uniqueCount + " unique values.");
         }
     }
 
@@ -265,31 +260,19 @@ public class DataPreparation {
             NumericColumn<?> numCol = (NumericColumn<?>) col;
 
             if (numCol instanceof DoubleColumn) {
-                DoubleColumn doubleCol = (DoubleColumn) numCol;
-
-                double q1 = doubleCol.quartile1();
-                double q3 = doubleCol.quartile3();
-                double iqr = q3 - q1;
+                OutlierDetector.Bounds bounds = outlierDetector.bounds(numCol);
 
-                double lowerBound = q1 - 1.5 * iqr;
-                double upperBound = q3 + 1.5 * iqr;
-
-                if (lowerBound < 0) {
-                    lowerBound = 0;
+                if (bounds.getLower() < 0) {
+                    bounds = bounds.withLower(Math.min(0, bounds.getUpper()));
                 }
 
-                for (int i = 0; i < doubleCol.size(); i++) {
-                    double value = doubleCol.get(i);
-                    if (value < lowerBound) {
-                        doubleCol.set(i, lowerBound);
-                    } else if (value > upperBound) {
-                        doubleCol.set(i, upperBound);
-                    }
-                }
+                int clipped = outlierDetector.winsorize(numCol, bounds);
 
                 System.out.println("Winsorization completed for column: " + columnName);
-                System.out.println("Lower bound: " + lowerBound);
-                System.out.println("Upper bound: " + upperBound);
+                System.out.println("Lower bound: " + bounds.getLower());
+                System.out.println("Upper bound: " + bounds.getUpper());
+                System.out.println("Clipped values: " + clipped);
+                invalidateProfile();
 
             } else {
                 System.out.println("Column '" + columnName + "' is not a DoubleColumn and cannot be winsorized.");
@@ -305,46 +288,33 @@ public class DataPreparation {
     }
 
     public void statistics() {
-        System.out.println(dataSet.summary());
+        System.out.println(getProfile());
     }
 
     public void columnInfo() {
         System.out.println(dataSet.structure());
     }
 
-    public void plotCategoricalFeatureVsClassTarget(String featureCol, String targetCol) {
-
-        Table grouped = dataSet.countBy(featureCol, targetCol);
-        String countCol = "Count";
+    /**
+     * Counts rows for each pair of feature and target values in a single pass, without plotting.
+     */
+    public CrossTab crossTab(String featureCol, String targetCol) {
+        return CrossTab.of(dataSet, featureCol, targetCol);
+    }
 
-        StringColumn featureStr = grouped.column(featureCol).asStringColumn();
-        StringColumn targetStr = grouped.column(targetCol).asStringColumn();
+    public void plotCategoricalFeatureVsClassTarget(String featureCol, String targetCol) {
 
-        List<String> featureValues = dataSet.column(featureCol).asStringColumn().unique().asList();
-        List<String> targetValues = dataSet.column(targetCol).asStringColumn().unique().asList();
+        CrossTab crossTab = crossTab(featureCol, targetCol);
+        StringColumn featureValues = StringColumn.create("x", crossTab.getRowLabels());
 
         List<BarTrace> traces = new ArrayList<>();
 
-        for (String targetVal : targetValues) {
-            List<String> xValues = new ArrayList<>();
-            List<Number> yValues = new ArrayList<>();
-
-            for (String featureVal : featureValues) {
-
-                Table filtered = grouped.where(
-                        featureStr.isEqualTo(featureVal).and(targetStr.isEqualTo(targetVal))
-                );
-
-                int count = filtered.isEmpty() ? 0 : filtered.intColumn(countCol).get(0);
-                xValues.add(featureVal);
-                yValues.add(count);
-            }
-
+        for (int t = 0; t < crossTab.getColumnLabels().size(); t++) {
             // Kreiranje trace-a
             BarTrace trace = BarTrace.builder(
-                    StringColumn.create("x", xValues),
-                    DoubleColumn.create("y", yValues)
-            ).name(targetVal).build();
+                    featureValues,
+                    DoubleColumn.create("y", crossTab.getColumnCounts(t))
+            ).name(crossTab.getColumnLabels().get(t)).build();
 
             traces.add(trace);
         }
@@ -353,98 +323,124 @@ public class DataPreparation {
                 .title("Plot " + targetCol + " againts " + featureCol)
                 .build();
 
-        Plot.show(new Figure(layout, traces.toArray(new BarTrace[0])));
+        plotOutput.show(new Figure(layout, traces.toArray(new BarTrace[0])), featureCol + "_vs_" + targetCol);
     }
 
+    /**
+     * Plots histogram of feature values for each class. Values are counted into bins in a single pass,
+     * and only bin counts are plotted.
+     */
     public void plotNumericFeatureVsClassTarget(String featureCol, String targetCol) {
+        ClassHistograms.Histogram histogram = new ClassHistograms().compute(dataSet, featureCol, targetCol, getProfile());
+        plotOutput.show(histogram.toFigure(), featureCol + "_by_" + targetCol);
+    }
 
-        IntColumn target = dataSet.intColumn(targetCol);
-        DoubleColumn feature = dataSet.doubleColumn(featureCol);
-
-        String[] colors = {"#1f77b4", "#ff7f0e", "#2ca02c", "#d62728"};
-
-        List<HistogramTrace> traces = new ArrayList<>();
-
-        for (int targetClass : target.unique()) {
-            Table filtered = dataSet.where(target.isEqualTo(targetClass));
-
-            HistogramTrace trace = HistogramTrace.builder(filtered.doubleColumn(featureCol))
-                    .name("Class " + targetClass)
-                    .marker(Marker.builder().color(colors[targetClass % colors.length]).opacity(0.6).build())
-                    .build();
-            traces.add(trace);
-        }
-
-        Layout layout = Layout.builder()
-                .title("Distribution of " + featureCol + " by class " + targetCol)
-                .build();
-
-        Figure fig = new Figure(layout, traces.toArray(new HistogramTrace[0]));
-
-        Plot.show(fig);
+    /**
+     * Computes histograms of all numeric features for each class in one parallel pass, and shows them or writes them to plot output
+     * together with histograms.csv with all bin counts.
+     */
+    public List<ClassHistograms.Histogram> plotFeatureDistributions(String targetCol, int bins, ClassHistograms.Binning binning) {
+        List<ClassHistograms.Histogram> histograms = new ClassHistograms().bins(bins)
+                                                                          .binning(binning)
+                                                                          .compute(dataSet, targetCol, getProfile());
+        ClassHistograms.write(histograms, plotOutput);
+        return histograms;
     }
     
  public void checkClassBalance(String columnName) { 
-     checkClassBalance(dataSet, columnName);
+     checkClassBalance(dataSet, columnName, plotOutput, "class_balance_" + columnName);
  }   
-    
- public static void checkClassBalance(Table dataSet, String columnName) { 
-        Table negativeExamples = dataSet.where(t -> t.intColumn(columnName).isEqualTo(0));
-        Table positiveExamples = dataSet.where(t -> t.intColumn(columnName).isEqualTo(1));
 
-        int numPositive = positiveExamples.rowCount();
-        int numNegative = dataSet.rowCount() - numPositive;
+ /**
+  * Counts rows of each class and prints them, optionally showing bar plot.
+  * @return number of rows for each class value
+  */
+ public Map<Integer, Integer> checkClassBalance(String columnName, boolean plot) {
+     return checkClassBalance(dataSet, columnName, plot ? plotOutput : null, "class_balance_" + columnName);
+ }
+
+ public static void checkClassBalance(Table dataSet, String columnName) { 
+     checkClassBalance(dataSet, columnName, true);
+ }
+
+ public static Map<Integer, Integer> checkClassBalance(Table dataSet, String columnName, boolean plot) { 
+     return checkClassBalance(dataSet, columnName, plot ? PlotOutput.interactive() : null, "class_balance_" + columnName);
+ }
+
+ /**
+  * Counts rows of each class and prints them, showing bar plot through the given plot output unless it is null.
+  * @param plotName name of the plot file when plot output writes to directory
+  * @return number of rows for each class value
+  */
+ public static Map<Integer, Integer> checkClassBalance(Table dataSet, String columnName, PlotOutput plotOutput, String plotName) { 
+        Map<Integer, Integer> classCounts = StratifiedSampler.countClasses(dataSet, columnName);
+
+        int numPositive = classCounts.getOrDefault(1, 0);
+        int numNegative = classCounts.getOrDefault(0, 0);
         
+        if (plotOutput != null) {
+            plotOutput.show(classBalanceFigure(classCounts), plotName);
+        }
+
+        System.out.println("Positive class rows: "+numPositive);
+        System.out.println("Negative class rows: "+numNegative);   
+        return classCounts;
+    }
+
+    private static Figure classBalanceFigure(Map<Integer, Integer> classCounts) {
         String[] categories = {"Not Fraud", "Fraud"};
-        int[] values = {numNegative, numPositive};
-        
+        int[] values = {classCounts.getOrDefault(0, 0), classCounts.getOrDefault(1, 0)};
+
         Table barTable = Table.create("Dist bar")
                 .addColumns(
                         StringColumn.create("Categories", categories),
                         IntColumn.create("Values", values)
                 );
-        Plot.show(VerticalBarPlot.create("Distribution of Fraud and Not Fraud Examples", barTable, "Categories", "Values"));
-
-        System.out.println("Positive class rows: "+numPositive);
-        System.out.println("Negative class rows: "+numNegative);   
+        return VerticalBarPlot.create("Distribution of Fraud and Not Fraud Examples", barTable, "Categories", "Values");
     }
        
+    /**
+     * Creates data set for neural network training, where the last column is used as target and all others as inputs.
+     * Columns are copied in bulk into one contiguous buffer, see {@link ColumnarDataSetBuilder} to select other columns.
+     */
     public static TabularDataSet<MLDataItem> createDataSet(Table table) {
-        TabularDataSet<MLDataItem> dataSet= new TabularDataSet(29, 1);
-        String[] colNAmes = new String[table.columns().size()];
-        table.columnNames().toArray(colNAmes);
-        dataSet.setColumnNames(colNAmes);
-        
-        for (int i = 0; i < table.rowCount(); i++) {            
-            Row row = table.row(i);
-            
-            float[] in = new float[29];
-            for(int c=0; c<29; c++) {
-                in[c] = (float)row.getDouble(c);
-            }
-            
-            float[] targetOut = new float[1];
-            targetOut[0] = row.getInt(29);
-                        
-            MLDataItem tableRow = new TabularDataSet.Item(in, targetOut);
-            dataSet.add(tableRow);
-        }
-        return dataSet;
+        return ColumnarDataSetBuilder.builder().build(table);
     }
     
+    /**
+     * Creates sample with all positive rows and the same number of randomly chosen negative rows, without replacement.
+     * See {@link StratifiedSampler} for other class ratios and sampling of data read in chunks.
+     */
     public static Table createBalancedSample(Table dataTable, String columnName, long rndSeed) {
-        Table negative = dataTable.where(t -> t.intColumn(columnName).isEqualTo(0));
-        Table positive = dataTable.where(t -> t.intColumn(columnName).isEqualTo(1));
-        
-        Table balancedSample = Table.create("Balanced CCF", positive.columns());
-               
-        Random random = new Random(rndSeed);
-        IntStream rndIdxs = random.ints(positive.rowCount(), 0, negative.rowCount());              
-        int[] randomIdx = rndIdxs.toArray();        
-                 
-        balancedSample.append(negative.rows(randomIdx));
+        Table balancedSample = new StratifiedSampler(columnName).seed(rndSeed).sample(dataTable);
+        balancedSample.setName("Balanced CCF");
         return balancedSample;
     }    
 
+    /**
+     * Randomly splits table rows into training and test table, so that preprocessing can be fitted on training rows only.
+     *
+     * @param trainingPart part of rows used for training, e.g. 0.6 for 60%
+     * @return array with training and test table
+     */
+    public static Table[] trainTestSplit(Table dataTable, double trainingPart, long rndSeed) {
+        if (trainingPart <= 0 || trainingPart >= 1) {
+            throw new IllegalArgumentException("Training part must be in range (0, 1): " + trainingPart);
+        }
+        int[] rows = IntStream.range(0, dataTable.rowCount()).toArray();
+        Random random = new Random(rndSeed);
+        for (int i = rows.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = rows[i];
+            rows[i] = rows[j];
+            rows[j] = tmp;
+        }
+        int trainingRows = (int) Math.round(rows.length * trainingPart);
+        return new Table[] {
+            dataTable.rows(Arrays.copyOfRange(rows, 0, trainingRows)),
+            dataTable.rows(Arrays.copyOfRange(rows, trainingRows, rows.length))
+        };
+    }
+
 
 }
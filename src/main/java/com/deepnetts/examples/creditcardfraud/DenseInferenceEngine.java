@@ -0,0 +1,237 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import deepnetts.net.FeedForwardNetwork;
+import deepnetts.net.layers.AbstractLayer;
+import deepnetts.net.layers.FullyConnectedLayer;
+import deepnetts.net.layers.InputLayer;
+import deepnetts.net.layers.OutputLayer;
+import deepnetts.net.layers.activation.ActivationType;
+import deepnetts.util.Tensor;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Inference for small dense networks, with weights of a trained {@link FeedForwardNetwork} copied into flat primitive arrays.
+ * Weights of each layer are stored by output unit, so every output is a single dot product over contiguous memory.
+ *
+ * Dot products use JDK Vector API when jdk.incubator.vector module is available (run with --add-modules jdk.incubator.vector),
+ * and plain loops otherwise. In {@link Precision#INT8} mode weights are quantized to 8 bits with a scale per output unit,
+ * and inputs of each layer are quantized with a scale per transaction, which makes weights 4x smaller at the cost of precision.
+ *
+ * Engine is a copy of network weights at the time it was created, so later training of the network does not change it.
+ * Instances are immutable and thread safe.
+ */
+public class DenseInferenceEngine {
+
+    public enum Precision { FLOAT32, INT8 }
+
+    private static final DenseKernel KERNEL = createKernel();
+
+    private final DenseKernel kernel;
+    private final Precision precision;
+    private final int[] widths;             // width of input layer, followed by width of each dense layer
+    private final int[] strides;            // widths padded to multiple of kernel lanes
+    private final ActivationType[] activations;
+    private final float[][] weights;
+    private final float[][] biases;
+    private final byte[][] quantizedWeights;
+    private final float[][] weightScales;
+    private final int maxWidth;
+
+    private DenseInferenceEngine(FeedForwardNetwork network, Precision precision, DenseKernel kernel) {
+        List<AbstractLayer> layers = network.getLayers();
+        if (layers.size() < 2 || !(layers.get(0) instanceof InputLayer)) {
+            throw new IllegalArgumentException("Network must start with input layer");
+        }
+        int numLayers = layers.size() - 1;
+        this.kernel = kernel;
+        this.precision = precision;
+        this.widths = new int[numLayers + 1];
+        this.strides = new int[numLayers + 1];
+        this.activations = new ActivationType[numLayers];
+        this.weights = new float[numLayers][];
+        this.biases = new float[numLayers][];
+        this.quantizedWeights = new byte[numLayers][];
+        this.weightScales = new float[numLayers][];
+
+        widths[0] = layers.get(0).getWidth();
+        strides[0] = pad(widths[0]);
+        int max = strides[0];
+        for (int l = 0; l < numLayers; l++) {
+            AbstractLayer layer = layers.get(l + 1);
+            if (!(layer instanceof FullyConnectedLayer || layer instanceof OutputLayer) || layer.getHeight() > 1 || layer.getDepth() > 1) {
+                throw new IllegalArgumentException("Unsupported layer: " + layer.getClass().getSimpleName());
+            }
+            int numInputs = widths[l];
+            int stride = strides[l];
+            int numOutputs = layer.getWidth();
+            widths[l + 1] = numOutputs;
+            strides[l + 1] = pad(numOutputs);
+            max = Math.max(max, strides[l + 1]);
+            activations[l] = layer.getActivationType();
+            switch (activations[l]) {
+                case LINEAR: case SIGMOID: case TANH: case RELU: case LEAKY_RELU:
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported activation: " + activations[l]);
+            }
+
+            // layer weight tensor is indexed by (input, output), engine stores weights of each output together, padded with zeros
+            Tensor tensor = layer.getWeights();
+            float[] w = new float[stride * numOutputs];
+            for (int o = 0; o < numOutputs; o++) {
+                for (int i = 0; i < numInputs; i++) {
+                    w[o * stride + i] = tensor.get(i, o);
+                }
+            }
+            biases[l] = layer.getBiases().clone();
+            if (precision == Precision.INT8) {
+                quantize(w, stride, numOutputs, l);
+            } else {
+                weights[l] = w;
+            }
+        }
+        this.maxWidth = max;
+    }
+
+    /**
+     * Creates engine with float weights.
+     */
+    public static DenseInferenceEngine of(FeedForwardNetwork network) {
+        return new DenseInferenceEngine(network, Precision.FLOAT32, KERNEL);
+    }
+
+    public static DenseInferenceEngine of(FeedForwardNetwork network, Precision precision) {
+        return new DenseInferenceEngine(network, precision, KERNEL);
+    }
+
+    /**
+     * Creates engine with the given kernel instead of the best available one, used to test both kernels.
+     */
+    static DenseInferenceEngine of(FeedForwardNetwork network, Precision precision, DenseKernel kernel) {
+        return new DenseInferenceEngine(network, precision, kernel);
+    }
+
+    /**
+     * Returns true if Vector API is used for dot products.
+     */
+    public static boolean isVectorized() {
+        return !(KERNEL instanceof DenseKernel.Scalar);
+    }
+
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    public int getNumInputs() {
+        return widths[0];
+    }
+
+    /**
+     * Returns the first output of the network for the given inputs, which is fraud probability for binary classifier.
+     */
+    public float classify(float[] inputs) {
+        if (inputs.length != widths[0]) {
+            throw new IllegalArgumentException("Transaction has " + inputs.length + " values, expected " + widths[0]);
+        }
+        float[] probability = new float[1];
+        classifyBatch(inputs, 0, widths[0], 1, probability, 0);
+        return probability[0];
+    }
+
+    /**
+     * Scores transactions stored one after another in the given flat array, see {@link FeedForwardNetBatchClassifier#classifyBatch(float[], int, int, int, float[], int)}.
+     */
+    public void classifyBatch(float[] batch, int offset, int stride, int count, float[] probabilities, int probabilitiesOffset) {
+        int numInputs = widths[0];
+        if (stride < numInputs) {
+            throw new IllegalArgumentException("Stride must be at least number of inputs " + numInputs + ", but was " + stride);
+        }
+        if (count > 0 && (offset < 0 || offset + (long) (count - 1) * stride + numInputs > batch.length)) {
+            throw new IllegalArgumentException("Batch array is too small for " + count + " transactions");
+        }
+        if (probabilitiesOffset < 0 || probabilitiesOffset + count > probabilities.length) {
+            throw new IllegalArgumentException("Probabilities array is too small for " + count + " results");
+        }
+
+        // scratch buffers are allocated once per batch, so engine can be shared between threads
+        float[] current = new float[maxWidth];
+        float[] next = new float[maxWidth];
+        byte[] quantized = precision == Precision.INT8 ? new byte[maxWidth] : null;
+        for (int t = 0, pos = offset; t < count; t++, pos += stride) {
+            System.arraycopy(batch, pos, current, 0, numInputs);
+            Arrays.fill(current, numInputs, strides[0], 0);
+            for (int l = 0; l < activations.length; l++) {
+                if (quantized != null) {
+                    float inputScale = quantizeInputs(current, strides[l], quantized);
+                    kernel.denseInt8(quantizedWeights[l], weightScales[l], biases[l], quantized, inputScale, strides[l], next, widths[l + 1]);
+                } else {
+                    kernel.dense(weights[l], biases[l], current, strides[l], next, widths[l + 1]);
+                }
+                kernel.activate(activations[l], next, widths[l + 1]);
+                Arrays.fill(next, widths[l + 1], strides[l + 1], 0);
+                float[] tmp = current;
+                current = next;
+                next = tmp;
+            }
+            probabilities[probabilitiesOffset + t] = current[0];
+        }
+    }
+
+    public void classifyBatch(float[] batch, int count, float[] probabilities) {
+        classifyBatch(batch, 0, widths[0], count, probabilities, 0);
+    }
+
+    private int pad(int width) {
+        int lanes = kernel.lanes();
+        return (width + lanes - 1) / lanes * lanes;
+    }
+
+    /**
+     * Quantizes weights of each output symmetrically to [-127, 127].
+     */
+    private void quantize(float[] w, int numInputs, int numOutputs, int layer) {
+        byte[] q = new byte[w.length];
+        float[] scales = new float[numOutputs];
+        for (int o = 0; o < numOutputs; o++) {
+            float maxAbs = 0;
+            for (int i = 0; i < numInputs; i++) {
+                maxAbs = Math.max(maxAbs, Math.abs(w[o * numInputs + i]));
+            }
+            scales[o] = maxAbs > 0 ? maxAbs / 127 : 1;
+            for (int i = 0; i < numInputs; i++) {
+                q[o * numInputs + i] = (byte) Math.round(w[o * numInputs + i] / scales[o]);
+            }
+        }
+        quantizedWeights[layer] = q;
+        weightScales[layer] = scales;
+    }
+
+    private static float quantizeInputs(float[] inputs, int count, byte[] quantized) {
+        float maxAbs = 0;
+        for (int i = 0; i < count; i++) {
+            maxAbs = Math.max(maxAbs, Math.abs(inputs[i]));
+        }
+        float scale = maxAbs > 0 ? maxAbs / 127 : 1;
+        for (int i = 0; i < count; i++) {
+            quantized[i] = (byte) Math.round(inputs[i] / scale);
+        }
+        return scale;
+    }
+
+    /**
+     * Creates Vector API kernel if jdk.incubator.vector module is present, scalar kernel otherwise.
+     * Vector kernel is loaded by name, so this class does not depend on the module.
+     */
+    private static DenseKernel createKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (DenseKernel) Class.forName(DenseInferenceEngine.class.getPackageName() + ".VectorDenseKernel")
+                                          .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError ex) {
+                // fall back to scalar kernel
+            }
+        }
+        return new DenseKernel.Scalar();
+    }
+}
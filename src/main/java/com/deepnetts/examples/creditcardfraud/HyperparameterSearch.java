@@ -0,0 +1,515 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import deepnetts.net.FeedForwardNetwork;
+import deepnetts.net.layers.activation.ActivationType;
+import deepnetts.net.loss.LossType;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.visrec.ml.eval.EvaluationMetrics;
+import tech.tablesaw.api.Table;
+
+/**
+ * Searches for the best network architecture and training settings using stratified k-fold cross-validation.
+ *
+ * Trials are either all combinations of the given values (grid search), or the given number of randomly chosen combinations (random search).
+ * Every trial trains one independent {@link FeedForwardNetwork} for each fold, and all trainings run concurrently on a thread pool of bounded size,
+ * by default one thread per processor. Preprocessing is fitted on the training folds only, so nothing leaks from validation fold.
+ *
+ * Usage: HyperparameterSearch [csv file] [model file]
+ */
+public class HyperparameterSearch {
+
+    public static final int DEFAULT_FOLDS = 5;
+
+    /**
+     * Architecture and training settings of one trial.
+     */
+    public static final class Parameters {
+        private final int[] hiddenLayers;
+        private final float learningRate;
+        private final float stopError;
+        private final long stopEpochs;
+
+        public Parameters(int[] hiddenLayers, float learningRate, float stopError, long stopEpochs) {
+            if (hiddenLayers.length == 0) {
+                throw new IllegalArgumentException("At least one hidden layer is required");
+            }
+            this.hiddenLayers = hiddenLayers.clone();
+            this.learningRate = learningRate;
+            this.stopError = stopError;
+            this.stopEpochs = stopEpochs;
+        }
+
+        public int[] getHiddenLayers() {
+            return hiddenLayers.clone();
+        }
+
+        public float getLearningRate() {
+            return learningRate;
+        }
+
+        public float getStopError() {
+            return stopError;
+        }
+
+        public long getStopEpochs() {
+            return stopEpochs;
+        }
+
+        /**
+         * Creates untrained binary classifier network with TANH hidden layers, configured with these settings.
+         */
+        public FeedForwardNetwork createNetwork(int numInputs) {
+            FeedForwardNetwork.Builder builder = FeedForwardNetwork.builder().addInputLayer(numInputs);
+            for (int size : hiddenLayers) {
+                builder.addFullyConnectedLayer(size, ActivationType.TANH);
+            }
+            FeedForwardNetwork neuralNet = builder.addOutputLayer(1, ActivationType.SIGMOID)
+                                                  .lossFunction(LossType.CROSS_ENTROPY)
+                                                  .build();
+            neuralNet.getTrainer().setStopError(stopError)
+                                  .setStopEpochs(stopEpochs)
+                                  .setLearningRate(learningRate);
+            return neuralNet;
+        }
+
+        @Override
+        public String toString() {
+            return "hidden=" + Arrays.toString(hiddenLayers) + ", learningRate=" + learningRate
+                    + ", stopError=" + stopError + ", stopEpochs=" + stopEpochs;
+        }
+    }
+
+    /**
+     * Metrics of one trial, averaged over folds, or exception of the trial if training of any of its folds failed.
+     */
+    public static final class Result {
+        private final Parameters parameters;
+        private final EvaluationMetrics metrics;
+        private final float[] foldScores;
+        private final long wallTimeMillis;
+        private final Throwable failure;
+
+        Result(Parameters parameters, EvaluationMetrics metrics, float[] foldScores, long wallTimeMillis) {
+            this(parameters, metrics, foldScores, wallTimeMillis, null);
+        }
+
+        private Result(Parameters parameters, EvaluationMetrics metrics, float[] foldScores, long wallTimeMillis, Throwable failure) {
+            this.parameters = parameters;
+            this.metrics = metrics;
+            this.foldScores = foldScores;
+            this.wallTimeMillis = wallTimeMillis;
+            this.failure = failure;
+        }
+
+        /**
+         * Creates result of a trial which failed, without metrics and fold scores, so its score is NaN.
+         */
+        static Result failed(Parameters parameters, Throwable failure, long wallTimeMillis) {
+            return new Result(parameters, new EvaluationMetrics(), new float[0], wallTimeMillis, failure);
+        }
+
+        public boolean isFailed() {
+            return failure != null;
+        }
+
+        /**
+         * Returns exception thrown by training of the first failed fold, or null if trial did not fail.
+         */
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        public Parameters getParameters() {
+            return parameters;
+        }
+
+        /**
+         * Returns accuracy, precision, recall and F1 score, each averaged over folds.
+         */
+        public EvaluationMetrics getMetrics() {
+            return metrics;
+        }
+
+        /**
+         * Returns value of the selection metric for each fold.
+         */
+        public float[] getFoldScores() {
+            return foldScores;
+        }
+
+        /**
+         * Returns mean of fold scores, or NaN if trial failed.
+         */
+        public float getScore() {
+            if (isFailed()) {
+                return Float.NaN;
+            }
+            float sum = 0;
+            for (float score : foldScores) {
+                sum += score;
+            }
+            return sum / foldScores.length;
+        }
+
+        public float getScoreStd() {
+            if (isFailed()) {
+                return Float.NaN;
+            }
+            float mean = getScore();
+            float sum = 0;
+            for (float score : foldScores) {
+                sum += (score - mean) * (score - mean);
+            }
+            return (float) Math.sqrt(sum / foldScores.length);
+        }
+
+        /**
+         * Returns time from start of the first to the end of the last fold training of this trial.
+         */
+        public long getWallTimeMillis() {
+            return wallTimeMillis;
+        }
+
+        @Override
+        public String toString() {
+            if (isFailed()) {
+                return String.format("%s | failed: %s | %d ms", parameters, failure, wallTimeMillis);
+            }
+            return String.format("%s | score: %.4f +/- %.4f | accuracy: %.4f, precision: %.4f, recall: %.4f, F1: %.4f | %d ms",
+                    parameters, getScore(), getScoreStd(), metrics.get(EvaluationMetrics.ACCURACY), metrics.get(EvaluationMetrics.PRECISION),
+                    metrics.get(EvaluationMetrics.RECALL), metrics.get(EvaluationMetrics.F1SCORE), wallTimeMillis);
+        }
+    }
+
+    private static final String[] METRICS = {EvaluationMetrics.ACCURACY, EvaluationMetrics.PRECISION, EvaluationMetrics.RECALL, EvaluationMetrics.F1SCORE};
+
+    private final List<int[]> hiddenLayers = new ArrayList<>();
+    private float[] learningRates = {0.01f};
+    private float[] stopErrors = {0.02f};
+    private long[] stopEpochs = {500};
+    private int folds = DEFAULT_FOLDS;
+    private int randomTrials;
+    private long seed = 1;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private String targetColumn;
+    private String metric = EvaluationMetrics.F1SCORE;
+    private PreprocessingPipeline.Builder preprocessing = PreprocessingPipeline.builder();
+
+    private List<Result> results;
+    private FeedForwardNetwork bestNetwork;
+    private PreprocessingPipeline bestPreprocessing;
+
+    /**
+     * Adds hidden layer sizes of one architecture to try, e.g. hiddenLayers(32) or hiddenLayers(64, 16). Default is a single layer of 32 units.
+     */
+    public HyperparameterSearch hiddenLayers(int... sizes) {
+        hiddenLayers.add(sizes.clone());
+        return this;
+    }
+
+    public HyperparameterSearch learningRates(float... learningRates) {
+        this.learningRates = learningRates.clone();
+        return this;
+    }
+
+    public HyperparameterSearch stopErrors(float... stopErrors) {
+        this.stopErrors = stopErrors.clone();
+        return this;
+    }
+
+    public HyperparameterSearch stopEpochs(long... stopEpochs) {
+        this.stopEpochs = stopEpochs.clone();
+        return this;
+    }
+
+    public HyperparameterSearch folds(int folds) {
+        if (folds < 2) {
+            throw new IllegalArgumentException("Number of folds must be at least 2: " + folds);
+        }
+        this.folds = folds;
+        return this;
+    }
+
+    /**
+     * Tries only the given number of random combinations instead of all of them. Default is 0, which tries all combinations.
+     */
+    public HyperparameterSearch randomTrials(int randomTrials) {
+        if (randomTrials < 0) {
+            throw new IllegalArgumentException("Number of random trials must not be negative: " + randomTrials);
+        }
+        this.randomTrials = randomTrials;
+        return this;
+    }
+
+    public HyperparameterSearch seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Sets max number of networks trained at the same time. Default is number of processors.
+     */
+    public HyperparameterSearch threads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Sets target column, which is also used to stratify folds. Default is the last column.
+     */
+    public HyperparameterSearch targetColumn(String targetColumn) {
+        this.targetColumn = targetColumn;
+        return this;
+    }
+
+    /**
+     * Sets metric used to choose the best trial, one of EvaluationMetrics.ACCURACY, PRECISION, RECALL or F1SCORE (default).
+     */
+    public HyperparameterSearch metric(String metric) {
+        if (!Arrays.asList(METRICS).contains(metric)) {
+            throw new IllegalArgumentException("Unsupported metric: " + metric);
+        }
+        this.metric = metric;
+        return this;
+    }
+
+    /**
+     * Sets preprocessing which is fitted on training folds of each trial, and on all data for the best model.
+     */
+    public HyperparameterSearch preprocessing(PreprocessingPipeline.Builder preprocessing) {
+        this.preprocessing = preprocessing;
+        return this;
+    }
+
+    /**
+     * Returns parameters of all trials, either the full grid or its random subset.
+     */
+    public List<Parameters> trials() {
+        List<int[]> architectures = hiddenLayers.isEmpty() ? List.of(new int[] {32}) : hiddenLayers;
+        List<Parameters> grid = new ArrayList<>();
+        for (int[] layers : architectures) {
+            for (float learningRate : learningRates) {
+                for (float stopError : stopErrors) {
+                    for (long epochs : stopEpochs) {
+                        grid.add(new Parameters(layers, learningRate, stopError, epochs));
+                    }
+                }
+            }
+        }
+        if (randomTrials == 0 || randomTrials >= grid.size()) {
+            return grid;
+        }
+        // partial Fisher-Yates shuffle picks distinct combinations
+        Random random = new Random(seed);
+        for (int i = 0; i < randomTrials; i++) {
+            int j = i + random.nextInt(grid.size() - i);
+            Parameters tmp = grid.get(i);
+            grid.set(i, grid.get(j));
+            grid.set(j, tmp);
+        }
+        return new ArrayList<>(grid.subList(0, randomTrials));
+    }
+
+    /**
+     * Runs cross-validation of all trials, and then trains the network with the best parameters on all data.
+     *
+     * A trial whose training fails is recorded with its exception, and the search continues with the other trials.
+     *
+     * @return results of all trials, the best first and failed trials last
+     * @throws IllegalStateException if all trials failed
+     */
+    public List<Result> run(Table data) throws InterruptedException {
+        String target = targetColumn != null ? targetColumn : data.columnNames().get(data.columnCount() - 1);
+        PreprocessingPipeline.Builder trialPreprocessing = preprocessing.copy().targetColumn(target);
+        List<Parameters> trials = trials();
+        Table[][] foldTables = splitFolds(data, target);
+
+        System.out.printf(">> Running %d trials with %d-fold cross-validation on %d threads\n", trials.size(), folds, threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new TrainingThreadFactory());
+        try {
+            List<List<Future<FoldResult>>> futures = new ArrayList<>();
+            for (Parameters parameters : trials) {
+                List<Future<FoldResult>> trialFutures = new ArrayList<>();
+                for (Table[] trainValidation : foldTables) {
+                    trialFutures.add(executor.submit(() -> trainFold(trialPreprocessing, parameters, trainValidation[0], trainValidation[1])));
+                }
+                futures.add(trialFutures);
+            }
+
+            results = new ArrayList<>();
+            for (int t = 0; t < trials.size(); t++) {
+                Result result = collect(trials.get(t), futures.get(t));
+                System.out.printf(">> Trial %d/%d: %s\n", t + 1, trials.size(), result);
+                results.add(result);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        results.sort(Comparator.comparing(Result::isFailed).thenComparing(Comparator.comparingDouble(Result::getScore).reversed()));
+
+        Result best = results.get(0);
+        if (best.isFailed()) {
+            throw new IllegalStateException("All trials failed", best.getFailure());
+        }
+        System.out.printf(">> Best trial: %s\n", best);
+        bestPreprocessing = trialPreprocessing.fit(data);
+        bestNetwork = best.getParameters().createNetwork(bestPreprocessing.getNumInputs());
+        bestNetwork.train(bestPreprocessing.transform(data));
+        return results;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /**
+     * Returns network with the best parameters, trained on all data.
+     */
+    public FeedForwardNetwork getBestNetwork() {
+        return bestNetwork;
+    }
+
+    public PreprocessingPipeline getBestPreprocessing() {
+        return bestPreprocessing;
+    }
+
+    /**
+     * Saves the best network, and its preprocessing next to it.
+     */
+    public void saveBest(String modelFile) throws IOException {
+        if (bestNetwork == null) {
+            throw new IllegalStateException("Search has not been run");
+        }
+        bestNetwork.save(modelFile);
+        bestPreprocessing.save(PreprocessingPipeline.fileFor(modelFile));
+    }
+
+    /**
+     * Returns training and validation table for each fold.
+     */
+    private Table[][] splitFolds(Table data, String target) {
+        int[] foldOf = new StratifiedSampler(target).seed(seed).folds(data, folds);
+        Table[][] foldTables = new Table[folds][];
+        for (int f = 0; f < folds; f++) {
+            int[] train = new int[foldOf.length];
+            int[] validation = new int[foldOf.length];
+            int trainSize = 0;
+            int validationSize = 0;
+            for (int row = 0; row < foldOf.length; row++) {
+                if (foldOf[row] == f) {
+                    validation[validationSize++] = row;
+                } else if (foldOf[row] >= 0) {
+                    train[trainSize++] = row;
+                }
+            }
+            foldTables[f] = new Table[] {
+                data.rows(Arrays.copyOf(train, trainSize)),
+                data.rows(Arrays.copyOf(validation, validationSize))
+            };
+        }
+        return foldTables;
+    }
+
+    /**
+     * Trains and evaluates one network. Data sets are created for each training, since training may shuffle them.
+     */
+    private static FoldResult trainFold(PreprocessingPipeline.Builder preprocessing, Parameters parameters, Table train, Table validation) {
+        long start = System.currentTimeMillis();
+        PreprocessingPipeline pipeline = preprocessing.fit(train);
+        FeedForwardNetwork neuralNet = parameters.createNetwork(pipeline.getNumInputs());
+        neuralNet.train(pipeline.transform(train));
+        EvaluationMetrics metrics = neuralNet.test(pipeline.transform(validation));
+        return new FoldResult(metrics, start, System.currentTimeMillis());
+    }
+
+    private Result collect(Parameters parameters, List<Future<FoldResult>> futures) throws InterruptedException {
+        float[] sums = new float[METRICS.length];
+        float[] scores = new float[futures.size()];
+        long start = Long.MAX_VALUE;
+        long end = Long.MIN_VALUE;
+        for (int f = 0; f < futures.size(); f++) {
+            FoldResult fold;
+            try {
+                fold = futures.get(f).get();
+            } catch (ExecutionException ex) {
+                // remaining folds of this trial are not needed, other trials go on
+                for (Future<FoldResult> future : futures) {
+                    future.cancel(false);
+                }
+                return Result.failed(parameters, ex.getCause(), start == Long.MAX_VALUE ? 0 : end - start);
+            }
+            for (int m = 0; m < METRICS.length; m++) {
+                sums[m] += fold.metrics.get(METRICS[m]);
+            }
+            scores[f] = fold.metrics.get(metric);
+            start = Math.min(start, fold.start);
+            end = Math.max(end, fold.end);
+        }
+        EvaluationMetrics mean = new EvaluationMetrics();
+        for (int m = 0; m < METRICS.length; m++) {
+            mean.set(METRICS[m], sums[m] / futures.size());
+        }
+        return new Result(parameters, mean, scores, end - start);
+    }
+
+    private static final class FoldResult {
+        final EvaluationMetrics metrics;
+        final long start;
+        final long end;
+
+        FoldResult(EvaluationMetrics metrics, long start, long end) {
+            this.metrics = metrics;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static final class TrainingThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "hyperparameter-search-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String dataFile = args.length > 0 ? args[0] : "creditcard-balanced.csv";
+        String modelFile = args.length > 1 ? args[1] : "credit_card_fraud_best.dnet";
+
+        Table dataTable;
+        try (MappedCsvReader csvReader = new MappedCsvReader(Paths.get(dataFile), ',', true)) {
+            dataTable = csvReader.readAll().toTable(dataFile);
+        }
+
+        HyperparameterSearch search = new HyperparameterSearch()
+                .hiddenLayers(16)
+                .hiddenLayers(32)
+                .hiddenLayers(80)
+                .learningRates(0.001f, 0.01f)
+                .stopErrors(0.02f, 0.2f)
+                .stopEpochs(500)
+                .targetColumn("Class")
+                .preprocessing(PreprocessingPipeline.builder().dropColumns("Time").scaling(PreprocessingPipeline.Scaling.MAX));
+        search.run(dataTable);
+        search.saveBest(modelFile);
+        System.out.println("Best model saved to " + modelFile);
+    }
+}
@@ -0,0 +1,384 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.apache.commons.math3.stat.inference.KolmogorovSmirnovTest;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.FloatColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.LongColumn;
+import tech.tablesaw.api.ShortColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.columns.Column;
+
+/**
+ * Replaces missing values in table columns.
+ * Missing values of each column are found in a single scan and kept in a bitmap, which is then used to fill them.
+ *
+ * Categorical columns are filled with the most frequent value, counted directly on column values.
+ * Numeric columns are filled with mean if values are normally distributed according to Kolmogorov-Smirnov test,
+ * or with median otherwise. Test is performed on a random sample of bounded size, so it does not depend on column length.
+ * Several columns are imputed concurrently.
+ */
+public class ImputationEngine {
+
+    public static final int DEFAULT_SAMPLE_SIZE = 10_000;
+    public static final double NORMALITY_P_VALUE = 0.05;
+
+    public enum Method { MODE, MEAN, MEDIAN }
+
+    /**
+     * Describes how missing values in one column have been replaced.
+     */
+    public static final class Result {
+        private final String columnName;
+        private final int missingCount;
+        private final Method method;
+        private final Object value;
+        private final double pValue;
+
+        Result(String columnName, int missingCount, Method method, Object value, double pValue) {
+            this.columnName = columnName;
+            this.missingCount = missingCount;
+            this.method = method;
+            this.value = value;
+            this.pValue = pValue;
+        }
+
+        public String getColumnName() {
+            return columnName;
+        }
+
+        public int getMissingCount() {
+            return missingCount;
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+
+        /**
+         * Returns value used to replace missing values, null if column has no non missing values.
+         */
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * Returns p-value of normality test for numeric columns, NaN for categorical.
+         */
+        public double getPValue() {
+            return pValue;
+        }
+
+        @Override
+        public String toString() {
+            return columnName + ": " + missingCount + " missing values replaced with " + method + " " + value;
+        }
+    }
+
+    private final int sampleSize;
+    private final long seed;
+
+    public ImputationEngine() {
+        this(DEFAULT_SAMPLE_SIZE, 1);
+    }
+
+    /**
+     * @param sampleSize max number of values used for normality test
+     * @param seed random seed used for sampling
+     */
+    public ImputationEngine(int sampleSize, long seed) {
+        if (sampleSize < 2) {
+            throw new IllegalArgumentException("Sample size must be at least 2: " + sampleSize);
+        }
+        this.sampleSize = sampleSize;
+        this.seed = seed;
+    }
+
+    /**
+     * Imputes given columns concurrently: string columns as categorical, other columns as numeric.
+     * Results are returned in the same order as columns.
+     */
+    public List<Result> impute(List<? extends Column<?>> columns) {
+        return columns.parallelStream()
+                      .map(col -> col instanceof StringColumn ? imputeCategorical(col) : imputeNumeric(col))
+                      .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns bitmap with set bits for rows with missing values.
+     */
+    public static BitSet missingMask(Column<?> column) {
+        int size = column.size();
+        BitSet mask = new BitSet(size);
+        if (column instanceof DoubleColumn) {
+            DoubleColumn dc = (DoubleColumn) column;
+            for (int i = 0; i < size; i++) {
+                if (Double.isNaN(dc.getDouble(i))) {
+                    mask.set(i);
+                }
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                if (column.isMissing(i)) {
+                    mask.set(i);
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Replaces missing values with the most frequent value in column.
+     * If several values are equally frequent, the one which appears first is used.
+     */
+    public Result imputeCategorical(Column<?> column) {
+        BitSet missing = missingMask(column);
+        int missingCount = missing.cardinality();
+        int size = column.size();
+
+        Object mode = null;
+        if (column instanceof StringColumn) {
+            StringColumn sc = (StringColumn) column;
+            Map<String, int[]> counts = new LinkedHashMap<>();
+            for (int i = missing.nextClearBit(0); i < size; i = missing.nextClearBit(i + 1)) {
+                counts.computeIfAbsent(sc.get(i), k -> new int[1])[0]++;
+            }
+            int best = 0;
+            for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+                if (entry.getValue()[0] > best) { // strictly greater, so first value wins ties
+                    best = entry.getValue()[0];
+                    mode = entry.getKey();
+                }
+            }
+            if (mode != null && missingCount > 0) {
+                for (int i = missing.nextSetBit(0); i >= 0; i = missing.nextSetBit(i + 1)) {
+                    sc.set(i, (String) mode);
+                }
+            }
+        } else {
+            LongCountMap counts = new LongCountMap();
+            for (int i = missing.nextClearBit(0); i < size; i = missing.nextClearBit(i + 1)) {
+                counts.add(key(column, i));
+            }
+            int best = counts.maxEntry();
+            if (best >= 0) {
+                mode = fill(column, missing, counts.keyAt(best));
+            }
+        }
+        return new Result(column.name(), missingCount, Method.MODE, mode, Double.NaN);
+    }
+
+    /**
+     * Replaces missing values in numeric column with mean or median, depending on normality test.
+     */
+    public Result imputeNumeric(Column<?> column) {
+        BitSet missing = missingMask(column);
+        int missingCount = missing.cardinality();
+        int size = column.size();
+        int n = size - missingCount;
+
+        double[] values = new double[n];
+        double sum = 0;
+        int pos = 0;
+        for (int i = missing.nextClearBit(0); i < size; i = missing.nextClearBit(i + 1)) {
+            double v = doubleValue(column, i);
+            values[pos++] = v;
+            sum += v;
+        }
+        if (n == 0) {
+            return new Result(column.name(), missingCount, Method.MEDIAN, null, Double.NaN);
+        }
+        double mean = sum / n;
+        double squares = 0;
+        for (double v : values) {
+            squares += (v - mean) * (v - mean);
+        }
+        double std = n > 1 ? Math.sqrt(squares / (n - 1)) : 0;
+
+        double pValue = Double.NaN;
+        boolean isNormal = false;
+        if (std > 0) {
+            double[] sample = sample(values);
+            pValue = new KolmogorovSmirnovTest().kolmogorovSmirnovTest(new NormalDistribution(mean, std), sample);
+            isNormal = pValue > NORMALITY_P_VALUE;
+        }
+
+        double value = isNormal ? mean : median(values);
+        if (missingCount > 0) {
+            fill(column, missing, value);
+        }
+        return new Result(column.name(), missingCount, isNormal ? Method.MEAN : Method.MEDIAN, value, pValue);
+    }
+
+    /**
+     * Returns random sample without replacement of at most sampleSize values.
+     * Values array is reordered, but it still contains the same values.
+     */
+    private double[] sample(double[] values) {
+        if (values.length <= sampleSize) {
+            return values;
+        }
+        Random random = new Random(seed);
+        for (int i = 0; i < sampleSize; i++) { // partial Fisher-Yates shuffle
+            int j = i + random.nextInt(values.length - i);
+            double tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+        return Arrays.copyOf(values, sampleSize);
+    }
+
+    /**
+     * Returns median using quick select, averaging two middle values for even length like Tablesaw median.
+     * Values array is reordered.
+     */
+    static double median(double[] values) {
+        int n = values.length;
+        double upper = select(values, n / 2);
+        if ((n & 1) == 1) {
+            return upper;
+        }
+        double lower = values[0]; // largest value in the lower half
+        for (int i = 1; i < n / 2; i++) {
+            if (values[i] > lower) {
+                lower = values[i];
+            }
+        }
+        return lower + (upper - lower) / 2;
+    }
+
+    /**
+     * Partially sorts array so that k-th smallest value is at position k, smaller values before and larger after it.
+     */
+    private static double select(double[] a, int k) {
+        int left = 0;
+        int right = a.length - 1;
+        while (left < right) {
+            double pivot = a[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (a[i] < pivot) {
+                    i++;
+                }
+                while (a[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    double tmp = a[i];
+                    a[i] = a[j];
+                    a[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                break;
+            }
+        }
+        return a[k];
+    }
+
+    private static long key(Column<?> column, int row) {
+        if (column instanceof IntColumn) {
+            return ((IntColumn) column).getInt(row);
+        } else if (column instanceof LongColumn) {
+            return ((LongColumn) column).getLong(row);
+        } else if (column instanceof ShortColumn) {
+            return ((ShortColumn) column).getShort(row);
+        } else if (column instanceof DoubleColumn) {
+            double v = ((DoubleColumn) column).getDouble(row);
+            return Double.doubleToLongBits(v == 0 ? 0.0 : v);
+        } else if (column instanceof FloatColumn) {
+            double v = ((FloatColumn) column).getFloat(row);
+            return Double.doubleToLongBits(v == 0 ? 0.0 : v);
+        }
+        throw new IllegalArgumentException("Column '" + column.name() + "' has unsupported type: " + column.type());
+    }
+
+    private static double doubleValue(Column<?> column, int row) {
+        if (column instanceof DoubleColumn) {
+            return ((DoubleColumn) column).getDouble(row);
+        } else if (column instanceof IntColumn) {
+            return ((IntColumn) column).getInt(row);
+        } else if (column instanceof LongColumn) {
+            return ((LongColumn) column).getLong(row);
+        } else if (column instanceof ShortColumn) {
+            return ((ShortColumn) column).getShort(row);
+        } else if (column instanceof FloatColumn) {
+            return ((FloatColumn) column).getFloat(row);
+        }
+        throw new IllegalArgumentException("Column '" + column.name() + "' is not numeric: " + column.type());
+    }
+
+    /**
+     * Sets all rows in mask to the value encoded as key, and returns the value as column type.
+     */
+    private static Object fill(Column<?> column, BitSet missing, long key) {
+        if (column instanceof IntColumn) {
+            IntColumn ic = (IntColumn) column;
+            for (int i = missing.nextSetBit(0); i >= 0; i = missing.nextSetBit(i + 1)) {
+                ic.set(i, (int) key);
+            }
+            return (int) key;
+        } else if (column instanceof LongColumn) {
+            LongColumn lc = (LongColumn) column;
+            for (int i = missing.nextSetBit(0); i >= 0; i = missing.nextSetBit(i + 1)) {
+                lc.set(i, key);
+            }
+            return key;
+        } else if (column instanceof ShortColumn) {
+            ShortColumn sc = (ShortColumn) column;
+            for (int i = missing.nextSetBit(0); i >= 0; i = missing.nextSetBit(i + 1)) {
+                sc.set(i, (short) key);
+            }
+            return (short) key;
+        }
+        double value = Double.longBitsToDouble(key);
+        fill(column, missing, value);
+        return value;
+    }
+
+    private static void fill(Column<?> column, BitSet missing, double value) {
+        if (column instanceof DoubleColumn) {
+            DoubleColumn dc = (DoubleColumn) column;
+            for (int i = missing.nextSetBit(0); i >= 0; i = missing.nextSetBit(i + 1)) {
+                dc.set(i, value);
+            }
+        } else if (column instanceof FloatColumn) {
+            FloatColumn fc = (FloatColumn) column;
+            for (int i = missing.nextSetBit(0); i >= 0; i = missing.nextSetBit(i + 1)) {
+                fc.set(i, (float) value);
+            }
+        } else if (column instanceof IntColumn) {
+            IntColumn ic = (IntColumn) column;
+            for (int i = missing.nextSetBit(0); i >= 0; i = missing.nextSetBit(i + 1)) {
+                ic.set(i, (int) Math.round(value));
+            }
+        } else if (column instanceof LongColumn) {
+            LongColumn lc = (LongColumn) column;
+            for (int i = missing.nextSetBit(0); i >= 0; i = missing.nextSetBit(i + 1)) {
+                lc.set(i, Math.round(value));
+            }
+        } else if (column instanceof ShortColumn) {
+            ShortColumn sc = (ShortColumn) column;
+            for (int i = missing.nextSetBit(0); i >= 0; i = missing.nextSetBit(i + 1)) {
+                sc.set(i, (short) Math.round(value));
+            }
+        } else {
+            throw new IllegalArgumentException("Column '" + column.name() + "' is not numeric: " + column.type());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from primitive long keys to counts, which remembers order in which keys were first added.
+ * Used for counting values without boxing them.
+ */
+class LongCountMap {
+
+    private long[] keys;
+    private int[] slotEntry;     // index of entry for each slot, -1 if slot is empty
+    private long[] entryKeys;    // keys in insertion order
+    private long[] entryCounts;
+    private int size;
+
+    LongCountMap() {
+        this(16);
+    }
+
+    LongCountMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2) - 1) << 1;
+        keys = new long[capacity];
+        slotEntry = new int[capacity];
+        Arrays.fill(slotEntry, -1);
+        entryKeys = new long[Math.max(4, expectedSize)];
+        entryCounts = new long[entryKeys.length];
+    }
+
+    /**
+     * Increments count for the given key, and returns its entry index.
+     */
+    int add(long key) {
+        return add(key, 1);
+    }
+
+    int add(long key, long count) {
+        int entry = findOrInsert(key);
+        entryCounts[entry] += count;
+        return entry;
+    }
+
+    /**
+     * Returns entry index for the given key, or -1 if key is not in map.
+     */
+    int indexOf(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) DistinctCounter.mix(key) & mask;
+        while (slotEntry[slot] != -1) {
+            if (keys[slot] == key) {
+                return slotEntry[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long keyAt(int entry) {
+        return entryKeys[entry];
+    }
+
+    long countAt(int entry) {
+        return entryCounts[entry];
+    }
+
+    /**
+     * Returns entry index of the key with the highest count, ties are resolved in favour of the key added first.
+     * Returns -1 for empty map.
+     */
+    int maxEntry() {
+        int best = -1;
+        for (int i = 0; i < size; i++) {
+            if (best == -1 || entryCounts[i] > entryCounts[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private int findOrInsert(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) DistinctCounter.mix(key) & mask;
+        while (slotEntry[slot] != -1) {
+            if (keys[slot] == key) {
+                return slotEntry[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        int entry = newEntry(key);
+        keys[slot] = key;
+        slotEntry[slot] = entry;
+        if (size * 2 > keys.length) {
+            rehash();
+        }
+        return entry;
+    }
+
+    private int newEntry(long key) {
+        if (size == entryKeys.length) {
+            entryKeys = Arrays.copyOf(entryKeys, size * 2);
+            entryCounts = Arrays.copyOf(entryCounts, size * 2);
+        }
+        entryKeys[size] = key;
+        return size++;
+    }
+
+    private void rehash() {
+        int capacity = keys.length * 2;
+        int mask = capacity - 1;
+        long[] newKeys = new long[capacity];
+        int[] newSlotEntry = new int[capacity];
+        Arrays.fill(newSlotEntry, -1);
+        for (int i = 0; i < keys.length; i++) {
+            if (slotEntry[i] != -1) {
+                int slot = (int) DistinctCounter.mix(keys[i]) & mask;
+                while (newSlotEntry[slot] != -1) {
+                    slot = (slot + 1) & mask;
+                }
+                newKeys[slot] = keys[i];
+                newSlotEntry[slot] = slotEntry[i];
+            }
+        }
+        keys = newKeys;
+        slotEntry = newSlotEntry;
+    }
+}
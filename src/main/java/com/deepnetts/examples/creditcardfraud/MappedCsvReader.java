@@ -0,0 +1,433 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads numeric CSV files through memory mapped file regions, and writes values directly into primitive float columns.
+ * Values are parsed from bytes, without creating String objects for fields or lines.
+ * Empty, quoted missing or non numeric values are stored as NaN.
+ *
+ * Can be used in streaming mode, where file is read in chunks of given number of rows using {@link #chunks(int)},
+ * or in bulk mode, where all rows are read at once using {@link #readAll()}.
+ *
+ * Files larger than 2Gb are supported, since file is mapped in regions of limited size.
+ */
+public class MappedCsvReader implements Closeable {
+
+    private static final int DEFAULT_REGION_SIZE = 64 * 1024 * 1024;
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                                                   1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final byte separator;
+    private final String[] columnNames;
+    private final int regionSize;
+
+    private MappedByteBuffer region;
+    private long regionStart;   // file position of the first byte in current region
+    private int pos;            // position within current region
+    private int lastNewline;    // position of the last line end within current region, or -1
+
+    public MappedCsvReader(String csvFile) throws IOException {
+        this(Paths.get(csvFile), ',', true);
+    }
+
+    public MappedCsvReader(Path csvFile, char separator, boolean hasHeader) throws IOException {
+        this(csvFile, separator, hasHeader, DEFAULT_REGION_SIZE);
+    }
+
+    MappedCsvReader(Path csvFile, char separator, boolean hasHeader, int regionSize) throws IOException {
+        this.channel = FileChannel.open(csvFile, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.separator = (byte) separator;
+        this.regionSize = regionSize;
+        mapRegion(0);
+
+        if (hasHeader) {
+            this.columnNames = readHeader();
+        } else {
+            int numCols = countFirstLineFields();
+            this.columnNames = new String[numCols];
+            for (int i = 0; i < numCols; i++) {
+                columnNames[i] = "C" + i;
+            }
+        }
+    }
+
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+    /**
+     * Reads all remaining rows into a single chunk.
+     */
+    public ColumnChunk readAll() {
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1024, estimateRemainingRows()));
+        float[][] columns = new float[columnNames.length][capacity];
+        int rows = 0;
+
+        while (true) {
+            if (rows == capacity) {
+                capacity += Math.min(capacity >> 1, Integer.MAX_VALUE - 8 - capacity);
+                for (int c = 0; c < columns.length; c++) {
+                    columns[c] = Arrays.copyOf(columns[c], capacity);
+                }
+            }
+            if (!readRow(columns, rows)) {
+                break;
+            }
+            rows++;
+        }
+        return new ColumnChunk(columnNames, columns, rows);
+    }
+
+    /**
+     * Reads all remaining rows directly into a data set, applying the given preprocessing to each row as it is parsed.
+     * Columns which are not used by pipeline are parsed but not stored.
+     */
+    public ColumnarDataSet readDataSet(PreprocessingPipeline pipeline) {
+        int[] idxs = pipeline.columnIndexes(columnNames);
+        int numInputs = pipeline.getNumInputs();
+        int stride = idxs.length;
+        float[][] row = new float[columnNames.length][1];
+
+        int capacity = (int) Math.min((Integer.MAX_VALUE - 8) / stride, Math.max(1024, estimateRemainingRows()));
+        float[] values = new float[capacity * stride];
+        int rows = 0;
+        while (readRow(row, 0)) {
+            if (rows == capacity) {
+                capacity += Math.min(capacity >> 1, (Integer.MAX_VALUE - 8) / stride - capacity);
+                values = Arrays.copyOf(values, capacity * stride);
+            }
+            int pos = rows * stride;
+            for (int i = 0; i < numInputs; i++) {
+                values[pos + i] = pipeline.transform(i, row[idxs[i]][0]);
+            }
+            values[pos + numInputs] = row[idxs[numInputs]][0];
+            rows++;
+        }
+        return new ColumnarDataSet(values, rows, numInputs, 1, pipeline.dataSetColumns());
+    }
+
+    /**
+     * Returns iterator which reads file in chunks with specified number of rows.
+     * The last chunk may have fewer rows. Each chunk is using its own arrays, so it is safe to keep them.
+     */
+    public Iterator<ColumnChunk> chunks(int chunkRows) {
+        if (chunkRows <= 0) {
+            throw new IllegalArgumentException("Chunk size must be greater than zero: " + chunkRows);
+        }
+        return new Iterator<ColumnChunk>() {
+            private ColumnChunk next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    next = readChunk(chunkRows);
+                }
+                return next != null;
+            }
+
+            @Override
+            public ColumnChunk next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ColumnChunk chunk = next;
+                next = null;
+                return chunk;
+            }
+        };
+    }
+
+    /**
+     * Reads up to specified number of rows, or returns null if end of file has been reached.
+     */
+    public ColumnChunk readChunk(int maxRows) {
+        float[][] columns = new float[columnNames.length][maxRows];
+        int rows = 0;
+        while (rows < maxRows && readRow(columns, rows)) {
+            rows++;
+        }
+        return rows == 0 ? null : new ColumnChunk(columnNames, columns, rows);
+    }
+
+    /**
+     * Parses next non empty line into the specified row of given columns.
+     *
+     * @return false if end of file has been reached
+     */
+    boolean readRow(float[][] columns, int row) {
+        while (true) {
+            if (!ensureLine()) {
+                return false;
+            }
+            byte b = region.get(pos);
+            if (b == '\n' || b == '\r') {  // skip empty lines
+                pos++;
+                continue;
+            }
+            break;
+        }
+
+        int col = 0;
+        int limit = region.limit();
+        while (col < columns.length) {
+            float value = parseField(limit);
+            columns[col++][row] = value;
+            if (pos >= limit) {
+                break;
+            }
+            byte b = region.get(pos);
+            if (b == separator) {
+                pos++;
+            } else { // end of line
+                break;
+            }
+        }
+        while (col < columns.length) { // fill missing trailing fields
+            columns[col++][row] = Float.NaN;
+        }
+        skipToNextLine(limit);
+        return true;
+    }
+
+    /**
+     * Makes sure that the whole line starting at current position is within mapped region.
+     *
+     * @return false if there are no more bytes in file
+     */
+    private boolean ensureLine() {
+        if (regionStart + pos >= fileSize) {
+            return false;
+        }
+        if (regionStart + region.limit() == fileSize) {
+            return true; // last region contains the rest of the file
+        }
+        if (pos <= lastNewline) {
+            return true;
+        }
+        if (pos == 0) {
+            throw new UncheckedIOException(new IOException("Line starting at file position " + regionStart + " is longer than " + regionSize + " bytes"));
+        }
+        mapRegion(regionStart + pos);
+        return ensureLine();
+    }
+
+    private void mapRegion(long start) {
+        try {
+            long size = Math.min(regionSize, fileSize - start);
+            region = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            regionStart = start;
+            pos = 0;
+            lastNewline = region.limit() - 1;
+            while (lastNewline >= 0 && region.get(lastNewline) != '\n') {
+                lastNewline--;
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void skipToNextLine(int limit) {
+        while (pos < limit && region.get(pos) != '\n') {
+            pos++;
+        }
+        if (pos < limit) {
+            pos++;
+        }
+    }
+
+    /**
+     * Parses number at current position, and leaves position at the separator or end of line.
+     * Uses exact fast path for numbers with up to 18 significant digits and small exponents,
+     * which covers all values in credit card data set, and falls back to Double.parseDouble otherwise,
+     * so the result is always the same as (float) Double.parseDouble(field).
+     */
+    private float parseField(int limit) {
+        int start = pos;
+        int end = start;
+        while (end < limit) {
+            byte b = region.get(end);
+            if (b == separator || b == '\n' || b == '\r') {
+                break;
+            }
+            end++;
+        }
+        pos = end;
+
+        // trim spaces and quotes
+        int s = start, e = end;
+        while (s < e && (region.get(s) == ' ' || region.get(s) == '"')) {
+            s++;
+        }
+        while (e > s && (region.get(e - 1) == ' ' || region.get(e - 1) == '"')) {
+            e--;
+        }
+        if (s == e) {
+            return Float.NaN;
+        }
+
+        int i = s;
+        boolean negative = false;
+        byte b = region.get(i);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+
+        for (; i < e; i++) {
+            b = region.get(i);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            anyDigit = true;
+            if (mantissa == 0 && b == '0') {
+                continue; // leading zeros are not significant
+            }
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+            } else {
+                return parseSlow(s, e);
+            }
+        }
+        if (i < e && region.get(i) == '.') {
+            i++;
+            for (; i < e; i++) {
+                b = region.get(i);
+                if (b < '0' || b > '9') {
+                    break;
+                }
+                anyDigit = true;
+                if (mantissa == 0 && b == '0') {
+                    exponent--;
+                    continue;
+                }
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    exponent--;
+                } else {
+                    return parseSlow(s, e);
+                }
+            }
+        }
+        if (!anyDigit) {
+            return Float.NaN; // NaN, NULL, - and other missing value indicators
+        }
+        if (i < e && (region.get(i) == 'e' || region.get(i) == 'E')) {
+            i++;
+            boolean negativeExp = false;
+            if (i < e && (region.get(i) == '-' || region.get(i) == '+')) {
+                negativeExp = region.get(i) == '-';
+                i++;
+            }
+            int exp = 0;
+            int expStart = i;
+            for (; i < e; i++) {
+                b = region.get(i);
+                if (b < '0' || b > '9') {
+                    break;
+                }
+                if (exp < 10000) {
+                    exp = exp * 10 + (b - '0');
+                }
+            }
+            if (i == expStart) {
+                return Float.NaN;
+            }
+            exponent += negativeExp ? -exp : exp;
+        }
+        if (i != e) {
+            return Float.NaN; // trailing garbage, not a number
+        }
+
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+            value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return parseSlow(s, e);
+        }
+        return (float) (negative ? -value : value);
+    }
+
+    private float parseSlow(int s, int e) {
+        byte[] bytes = new byte[e - s];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = region.get(s + i);
+        }
+        try {
+            return (float) Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException ex) {
+            return Float.NaN;
+        }
+    }
+
+    private String[] readHeader() {
+        if (!ensureLine()) {
+            return new String[0];
+        }
+        int start = pos;
+        skipToNextLine(region.limit());
+        byte[] bytes = new byte[pos - start];
+        region.get(start, bytes);
+        String line = new String(bytes, StandardCharsets.UTF_8).trim();
+        if (!line.isEmpty() && line.charAt(0) == '\uFEFF') {
+            line = line.substring(1);
+        }
+        String[] names = line.split(java.util.regex.Pattern.quote(String.valueOf((char) separator)), -1);
+        for (int i = 0; i < names.length; i++) {
+            names[i] = names[i].trim().replace("\"", "");
+        }
+        return names;
+    }
+
+    private int countFirstLineFields() {
+        if (!ensureLine()) {
+            return 0;
+        }
+        int count = 1;
+        for (int i = pos; i < region.limit() && region.get(i) != '\n'; i++) {
+            if (region.get(i) == separator) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private long estimateRemainingRows() {
+        // estimate number of rows from the length of the first line in current region
+        int end = pos;
+        while (end < region.limit() && region.get(end) != '\n') {
+            end++;
+        }
+        int lineLength = Math.max(1, end - pos + 1);
+        return (fileSize - regionStart - pos) / lineLength + 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        region = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,225 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges transactions submitted concurrently from many threads into micro batches, which are scored by a single thread.
+ *
+ * Batch window is the time batcher waits for more transactions after the first one has arrived.
+ * Window adapts to the observed latency: when p99 of the time recent transactions spent in the batcher exceeds the target, window is halved,
+ * and when there is enough headroom it is increased in small steps, which gives larger batches and better throughput.
+ */
+public class MicroBatcher implements AutoCloseable {
+
+    private static final long INITIAL_WINDOW_MICROS = 200;
+    private static final long MAX_WINDOW_MICROS = 10_000;
+    private static final long WINDOW_STEP_MICROS = 50;
+    private static final long ADJUST_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final FeedForwardNetBatchClassifier classifier;
+    private final int maxBatchSize;
+    private final long targetP99Micros;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private LatencyHistogram recentLatency = new LatencyHistogram();  // used only by worker thread
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong transactionCount = new AtomicLong();
+    private volatile long windowMicros = INITIAL_WINDOW_MICROS;
+
+    public MicroBatcher(FeedForwardNetBatchClassifier classifier, int maxBatchSize, long targetP99Micros) {
+        this.classifier = classifier;
+        this.maxBatchSize = maxBatchSize;
+        this.targetP99Micros = targetP99Micros;
+        this.worker = new Thread(this::run, "micro-batcher");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Submits transaction for scoring, returns future which is completed with fraud probability,
+     * or cancelled if batcher is closed before the transaction is scored.
+     *
+     * @throws IllegalStateException if batcher has been closed
+     */
+    public CompletableFuture<Float> submit(float[] transaction) {
+        if (transaction.length != classifier.getNumInputs()) {
+            throw new IllegalArgumentException("Transaction has " + transaction.length + " values, expected " + classifier.getNumInputs());
+        }
+        if (!running) {
+            throw new IllegalStateException("Batcher has been closed");
+        }
+        Pending pending = new Pending(transaction, System.nanoTime());
+        queue.add(pending);
+        // close may have run after the check above, and worker may have drained the queue before the add,
+        // in which case nobody else would complete the future. If worker has already taken it, it completes or cancels it.
+        if (!running && queue.remove(pending)) {
+            pending.result.cancel(false);
+            throw new IllegalStateException("Batcher has been closed");
+        }
+        return pending.result;
+    }
+
+    private void run() {
+        int numInputs = classifier.getNumInputs();
+        float[] batch = new float[maxBatchSize * numInputs];
+        float[] probabilities = new float[maxBatchSize];
+        List<Pending> pendings = new ArrayList<>(maxBatchSize);
+        long lastAdjust = System.nanoTime();
+
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                pendings.add(first);
+                long deadline = first.submitted + windowMicros * 1000;
+                while (pendings.size() < maxBatchSize) {
+                    long wait = deadline - System.nanoTime();
+                    Pending next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    pendings.add(next);
+                }
+
+                int count = pendings.size();
+                for (int i = 0; i < count; i++) {
+                    System.arraycopy(pendings.get(i).transaction, 0, batch, i * numInputs, numInputs);
+                }
+                try {
+                    classifier.classifyBatch(batch, count, probabilities);
+                } catch (RuntimeException ex) {
+                    for (Pending p : pendings) {
+                        p.result.completeExceptionally(ex);
+                    }
+                    pendings.clear();
+                    continue;
+                }
+
+                long now = System.nanoTime();
+                for (int i = 0; i < count; i++) {
+                    Pending p = pendings.get(i);
+                    long micros = (now - p.submitted) / 1000;
+                    queueLatency.record(micros);
+                    recentLatency.record(micros);
+                    p.result.complete(probabilities[i]);
+                }
+                pendings.clear();
+                batchCount.incrementAndGet();
+                transactionCount.addAndGet(count);
+
+                if (now - lastAdjust > ADJUST_INTERVAL_NANOS) {
+                    adjustWindow();
+                    lastAdjust = now;
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        for (Pending p : pendings) {
+            p.result.cancel(false);
+        }
+        Pending p;
+        while ((p = queue.poll()) != null) {
+            p.result.cancel(false);
+        }
+    }
+
+    private void adjustWindow() {
+        if (recentLatency.getCount() == 0) {
+            return;
+        }
+        long p99 = recentLatency.percentile(99);
+        if (p99 > targetP99Micros) {
+            windowMicros = windowMicros / 2;
+        } else if (p99 < targetP99Micros * 8 / 10) {
+            windowMicros = Math.min(MAX_WINDOW_MICROS, windowMicros + WINDOW_STEP_MICROS);
+        }
+        recentLatency = new LatencyHistogram();
+    }
+
+    /**
+     * Returns histogram of time from submit to result of each transaction, which includes waiting in queue and scoring of its batch.
+     */
+    public LatencyHistogram getQueueLatency() {
+        return queueLatency;
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    public long getTransactionCount() {
+        return transactionCount.get();
+    }
+
+    public long getWindowMicros() {
+        return windowMicros;
+    }
+
+    public FeedForwardNetBatchClassifier getClassifier() {
+        return classifier;
+    }
+
+    public int getNumInputs() {
+        return classifier.getNumInputs();
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public long getTargetP99Micros() {
+        return targetP99Micros;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Clears latency histogram and counters, e.g. after warm-up, and sets batch window back to its initial value.
+     */
+    public void resetMetrics() {
+        queueLatency.reset();
+        batchCount.set(0);
+        transactionCount.set(0);
+        windowMicros = INITIAL_WINDOW_MICROS;
+    }
+
+    /**
+     * Stops the worker thread. If interrupted while waiting for it, returns with the interrupt flag set.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            worker.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Pending {
+        final float[] transaction;
+        final long submitted;
+        final CompletableFuture<Float> result = new CompletableFuture<>();
+
+        Pending(float[] transaction, long submitted) {
+            this.transaction = transaction;
+            this.submitted = submitted;
+        }
+    }
+}
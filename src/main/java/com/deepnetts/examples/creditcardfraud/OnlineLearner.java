@@ -0,0 +1,350 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import deepnetts.net.FeedForwardNetwork;
+import deepnetts.net.layers.AbstractLayer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Updates a model incrementally as labeled feedback, such as chargebacks, arrives, without retraining from scratch.
+ *
+ * Feedback is queued and a single worker thread applies it in mini batches, one gradient step per batch, to a shadow copy of the network.
+ * After each step, weights of the shadow network are copied into a new immutable {@link Version}, which is published with an atomic reference swap.
+ * Scoring threads read the current version without locking, and never see a network in the middle of an update.
+ *
+ * The last few versions are kept, so the model can be rolled back, for example when monitoring shows it got worse.
+ * Rollback publishes the previous version and restores its weights in the shadow network, so later updates continue from it.
+ *
+ * Example:
+ * <pre>
+ * OnlineLearner learner = new OnlineLearner(neuralNet, pipeline).batchSize(64).learningRate(0.001f);
+ * float probability = learner.classify(rawTransaction);    // scoring threads
+ * learner.feedback(rawTransaction, 1);                      // when chargeback arrives
+ * </pre>
+ */
+public class OnlineLearner implements AutoCloseable {
+
+    private static final int DEFAULT_BATCH_SIZE = 32;
+    private static final long DEFAULT_MAX_DELAY_MILLIS = 1000;
+    private static final float DEFAULT_LEARNING_RATE = 0.001f;
+    private static final int DEFAULT_HISTORY = 5;
+
+    /**
+     * Snapshot of model weights, used for scoring. Immutable and thread safe.
+     */
+    public static final class Version {
+        private final long number;
+        private final long createdMillis;
+        private final long samples;
+        private final DenseInferenceEngine engine;
+        private final PreprocessingPipeline pipeline;
+        private final float[][] weights;    // copies of layer weights and biases, used to restore shadow network on rollback
+        private final float[][] biases;
+
+        Version(long number, long samples, FeedForwardNetwork network, PreprocessingPipeline pipeline) {
+            this.number = number;
+            this.createdMillis = System.currentTimeMillis();
+            this.samples = samples;
+            this.engine = DenseInferenceEngine.of(network);
+            this.pipeline = pipeline;
+            List<AbstractLayer> layers = network.getLayers();
+            this.weights = new float[layers.size()][];
+            this.biases = new float[layers.size()][];
+            for (int l = 1; l < layers.size(); l++) {
+                weights[l] = layers.get(l).getWeights().getValues().clone();
+                biases[l] = layers.get(l).getBiases().clone();
+            }
+        }
+
+        /**
+         * Returns version number, starting with 0 for the initial model.
+         */
+        public long getNumber() {
+            return number;
+        }
+
+        public long getCreatedMillis() {
+            return createdMillis;
+        }
+
+        /**
+         * Returns number of feedback samples the model has been updated with.
+         */
+        public long getSamples() {
+            return samples;
+        }
+
+        public DenseInferenceEngine getEngine() {
+            return engine;
+        }
+
+        /**
+         * Returns fraud probability for the transaction, which is raw if learner has preprocessing pipeline.
+         */
+        public float classify(float[] transaction) {
+            if (pipeline == null) {
+                return engine.classify(transaction);
+            }
+            if (transaction.length != pipeline.getNumRawInputs()) {
+                throw new IllegalArgumentException("Transaction has " + transaction.length + " values, expected " + pipeline.getNumRawInputs());
+            }
+            float[] inputs = new float[pipeline.getNumInputs()];
+            pipeline.transformInputs(transaction, 0, inputs, 0);
+            return engine.classify(inputs);
+        }
+
+        void restore(FeedForwardNetwork network) {
+            List<AbstractLayer> layers = network.getLayers();
+            for (int l = 1; l < layers.size(); l++) {
+                float[] w = layers.get(l).getWeights().getValues();
+                System.arraycopy(weights[l], 0, w, 0, w.length);
+                float[] b = layers.get(l).getBiases();
+                System.arraycopy(biases[l], 0, b, 0, b.length);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Version " + number + " (" + samples + " feedback samples)";
+        }
+    }
+
+    private final FeedForwardNetwork shadow;
+    private final PreprocessingPipeline pipeline;
+    private final AtomicReference<Version> current = new AtomicReference<>();
+    private final Deque<Version> history = new ArrayDeque<>();     // guarded by shadow
+    private final BlockingQueue<float[]> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong failedUpdates = new AtomicLong();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile long maxDelayMillis = DEFAULT_MAX_DELAY_MILLIS;
+    private volatile float learningRate = DEFAULT_LEARNING_RATE;
+    private volatile int historySize = DEFAULT_HISTORY;
+    private long samples;           // guarded by shadow
+    private long lastVersion;       // guarded by shadow
+
+    /**
+     * Creates learner which accepts preprocessed transactions. Given network is copied and not changed by the learner.
+     */
+    public OnlineLearner(FeedForwardNetwork network) {
+        this(network, null);
+    }
+
+    /**
+     * Creates learner which accepts raw transactions and applies given preprocessing. Given network is copied and not changed by the learner.
+     */
+    public OnlineLearner(FeedForwardNetwork network, PreprocessingPipeline pipeline) {
+        if (pipeline != null && pipeline.getNumInputs() != network.getInputLayer().getWidth()) {
+            throw new IllegalArgumentException("Pipeline has " + pipeline.getNumInputs() + " inputs, but network input layer has " + network.getInputLayer().getWidth());
+        }
+        this.shadow = BinaryModel.copy(network);
+        this.pipeline = pipeline;
+        Version initial = new Version(0, 0, shadow, pipeline);
+        current.set(initial);
+        history.addLast(initial);
+        this.worker = new Thread(this::run, "online-learner");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Sets number of feedback samples in one gradient step, default is 32.
+     */
+    public OnlineLearner batchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets max time feedback waits for the batch to fill up, after which a smaller batch is applied, default is 1 second.
+     */
+    public OnlineLearner maxDelayMillis(long maxDelayMillis) {
+        this.maxDelayMillis = maxDelayMillis;
+        return this;
+    }
+
+    /**
+     * Sets learning rate of online updates, which is usually smaller than the one used for initial training.
+     */
+    public OnlineLearner learningRate(float learningRate) {
+        if (!(learningRate > 0)) {
+            throw new IllegalArgumentException("Learning rate must be positive: " + learningRate);
+        }
+        this.learningRate = learningRate;
+        return this;
+    }
+
+    /**
+     * Sets number of versions kept for rollback, including the current one, default is 5.
+     */
+    public OnlineLearner historySize(int historySize) {
+        if (historySize < 2) {
+            throw new IllegalArgumentException("History must keep at least 2 versions: " + historySize);
+        }
+        this.historySize = historySize;
+        return this;
+    }
+
+    /**
+     * Returns the currently published version. Never blocks.
+     */
+    public Version current() {
+        return current.get();
+    }
+
+    /**
+     * Scores transaction with the current version.
+     */
+    public float classify(float[] transaction) {
+        return current.get().classify(transaction);
+    }
+
+    /**
+     * Queues labeled transaction for the next update. Label is 1 for fraud and 0 for legitimate transaction.
+     */
+    public void feedback(float[] transaction, float label) {
+        int expected = pipeline != null ? pipeline.getNumRawInputs() : shadow.getInputLayer().getWidth();
+        if (transaction.length != expected) {
+            throw new IllegalArgumentException("Transaction has " + transaction.length + " values, expected " + expected);
+        }
+        if (!running) {
+            throw new IllegalStateException("Learner has been closed");
+        }
+        float[] inputs = new float[shadow.getInputLayer().getWidth() + 1];
+        if (pipeline != null) {
+            pipeline.transformInputs(transaction, 0, inputs, 0);
+        } else {
+            System.arraycopy(transaction, 0, inputs, 0, transaction.length);
+        }
+        inputs[inputs.length - 1] = label;
+        queue.add(inputs);
+    }
+
+    /**
+     * Publishes the version before the current one, and continues updates from its weights.
+     *
+     * @return the version which is now current
+     * @throws IllegalStateException if there is no earlier version in history
+     */
+    public Version rollback() {
+        synchronized (shadow) {
+            if (history.size() < 2) {
+                throw new IllegalStateException("No earlier version to roll back to");
+            }
+            Version discarded = history.removeLast();
+            Version previous = history.peekLast();
+            previous.restore(shadow);
+            samples = previous.samples;
+            current.set(previous);
+            System.out.printf(">> Rolled back from version %d to version %d\n", discarded.number, previous.number);
+            return previous;
+        }
+    }
+
+    /**
+     * Returns versions available for rollback, the oldest first, the current one last.
+     */
+    public List<Version> getHistory() {
+        synchronized (shadow) {
+            return new ArrayList<>(history);
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getFailedUpdates() {
+        return failedUpdates.get();
+    }
+
+    private void run() {
+        List<float[]> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                float[] first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+                while (batch.size() < batchSize) {
+                    long wait = deadline - System.nanoTime();
+                    float[] next = wait > 0 && running ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                update(batch);
+                batch.clear();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Applies one gradient step over the batch to the shadow network, and publishes the new version.
+     */
+    private void update(List<float[]> batch) {
+        int numInputs = shadow.getInputLayer().getWidth();
+        int stride = numInputs + 1;
+        float[] values = new float[batch.size() * stride];
+        for (int i = 0; i < batch.size(); i++) {
+            System.arraycopy(batch.get(i), 0, values, i * stride, stride);
+        }
+        ColumnarDataSet dataSet = new ColumnarDataSet(values, batch.size(), numInputs, 1, pipeline != null ? pipeline.dataSetColumns() : null);
+
+        synchronized (shadow) {
+            try {
+                shadow.getTrainer().setStopEpochs(1)
+                                   .setStopError(0)
+                                   .setLearningRate(learningRate)
+                                   .setBatchMode(true)
+                                   .setBatchSize(batch.size());
+                shadow.getTrainer().train(dataSet);
+            } catch (RuntimeException ex) {
+                // weights may be partially updated, so go back to the last published version
+                failedUpdates.incrementAndGet();
+                current.get().restore(shadow);
+                System.out.printf(">> Online update failed, discarded %d feedback samples: %s\n", batch.size(), ex);
+                return;
+            }
+            samples += batch.size();
+            Version version = new Version(++lastVersion, samples, shadow, pipeline);
+            history.addLast(version);
+            while (history.size() > historySize) {
+                history.removeFirst();
+            }
+            current.set(version);
+        }
+    }
+
+    /**
+     * Stops accepting feedback, applies feedback already queued, and stops the worker thread.
+     * If interrupted while waiting for the worker, returns with the interrupt flag set.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            worker.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.FloatColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.NumericColumn;
+
+/**
+ * Finds and clips outliers using interquartile range rule: values below q1 - whisker * iqr or above q3 + whisker * iqr
+ * are outliers, where quartiles are estimated with {@link QuantileSketch}.
+ *
+ * Table columns are processed in parallel row ranges, without sorting the column.
+ * For data which does not fit in a single table, sketches of {@link ColumnChunk}s can be merged to get bounds,
+ * which are then used to detect or clip outliers chunk by chunk.
+ */
+public class OutlierDetector {
+
+    public static final double DEFAULT_WHISKER = 1.5;
+    public static final double DEFAULT_RANK_ERROR = 0.001;
+
+    private static final int MIN_ROWS_PER_TASK = 64 * 1024; // multiple of 64, so each task owns whole words of a mask
+
+    private final double rankError;
+    private final double whisker;
+    private final ForkJoinPool pool;
+
+    public OutlierDetector() {
+        this(DEFAULT_RANK_ERROR, DEFAULT_WHISKER, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param rankError rank error of quantile sketches, e.g. 0.01 for 1%
+     * @param whisker multiplier of interquartile range used for bounds, usually 1.5
+     * @param pool pool used to process column row ranges in parallel
+     */
+    public OutlierDetector(double rankError, double whisker, ForkJoinPool pool) {
+        if (whisker < 0) {
+            throw new IllegalArgumentException("Whisker must not be negative: " + whisker);
+        }
+        QuantileSketch.withError(rankError); // validates error
+        this.rankError = rankError;
+        this.whisker = whisker;
+        this.pool = pool;
+    }
+
+    public double getRankError() {
+        return rankError;
+    }
+
+    public double getWhisker() {
+        return whisker;
+    }
+
+    /**
+     * Creates empty sketch with configured rank error, to be filled and merged by caller.
+     */
+    public QuantileSketch newSketch() {
+        return QuantileSketch.withError(rankError);
+    }
+
+    /**
+     * Outlier bounds computed from quartiles.
+     */
+    public static final class Bounds {
+        private final double q1;
+        private final double q3;
+        private final double lower;
+        private final double upper;
+
+        public Bounds(double q1, double q3, double lower, double upper) {
+            if (lower > upper) {
+                throw new IllegalArgumentException("Lower bound " + lower + " is greater than upper bound " + upper);
+            }
+            this.q1 = q1;
+            this.q3 = q3;
+            this.lower = lower;
+            this.upper = upper;
+        }
+
+        public double getQuartile1() {
+            return q1;
+        }
+
+        public double getQuartile3() {
+            return q3;
+        }
+
+        public double getLower() {
+            return lower;
+        }
+
+        public double getUpper() {
+            return upper;
+        }
+
+        /**
+         * Returns bounds with the given lower bound, e.g. to prevent clipping of non negative values below zero.
+         */
+        public Bounds withLower(double lower) {
+            return new Bounds(q1, q3, lower, upper);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + lower + ", " + upper + "]";
+        }
+    }
+
+    /**
+     * Rows with values outside of bounds, kept as bitmaps with set bits for outlier rows.
+     */
+    public static final class Report {
+        private final String columnName;
+        private final Bounds bounds;
+        private final BitSet below;
+        private final BitSet above;
+
+        Report(String columnName, Bounds bounds, BitSet below, BitSet above) {
+            this.columnName = columnName;
+            this.bounds = bounds;
+            this.below = below;
+            this.above = above;
+        }
+
+        public String getColumnName() {
+            return columnName;
+        }
+
+        public Bounds getBounds() {
+            return bounds;
+        }
+
+        /**
+         * Returns rows with values below lower bound.
+         */
+        public BitSet getBelow() {
+            return below;
+        }
+
+        /**
+         * Returns rows with values above upper bound.
+         */
+        public BitSet getAbove() {
+            return above;
+        }
+
+        /**
+         * Returns all outlier rows.
+         */
+        public BitSet getMask() {
+            BitSet mask = (BitSet) below.clone();
+            mask.or(above);
+            return mask;
+        }
+
+        public int getBelowCount() {
+            return below.cardinality();
+        }
+
+        public int getAboveCount() {
+            return above.cardinality();
+        }
+
+        public int getCount() {
+            return getBelowCount() + getAboveCount();
+        }
+
+        @Override
+        public String toString() {
+            return columnName + ": " + getCount() + " outliers outside " + bounds + " (below: " + getBelowCount() + ", above: " + getAboveCount() + ")";
+        }
+    }
+
+    /**
+     * Returns bounds for values in the given sketch.
+     */
+    public Bounds bounds(QuantileSketch sketch) {
+        if (sketch.isEmpty()) {
+            throw new IllegalArgumentException("Cannot compute bounds from empty sketch");
+        }
+        double q1 = sketch.quantile(0.25);
+        double q3 = sketch.quantile(0.75);
+        double iqr = q3 - q1;
+        return new Bounds(q1, q3, q1 - whisker * iqr, q3 + whisker * iqr);
+    }
+
+    public Bounds bounds(NumericColumn<?> column) {
+        return bounds(sketch(column));
+    }
+
+    /**
+     * Builds quantile sketch of column values, using parallel row ranges whose sketches are merged.
+     */
+    public QuantileSketch sketch(NumericColumn<?> column) {
+        return pool.invoke(new SketchTask(column, 0, column.size()));
+    }
+
+    /**
+     * Builds quantile sketch of a column in chunk. Sketches of all chunks can be merged to get bounds for whole data.
+     */
+    public QuantileSketch sketch(ColumnChunk chunk, int columnIndex) {
+        QuantileSketch sketch = newSketch();
+        float[] values = chunk.column(columnIndex);
+        for (int i = 0; i < chunk.getRowCount(); i++) {
+            sketch.update(values[i]);
+        }
+        return sketch;
+    }
+
+    /**
+     * Finds outliers in column using bounds computed from its quartiles. Table is not changed.
+     */
+    public Report detect(NumericColumn<?> column) {
+        return detect(column, bounds(column));
+    }
+
+    /**
+     * Finds values outside of given bounds. Missing values are never outliers.
+     */
+    public Report detect(NumericColumn<?> column, Bounds bounds) {
+        int size = column.size();
+        long[] below = new long[(size + 63) >>> 6];
+        long[] above = new long[below.length];
+        pool.invoke(new RangeTask(0, size, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                double value = column.getDouble(i); // NaN for missing, which fails both comparisons
+                if (value < bounds.lower) {
+                    below[i >>> 6] |= 1L << i;
+                } else if (value > bounds.upper) {
+                    above[i >>> 6] |= 1L << i;
+                }
+            }
+            return 0;
+        }));
+        return new Report(column.name(), bounds, BitSet.valueOf(below), BitSet.valueOf(above));
+    }
+
+    /**
+     * Finds values outside of given bounds in a column of chunk. Rows in report are relative to the chunk.
+     */
+    public Report detect(ColumnChunk chunk, int columnIndex, Bounds bounds) {
+        float[] values = chunk.column(columnIndex);
+        BitSet below = new BitSet(chunk.getRowCount());
+        BitSet above = new BitSet(chunk.getRowCount());
+        for (int i = 0; i < chunk.getRowCount(); i++) {
+            if (values[i] < bounds.lower) {
+                below.set(i);
+            } else if (values[i] > bounds.upper) {
+                above.set(i);
+            }
+        }
+        return new Report(chunk.getColumnNames()[columnIndex], bounds, below, above);
+    }
+
+    /**
+     * Clips column values to bounds in place, in parallel row ranges. Returns number of changed values.
+     * Supports double, float and int columns, missing values are not changed.
+     */
+    public int winsorize(NumericColumn<?> column, Bounds bounds) {
+        RangeFunction clip;
+        if (column instanceof DoubleColumn) {
+            DoubleColumn dc = (DoubleColumn) column;
+            clip = (from, to) -> {
+                int changed = 0;
+                for (int i = from; i < to; i++) {
+                    double value = dc.getDouble(i);
+                    if (value < bounds.lower) {
+                        dc.set(i, bounds.lower);
+                        changed++;
+                    } else if (value > bounds.upper) {
+                        dc.set(i, bounds.upper);
+                        changed++;
+                    }
+                }
+                return changed;
+            };
+        } else if (column instanceof FloatColumn) {
+            FloatColumn fc = (FloatColumn) column;
+            float lower = (float) bounds.lower;
+            float upper = (float) bounds.upper;
+            clip = (from, to) -> {
+                int changed = 0;
+                for (int i = from; i < to; i++) {
+                    float value = fc.getFloat(i);
+                    if (value < lower) {
+                        fc.set(i, lower);
+                        changed++;
+                    } else if (value > upper) {
+                        fc.set(i, upper);
+                        changed++;
+                    }
+                }
+                return changed;
+            };
+        } else if (column instanceof IntColumn) {
+            IntColumn ic = (IntColumn) column;
+            int lower = (int) Math.ceil(bounds.lower);
+            int upper = (int) Math.floor(bounds.upper);
+            clip = (from, to) -> {
+                int changed = 0;
+                for (int i = from; i < to; i++) {
+                    if (ic.isMissing(i)) {
+                        continue;
+                    }
+                    int value = ic.getInt(i);
+                    if (value < lower) {
+                        ic.set(i, lower);
+                        changed++;
+                    } else if (value > upper) {
+                        ic.set(i, upper);
+                        changed++;
+                    }
+                }
+                return changed;
+            };
+        } else {
+            throw new IllegalArgumentException("Column '" + column.name() + "' has unsupported type: " + column.type());
+        }
+        return pool.invoke(new RangeTask(0, column.size(), clip));
+    }
+
+    /**
+     * Clips values of a column in chunk to bounds in place. Returns number of changed values.
+     */
+    public int winsorize(ColumnChunk chunk, int columnIndex, Bounds bounds) {
+        float[] values = chunk.column(columnIndex);
+        float lower = (float) bounds.lower;
+        float upper = (float) bounds.upper;
+        int changed = 0;
+        for (int i = 0; i < chunk.getRowCount(); i++) {
+            if (values[i] < lower) {
+                values[i] = lower;
+                changed++;
+            } else if (values[i] > upper) {
+                values[i] = upper;
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    private final class SketchTask extends RecursiveTask<QuantileSketch> {
+        private static final long serialVersionUID = 1L;
+
+        private final NumericColumn<?> column;
+        private final int from;
+        private final int to;
+
+        SketchTask(NumericColumn<?> column, int from, int to) {
+            this.column = column;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected QuantileSketch compute() {
+            if (to - from > 2 * MIN_ROWS_PER_TASK) {
+                int mid = split(from, to);
+                SketchTask left = new SketchTask(column, from, mid);
+                left.fork();
+                QuantileSketch sketch = new SketchTask(column, mid, to).compute();
+                sketch.merge(left.join());
+                return sketch;
+            }
+            QuantileSketch sketch = newSketch();
+            for (int i = from; i < to; i++) {
+                if (!column.isMissing(i)) {
+                    sketch.update(column.getDouble(i));
+                }
+            }
+            return sketch;
+        }
+    }
+
+    /**
+     * Processes range of rows and returns number of changed values.
+     */
+    private interface RangeFunction {
+        int apply(int from, int to);
+    }
+
+    /**
+     * Splits rows into ranges processed in parallel, and sums number of changed values.
+     * Range bounds are multiples of 64, so tasks never write to the same word of a bitmap.
+     */
+    private static final class RangeTask extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final RangeFunction function;
+
+        RangeTask(int from, int to, RangeFunction function) {
+            this.from = from;
+            this.to = to;
+            this.function = function;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from > 2 * MIN_ROWS_PER_TASK) {
+                int mid = split(from, to);
+                RangeTask left = new RangeTask(from, mid, function);
+                left.fork();
+                int changed = new RangeTask(mid, to, function).compute();
+                return changed + left.join();
+            }
+            return function.apply(from, to);
+        }
+    }
+
+    private static int split(int from, int to) {
+        return ((from + to) >>> 1) & ~63;
+    }
+}
@@ -0,0 +1,288 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import deepnetts.net.FeedForwardNetwork;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Permutation feature importance: how much ROC AUC drops and loss grows when values of one input are shuffled between rows,
+ * which breaks relation of the input to the target while keeping its distribution. Since inputs V1-V28 are anonymized,
+ * this is the practical way to see which inputs the trained network relies on.
+ *
+ * Each input is shuffled several times with different permutations, and confidence interval of the mean drop is computed
+ * from these repeats using Student's t distribution.
+ *
+ * Work is split into tasks, one for each input and repeat, which are run by worker threads. Each worker has its own copy of the
+ * data set buffer, shuffles one column of it in place, scores all rows with {@link DenseInferenceEngine} in one batch,
+ * and restores the column before the next task, so only one column is written per task and buffer is never shared.
+ * Permutation of each task depends only on the seed, input and repeat, so results do not depend on number of threads.
+ */
+public class PermutationImportance {
+
+    private static final float EPSILON = 1e-7f;
+
+    // two sided 97.5% quantiles of t distribution for 1 to 30 degrees of freedom
+    private static final double[] T_975 = {12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+                                           2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+                                           2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042};
+
+    private final double baselineAuc;
+    private final double baselineLoss;
+    private final List<Feature> features;
+    private final long elapsedMillis;
+
+    private PermutationImportance(double baselineAuc, double baselineLoss, List<Feature> features, long elapsedMillis) {
+        this.baselineAuc = baselineAuc;
+        this.baselineLoss = baselineLoss;
+        this.features = features;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Importance of one input.
+     */
+    public static final class Feature {
+        private final String name;
+        private final int index;
+        private final double[] aucDrops;
+        private final double[] lossIncreases;
+
+        Feature(String name, int index, double[] aucDrops, double[] lossIncreases) {
+            this.name = name;
+            this.index = index;
+            this.aucDrops = aucDrops;
+            this.lossIncreases = lossIncreases;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns position of the input in the data set.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns mean drop of ROC AUC over all repeats, negative value means the model was better with shuffled input.
+         */
+        public double getAucDrop() {
+            return mean(aucDrops);
+        }
+
+        /**
+         * Returns half width of 95% confidence interval of the mean AUC drop, or NaN for a single repeat.
+         */
+        public double getAucDropError() {
+            return halfWidth(aucDrops);
+        }
+
+        /**
+         * Returns mean increase of cross entropy loss over all repeats.
+         */
+        public double getLossIncrease() {
+            return mean(lossIncreases);
+        }
+
+        public double getLossIncreaseError() {
+            return halfWidth(lossIncreases);
+        }
+
+        /**
+         * Returns AUC drop of each repeat.
+         */
+        public double[] getAucDrops() {
+            return aucDrops.clone();
+        }
+
+        public double[] getLossIncreases() {
+            return lossIncreases.clone();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-12s AUC drop: %8.5f +- %.5f, loss increase: %8.5f +- %.5f",
+                    name, getAucDrop(), getAucDropError(), getLossIncrease(), getLossIncreaseError());
+        }
+    }
+
+    /**
+     * Computes importance of all inputs of the data set for the network, using all available processors.
+     * Data set must contain preprocessed inputs, such as data set created by {@link PreprocessingPipeline#transform}.
+     *
+     * @param repeats number of different permutations of each input
+     * @param seed seed of random permutations
+     */
+    public static PermutationImportance of(FeedForwardNetwork network, ColumnarDataSet dataSet, int repeats, long seed) {
+        return of(network, dataSet, repeats, seed, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static PermutationImportance of(FeedForwardNetwork network, ColumnarDataSet dataSet, int repeats, long seed, int threads) {
+        if (repeats < 1) {
+            throw new IllegalArgumentException("Number of repeats must be positive: " + repeats);
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+        DenseInferenceEngine engine = DenseInferenceEngine.of(network);
+        int numInputs = dataSet.getNumInputs();
+        if (engine.getNumInputs() != numInputs) {
+            throw new IllegalArgumentException("Data set has " + numInputs + " inputs, network has " + engine.getNumInputs());
+        }
+        if (dataSet.getRowCount() == 0) {
+            throw new IllegalArgumentException("Data set is empty");
+        }
+        long start = System.nanoTime();
+        int rows = dataSet.getRowCount();
+        int stride = dataSet.getStride();
+        float[] values = Arrays.copyOf(dataSet.getValues(), rows * stride);
+        float[] labels = new float[rows];
+        for (int r = 0; r < rows; r++) {
+            labels[r] = values[r * stride + numInputs];
+        }
+
+        float[] scores = new float[rows];
+        engine.classifyBatch(values, 0, stride, rows, scores, 0);
+        double baselineAuc = ScoreEvaluation.of(scores, labels).getRocAuc();
+        double baselineLoss = loss(scores, labels);
+
+        double[][] aucDrops = new double[numInputs][repeats];
+        double[][] lossIncreases = new double[numInputs][repeats];
+        int tasks = numInputs * repeats;
+        AtomicInteger nextTask = new AtomicInteger();
+        Thread[] workers = new Thread[Math.min(threads, tasks)];
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        for (int w = 0; w < workers.length; w++) {
+            workers[w] = new Thread(() -> {
+                float[] buffer = workers.length == 1 ? values : values.clone();
+                float[] column = new float[rows];
+                float[] shuffledScores = new float[rows];
+                try {
+                    for (int task; (task = nextTask.getAndIncrement()) < tasks; ) {
+                        int input = task / repeats;
+                        int repeat = task % repeats;
+                        shuffleColumn(buffer, input, stride, rows, column, new SplittableRandom(seed + 31L * input + 1_000_003L * repeat));
+                        engine.classifyBatch(buffer, 0, stride, rows, shuffledScores, 0);
+                        aucDrops[input][repeat] = baselineAuc - ScoreEvaluation.of(shuffledScores, labels).getRocAuc();
+                        lossIncreases[input][repeat] = loss(shuffledScores, labels) - baselineLoss;
+                        for (int r = 0, pos = input; r < rows; r++, pos += stride) {
+                            buffer[pos] = column[r];
+                        }
+                    }
+                } catch (RuntimeException ex) {
+                    failure.compareAndSet(null, ex);
+                    nextTask.set(tasks);    // other workers stop after their current task
+                }
+            }, "permutation-importance-" + w);
+            workers[w].start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while computing feature importance", ex);
+            }
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        String[] names = dataSet.getColumnNames();
+        List<Feature> features = new ArrayList<>(numInputs);
+        for (int i = 0; i < numInputs; i++) {
+            String name = names != null && i < names.length ? names[i] : "input" + (i + 1);
+            features.add(new Feature(name, i, aucDrops[i], lossIncreases[i]));
+        }
+        features.sort(Comparator.comparingDouble(Feature::getAucDrop).thenComparingDouble(Feature::getLossIncrease).reversed());
+        return new PermutationImportance(baselineAuc, baselineLoss, Collections.unmodifiableList(features), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Saves original values of the column and replaces them with a random permutation of themselves (Fisher-Yates shuffle).
+     */
+    private static void shuffleColumn(float[] buffer, int input, int stride, int rows, float[] original, SplittableRandom random) {
+        for (int r = 0, pos = input; r < rows; r++, pos += stride) {
+            original[r] = buffer[pos];
+        }
+        for (int r = rows - 1; r > 0; r--) {
+            int other = random.nextInt(r + 1);
+            int pos = r * stride + input;
+            int otherPos = other * stride + input;
+            float tmp = buffer[pos];
+            buffer[pos] = buffer[otherPos];
+            buffer[otherPos] = tmp;
+        }
+    }
+
+    /**
+     * Returns mean binary cross entropy.
+     */
+    private static double loss(float[] scores, float[] labels) {
+        double sum = 0;
+        for (int r = 0; r < scores.length; r++) {
+            float p = Math.min(Math.max(scores[r], EPSILON), 1 - EPSILON);
+            sum -= labels[r] > 0.5f ? Math.log(p) : Math.log(1 - p);
+        }
+        return sum / scores.length;
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) {
+            sum += v;
+        }
+        return sum / values.length;
+    }
+
+    private static double halfWidth(double[] values) {
+        int n = values.length;
+        if (n < 2) {
+            return Double.NaN;
+        }
+        double mean = mean(values);
+        double squares = 0;
+        for (double v : values) {
+            squares += (v - mean) * (v - mean);
+        }
+        double t = n - 1 <= T_975.length ? T_975[n - 2] : 1.96;
+        return t * Math.sqrt(squares / (n - 1) / n);
+    }
+
+    public double getBaselineAuc() {
+        return baselineAuc;
+    }
+
+    public double getBaselineLoss() {
+        return baselineLoss;
+    }
+
+    /**
+     * Returns importance of all inputs, most important first.
+     */
+    public List<Feature> getFeatures() {
+        return features;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Permutation importance, baseline ROC AUC: %.4f, loss: %.4f, computed in %d ms", baselineAuc, baselineLoss, elapsedMillis));
+        for (Feature feature : features) {
+            sb.append(System.lineSeparator()).append(feature);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import tech.tablesaw.plotly.Plot;
+import tech.tablesaw.plotly.components.Figure;
+import tech.tablesaw.plotly.components.Page;
+
+/**
+ * Destination of plots: either shown interactively in browser using {@link Plot#show(Figure)},
+ * or written as HTML files to output directory, which does not need browser or display (for batch jobs).
+ */
+public class PlotOutput {
+
+    private final Path directory;
+
+    private PlotOutput(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Shows plots in browser.
+     */
+    public static PlotOutput interactive() {
+        return new PlotOutput(null);
+    }
+
+    /**
+     * Writes plots to HTML files in the given directory, which is created if needed.
+     */
+    public static PlotOutput toDirectory(Path directory) {
+        return new PlotOutput(directory);
+    }
+
+    public boolean isInteractive() {
+        return directory == null;
+    }
+
+    /**
+     * Returns output directory, or null for interactive output.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Shows figure, or writes it to file with the given name (without extension).
+     */
+    public void show(Figure figure, String name) {
+        if (directory == null) {
+            Plot.show(figure);
+            return;
+        }
+        String html = Page.pageBuilder(figure, "target").build().asJavascript();
+        write(fileName(name) + ".html", html);
+    }
+
+    /**
+     * Writes text file with the given name to output directory. Does nothing for interactive output.
+     */
+    public void write(String fileName, String content) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            Files.write(directory.resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not write " + fileName + " to " + directory, ex);
+        }
+    }
+
+    /**
+     * Replaces characters which are not safe in file names.
+     */
+    static String fileName(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]+", "_");
+    }
+}
@@ -0,0 +1,455 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.FloatColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.NumericColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+
+/**
+ * Preprocessing fitted on training data, which is saved together with the model and applied in the same way
+ * to training, test and production data: drops columns, replaces missing values and scales inputs.
+ *
+ * Raw inputs are all columns except the target, in the order of the table pipeline has been fitted on.
+ * Model inputs are raw inputs without dropped columns, where each value is imputed and scaled as (value - offset) / scale.
+ * Transformation is done while values are copied into model input buffer, so it does not need extra passes or copies:
+ * see {@link #transform(Table)}, {@link MappedCsvReader#readDataSet(PreprocessingPipeline)}
+ * and {@link FeedForwardNetBatchClassifier#FeedForwardNetBatchClassifier(deepnetts.net.FeedForwardNetwork, PreprocessingPipeline)}.
+ *
+ * Instances are immutable and thread safe.
+ */
+public class PreprocessingPipeline implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Extension of pipeline file saved next to the model file.
+     */
+    public static final String FILE_EXTENSION = ".prep";
+
+    public enum Imputation {
+        /** missing values are left as NaN */
+        NONE,
+        MEAN,
+        MEDIAN
+    }
+
+    public enum Scaling {
+        NONE,
+        /** divides by max absolute value, like DataSets.scaleToMax */
+        MAX,
+        /** scales to [0, 1] range */
+        MIN_MAX,
+        /** subtracts mean and divides by standard deviation */
+        STANDARD
+    }
+
+    private final String[] rawColumns;
+    private final String[] inputColumns;
+    private final String targetColumn;
+    private final int[] rawIndexes;     // index of each model input in raw inputs
+    private final float[] fill;         // replacement for missing value of each model input
+    private final float[] offset;
+    private final float[] scale;
+    private final Imputation imputation;
+    private final Scaling scaling;
+
+    PreprocessingPipeline(String[] rawColumns, String[] inputColumns, String targetColumn, int[] rawIndexes,
+                                  float[] fill, float[] offset, float[] scale, Imputation imputation, Scaling scaling) {
+        this.rawColumns = rawColumns;
+        this.inputColumns = inputColumns;
+        this.targetColumn = targetColumn;
+        this.rawIndexes = rawIndexes;
+        this.fill = fill;
+        this.offset = offset;
+        this.scale = scale;
+        this.imputation = imputation;
+        this.scaling = scaling;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Configures and fits preprocessing pipeline.
+     */
+    public static final class Builder {
+
+        private final List<String> dropColumns = new ArrayList<>();
+        private String targetColumn;
+        private Imputation imputation = Imputation.MEDIAN;
+        private Scaling scaling = Scaling.MAX;
+
+        private Builder() {
+        }
+
+        public Builder dropColumns(String... columnNames) {
+            dropColumns.addAll(Arrays.asList(columnNames));
+            return this;
+        }
+
+        /**
+         * Sets target column, by default the last column is target.
+         */
+        public Builder targetColumn(String columnName) {
+            this.targetColumn = columnName;
+            return this;
+        }
+
+        public Builder imputation(Imputation imputation) {
+            this.imputation = imputation;
+            return this;
+        }
+
+        public Builder scaling(Scaling scaling) {
+            this.scaling = scaling;
+            return this;
+        }
+
+        /**
+         * Returns new builder with the same settings, which can be changed without changing this builder.
+         */
+        public Builder copy() {
+            Builder copy = new Builder();
+            copy.dropColumns.addAll(dropColumns);
+            copy.targetColumn = targetColumn;
+            copy.imputation = imputation;
+            copy.scaling = scaling;
+            return copy;
+        }
+
+        /**
+         * Fits pipeline to the training data in a single parallel pass, see {@link ColumnProfiler}.
+         */
+        public PreprocessingPipeline fit(Table trainingData) {
+            return fit(ColumnProfiler.profile(trainingData));
+        }
+
+        /**
+         * Fits pipeline to the training data loaded by {@link MappedCsvReader}.
+         */
+        public PreprocessingPipeline fit(ColumnChunk trainingData) {
+            List<ColumnProfile> profiles = new ArrayList<>(trainingData.getColumnCount());
+            for (int col = 0; col < trainingData.getColumnCount(); col++) {
+                ColumnProfile profile = new ColumnProfile(trainingData.getColumnNames()[col], "FLOAT", true);
+                float[] values = trainingData.column(col);
+                for (int row = 0; row < trainingData.getRowCount(); row++) {
+                    profile.add(values[row]);
+                }
+                profiles.add(profile);
+            }
+            return fit(profiles);
+        }
+
+        /**
+         * Fits pipeline using already computed statistics of training data.
+         */
+        public PreprocessingPipeline fit(TableProfile trainingProfile) {
+            return fit(trainingProfile.getColumns());
+        }
+
+        private PreprocessingPipeline fit(List<ColumnProfile> columns) {
+            String target = targetColumn != null ? targetColumn : columns.get(columns.size() - 1).getName();
+            List<String> raw = new ArrayList<>();
+            List<ColumnProfile> inputs = new ArrayList<>();
+            List<Integer> rawIndexes = new ArrayList<>();
+            boolean targetFound = false;
+            for (ColumnProfile column : columns) {
+                if (column.getName().equals(target)) {
+                    targetFound = true;
+                    continue;
+                }
+                if (!dropColumns.contains(column.getName())) {
+                    if (!column.isNumeric()) {
+                        throw new IllegalArgumentException("Column '" + column.getName() + "' is not numeric, it should be dropped");
+                    }
+                    inputs.add(column);
+                    rawIndexes.add(raw.size());
+                }
+                raw.add(column.getName());
+            }
+            if (!targetFound) {
+                throw new IllegalArgumentException("Column not found: " + target);
+            }
+
+            int n = inputs.size();
+            String[] inputNames = new String[n];
+            float[] fill = new float[n];
+            float[] offset = new float[n];
+            float[] scale = new float[n];
+            for (int i = 0; i < n; i++) {
+                ColumnProfile column = inputs.get(i);
+                inputNames[i] = column.getName();
+                fill[i] = imputationValue(column);
+                offset[i] = scalingOffset(column);
+                scale[i] = scale(column);
+            }
+            return new PreprocessingPipeline(raw.toArray(new String[0]), inputNames, target,
+                    rawIndexes.stream().mapToInt(Integer::intValue).toArray(), fill, offset, scale, imputation, scaling);
+        }
+
+        private float imputationValue(ColumnProfile column) {
+            switch (imputation) {
+                case MEAN:
+                    return (float) column.getMean();
+                case MEDIAN:
+                    return (float) column.getMedian();
+                default:
+                    return Float.NaN;
+            }
+        }
+
+        private float scalingOffset(ColumnProfile column) {
+            switch (scaling) {
+                case MIN_MAX:
+                    return (float) column.getMin();
+                case STANDARD:
+                    return (float) column.getMean();
+                default:
+                    return 0;
+            }
+        }
+
+        private float scale(ColumnProfile column) {
+            double range;
+            switch (scaling) {
+                case MAX:
+                    range = Math.max(Math.abs(column.getMin()), Math.abs(column.getMax()));
+                    break;
+                case MIN_MAX:
+                    range = column.getMax() - column.getMin();
+                    break;
+                case STANDARD:
+                    range = column.getStandardDeviation();
+                    break;
+                default:
+                    return 1;
+            }
+            // constant or empty columns are not scaled
+            return range > 0 ? (float) range : 1;
+        }
+    }
+
+    /**
+     * Returns names of raw input columns expected by {@link #transformInputs(float[], int, float[], int)}.
+     */
+    public String[] getRawColumns() {
+        return rawColumns.clone();
+    }
+
+    /**
+     * Returns names of model input columns.
+     */
+    public String[] getInputColumns() {
+        return inputColumns.clone();
+    }
+
+    public String getTargetColumn() {
+        return targetColumn;
+    }
+
+    public int getNumRawInputs() {
+        return rawColumns.length;
+    }
+
+    public int getNumInputs() {
+        return inputColumns.length;
+    }
+
+    public Imputation getImputation() {
+        return imputation;
+    }
+
+    public Scaling getScaling() {
+        return scaling;
+    }
+
+    int[] getRawIndexes() {
+        return rawIndexes.clone();
+    }
+
+    float[] getFill() {
+        return fill.clone();
+    }
+
+    float[] getOffset() {
+        return offset.clone();
+    }
+
+    float[] getScale() {
+        return scale.clone();
+    }
+
+    /**
+     * Transforms raw value of the specified model input.
+     */
+    public float transform(int input, float value) {
+        if (Float.isNaN(value)) {
+            value = fill[input];
+        }
+        return (value - offset[input]) / scale[input];
+    }
+
+    /**
+     * Transforms one row of raw inputs into model inputs.
+     *
+     * @param raw array with raw input values, in order of {@link #getRawColumns()}
+     * @param rawOffset position of the first raw value
+     * @param inputs array to write model inputs to
+     * @param inputsOffset position for the first model input
+     */
+    public void transformInputs(float[] raw, int rawOffset, float[] inputs, int inputsOffset) {
+        for (int i = 0; i < rawIndexes.length; i++) {
+            inputs[inputsOffset + i] = transform(i, raw[rawOffset + rawIndexes[i]]);
+        }
+    }
+
+    /**
+     * Returns indexes of model inputs followed by target in the given columns, which must contain all columns used by pipeline.
+     */
+    int[] columnIndexes(String[] columnNames) {
+        List<String> names = Arrays.asList(columnNames);
+        int[] idxs = new int[inputColumns.length + 1];
+        for (int i = 0; i < idxs.length; i++) {
+            String name = i < inputColumns.length ? inputColumns[i] : targetColumn;
+            idxs[i] = names.indexOf(name);
+            if (idxs[i] < 0) {
+                throw new IllegalArgumentException("Column not found: " + name);
+            }
+        }
+        return idxs;
+    }
+
+    /**
+     * Returns names of model inputs followed by target.
+     */
+    String[] dataSetColumns() {
+        String[] names = Arrays.copyOf(inputColumns, inputColumns.length + 1);
+        names[inputColumns.length] = targetColumn;
+        return names;
+    }
+
+    /**
+     * Creates data set with transformed inputs and target from the given table, in a single pass over each column.
+     * Table has to contain all input and target columns, other columns are ignored.
+     */
+    public ColumnarDataSet transform(Table table) {
+        int rows = table.rowCount();
+        int stride = inputColumns.length + 1;
+        float[] values = new float[rows * stride];
+        for (int i = 0; i < inputColumns.length; i++) {
+            copyColumn(table.column(inputColumns[i]), i, values, stride);
+        }
+        copyColumn(table.column(targetColumn), -1, values, stride);
+        return new ColumnarDataSet(values, rows, inputColumns.length, 1, dataSetColumns());
+    }
+
+    /**
+     * Writes transformed values of a column for the specified model input into data set buffer, or copies them as they are for input -1 (target).
+     */
+    private void copyColumn(Column<?> column, int input, float[] values, int stride) {
+        int rows = column.size();
+        int pos = input >= 0 ? input : stride - 1;
+        if (column instanceof DoubleColumn) {
+            DoubleColumn dc = (DoubleColumn) column;
+            for (int r = 0; r < rows; r++, pos += stride) {
+                float value = (float) dc.getDouble(r);
+                values[pos] = input >= 0 ? transform(input, value) : value;
+            }
+        } else if (column instanceof FloatColumn) {
+            FloatColumn fc = (FloatColumn) column;
+            for (int r = 0; r < rows; r++, pos += stride) {
+                float value = fc.getFloat(r);
+                values[pos] = input >= 0 ? transform(input, value) : value;
+            }
+        } else if (column instanceof NumericColumn<?>) {
+            NumericColumn<?> nc = (NumericColumn<?>) column;
+            boolean isInt = column instanceof IntColumn;
+            for (int r = 0; r < rows; r++, pos += stride) {
+                float value = nc.isMissing(r) ? Float.NaN : isInt ? ((IntColumn) column).getInt(r) : (float) nc.getDouble(r);
+                values[pos] = input >= 0 ? transform(input, value) : value;
+            }
+        } else {
+            throw new IllegalArgumentException("Column '" + column.name() + "' is not numeric: " + column.type());
+        }
+    }
+
+    /**
+     * Creates data set with transformed inputs and target from the given chunk.
+     */
+    public ColumnarDataSet transform(ColumnChunk chunk) {
+        int[] idxs = columnIndexes(chunk.getColumnNames());
+        int rows = chunk.getRowCount();
+        int stride = idxs.length;
+        float[] values = new float[rows * stride];
+        for (int i = 0; i < idxs.length; i++) {
+            float[] column = chunk.column(idxs[i]);
+            boolean target = i == inputColumns.length;
+            for (int r = 0, pos = i; r < rows; r++, pos += stride) {
+                values[pos] = target ? column[r] : transform(i, column[r]);
+            }
+        }
+        return new ColumnarDataSet(values, rows, inputColumns.length, 1, dataSetColumns());
+    }
+
+    /**
+     * Returns raw inputs of the specified table row, which can be passed to classifier created with this pipeline.
+     */
+    public float[] rawInputs(Table table, int row) {
+        float[] raw = new float[rawColumns.length];
+        for (int i = 0; i < raw.length; i++) {
+            Column<?> column = table.column(rawColumns[i]);
+            raw[i] = column.isMissing(row) ? Float.NaN : (float) ((NumericColumn<?>) column).getDouble(row);
+        }
+        return raw;
+    }
+
+    /**
+     * Returns pipeline file name for the given model file, e.g. credit_card_fraud.prep for credit_card_fraud.dnet.
+     */
+    public static String fileFor(String modelFile) {
+        int dot = modelFile.lastIndexOf('.');
+        int separator = Math.max(modelFile.lastIndexOf('/'), modelFile.lastIndexOf('\\'));
+        return (dot > separator ? modelFile.substring(0, dot) : modelFile) + FILE_EXTENSION;
+    }
+
+    public void save(String fileName) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(Paths.get(fileName))))) {
+            out.writeObject(this);
+        }
+    }
+
+    public static PreprocessingPipeline load(String fileName) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(Paths.get(fileName))))) {
+            return (PreprocessingPipeline) in.readObject();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("PreprocessingPipeline (imputation: " + imputation + ", scaling: " + scaling + ")\n");
+        for (String raw : rawColumns) {
+            if (!Arrays.asList(inputColumns).contains(raw)) {
+                sb.append("  ").append(raw).append(": dropped\n");
+            }
+        }
+        for (int i = 0; i < inputColumns.length; i++) {
+            sb.append(String.format("  %s: fill=%s, offset=%s, scale=%s%n", inputColumns[i], fill[i], offset[i], scale[i]));
+        }
+        sb.append("  ").append(targetColumn).append(": target");
+        return sb.toString();
+    }
+}
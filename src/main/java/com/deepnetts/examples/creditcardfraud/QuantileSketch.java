@@ -0,0 +1,283 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable streaming quantile sketch, based on KLL algorithm (Karnin, Lang, Liberty).
+ * Keeps a small number of values in levels of compactors, where each value at level h represents 2^h original values.
+ * Memory usage is O(k) regardless of the number of values, and rank error is about 1.65 / k with high probability.
+ *
+ * Sketches built over different parts of data (chunks or threads) can be merged into one.
+ * Not thread safe.
+ */
+public class QuantileSketch {
+
+    public static final int DEFAULT_K = 200;
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+
+    private final int k;
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private int[] capacities = new int[1];
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private long randomState;
+
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * @param k accuracy parameter, larger values give more accurate results and use more memory
+     */
+    public QuantileSketch(int k) {
+        if (k < 8) {
+            throw new IllegalArgumentException("k must be at least 8: " + k);
+        }
+        this.k = k;
+        this.levels[0] = new double[k];
+        this.capacities[0] = k;
+        this.randomState = 0x9E3779B97F4A7C15L ^ k;
+    }
+
+    /**
+     * Creates sketch with normalized rank error not larger than given value (with high probability), e.g. 0.01 for 1%.
+     */
+    public static QuantileSketch withError(double rankError) {
+        if (rankError <= 0 || rankError >= 1) {
+            throw new IllegalArgumentException("Rank error must be in range (0, 1): " + rankError);
+        }
+        return new QuantileSketch(Math.max(8, (int) Math.ceil(1.65 / rankError)));
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public double getRankError() {
+        return 1.65 / k;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Adds value to the sketch. NaN values are ignored.
+     */
+    public void update(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (count == 0) {
+            min = value;
+            max = value;
+        } else {
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+        }
+        count++;
+        append(0, value);
+        if (sizes[0] >= capacities[0]) {
+            compress();
+        }
+    }
+
+    /**
+     * Adds all values from the other sketch to this one.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            min = other.min;
+            max = other.max;
+        } else {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+        count += other.count;
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        compress();
+    }
+
+    /**
+     * Returns approximate value at the given quantile, in range [0, 1].
+     */
+    public double quantile(double q) {
+        return quantiles(q)[0];
+    }
+
+    /**
+     * Returns approximate values at the given quantiles. Sketch values are sorted only once for all quantiles.
+     */
+    public double[] quantiles(double... qs) {
+        double[] result = new double[qs.length];
+        if (count == 0) {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+
+        int total = 0;
+        for (int size : sizes) {
+            total += size;
+        }
+        double[] values = new double[total];
+        long[] weights = new long[total];
+        int pos = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                values[pos] = levels[h][i];
+                weights[pos++] = 1L << h;
+            }
+        }
+        sortTogether(values, weights);
+
+        long totalWeight = 0;
+        for (long w : weights) {
+            totalWeight += w;
+        }
+        for (int k = 0; k < qs.length; k++) {
+            double q = qs[k];
+            if (q <= 0) {
+                result[k] = min;
+            } else if (q >= 1) {
+                result[k] = max;
+            } else {
+                double target = q * totalWeight;
+                long cumulative = 0;
+                result[k] = max;
+                for (int i = 0; i < total; i++) {
+                    cumulative += weights[i];
+                    if (cumulative >= target) {
+                        result[k] = values[i];
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns approximate fraction of values which are less than or equal to the given value.
+     */
+    public double rank(double value) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long below = 0;
+        long totalWeight = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                totalWeight += 1L << h;
+                if (levels[h][i] <= value) {
+                    below += 1L << h;
+                }
+            }
+        }
+        return (double) below / totalWeight;
+    }
+
+    private int capacity(int level, int numLevels) {
+        int depth = numLevels - level - 1;
+        return Math.max(2, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private void append(int level, double value) {
+        if (level >= levels.length) {
+            levels = Arrays.copyOf(levels, level + 1);
+            sizes = Arrays.copyOf(sizes, level + 1);
+            capacities = new int[level + 1];
+            for (int h = 0; h <= level; h++) {
+                capacities[h] = capacity(h, level + 1);
+                if (levels[h] == null) {
+                    levels[h] = new double[capacities[h]];
+                }
+            }
+        }
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+        }
+        levels[level][sizes[level]++] = value;
+    }
+
+    /**
+     * Compacts every level which is over its capacity: sorts it and promotes every second value to the next level.
+     */
+    private void compress() {
+        for (int h = 0; h < levels.length; h++) {
+            if (sizes[h] < capacities[h]) {
+                continue;
+            }
+            double[] level = levels[h];
+            int size = sizes[h];
+            Arrays.sort(level, 0, size);
+
+            // if odd number of values, keep the last one at this level
+            int compactSize = size & ~1;
+            int offset = nextRandomBit();
+            double kept = level[size - 1];
+
+            for (int i = offset; i < compactSize; i += 2) {
+                append(h + 1, level[i]);
+            }
+            level = levels[h]; // array could have been replaced
+            sizes[h] = 0;
+            if ((size & 1) == 1) {
+                level[sizes[h]++] = kept;
+            }
+        }
+    }
+
+    private int nextRandomBit() {
+        randomState ^= randomState << 13;
+        randomState ^= randomState >>> 7;
+        randomState ^= randomState << 17;
+        return (int) (randomState & 1);
+    }
+
+    private static void sortTogether(double[] values, long[] weights) {
+        Integer[] idx = new Integer[values.length];
+        for (int i = 0; i < idx.length; i++) {
+            idx[i] = i;
+        }
+        Arrays.sort(idx, (a, b) -> Double.compare(values[a], values[b]));
+        double[] sortedValues = new double[values.length];
+        long[] sortedWeights = new long[weights.length];
+        for (int i = 0; i < idx.length; i++) {
+            sortedValues[i] = values[idx[i]];
+            sortedWeights[i] = weights[idx[i]];
+        }
+        System.arraycopy(sortedValues, 0, values, 0, values.length);
+        System.arraycopy(sortedWeights, 0, weights, 0, weights.length);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("QuantileSketch{k=%d, count=%d, min=%s, q1=%s, median=%s, q3=%s, max=%s}",
+                k, count, min, quantile(0.25), quantile(0.5), quantile(0.75), max);
+    }
+}
@@ -0,0 +1,373 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import deepnetts.net.FeedForwardNetwork;
+import deepnetts.util.FileIO;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays transactions from a CSV file as a timed stream, and measures latency of scoring them.
+ * Transactions are sent either at times given by the Time column (seconds since the first transaction), sped up by the given factor,
+ * or at a constant rate. Load is open loop: next transaction is sent at its scheduled time regardless of whether previous ones have completed.
+ *
+ * To avoid coordinated omission, response time is measured from the time when transaction should have been sent, not from when it was actually sent,
+ * so delays of the generator itself or of a blocking target are included. Service time measured from actual send is reported separately for comparison.
+ *
+ * Usage: ReplayLoadGenerator [csv file] [model file] [endpoint url]
+ */
+public class ReplayLoadGenerator {
+
+    public static final String DEFAULT_TIME_COLUMN = "Time";
+
+    private static final long COMPLETION_TIMEOUT_MILLIS = 30_000;
+    private static final long SPIN_NANOS = 100_000;
+
+    /**
+     * Scores one transaction, asynchronously or in the calling thread.
+     */
+    public interface Target {
+
+        CompletionStage<?> submit(float[] transaction);
+
+        /**
+         * Scores transactions directly with classifier in the generator thread, like a single scoring thread would.
+         */
+        static Target classifier(FeedForwardNetBatchClassifier classifier) {
+            return transaction -> CompletableFuture.completedFuture(classifier.classify(transaction));
+        }
+
+        /**
+         * Submits transactions to micro batcher, which is how scoring server scores them.
+         */
+        static Target batcher(MicroBatcher batcher) {
+            return batcher::submit;
+        }
+
+        /**
+         * Scores transactions on all cores of scoring pool.
+         */
+        static Target pool(ScoringPool pool) {
+            return pool::submit;
+        }
+
+        /**
+         * Posts transactions to scoring endpoint, see {@link FraudScoringServer}.
+         */
+        static Target http(URI endpoint) {
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            return transaction -> {
+                StringBuilder body = new StringBuilder("{\"features\":[");
+                for (int i = 0; i < transaction.length; i++) {
+                    body.append(i > 0 ? "," : "").append(transaction[i]);
+                }
+                body.append("]}");
+                HttpRequest request = HttpRequest.newBuilder(endpoint)
+                                                 .header("Content-Type", "application/json")
+                                                 .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                                                 .build();
+                return client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException("Endpoint returned status " + response.statusCode());
+                    }
+                    return response;
+                });
+            };
+        }
+    }
+
+    /**
+     * Result of one run.
+     */
+    public static final class Report {
+        private final String name;
+        private final long sent;
+        private final long errors;
+        private final double offeredPerSec;
+        private final double throughputPerSec;
+        private final LatencyHistogram responseTime;
+        private final LatencyHistogram serviceTime;
+
+        Report(String name, long sent, long errors, double offeredPerSec, double throughputPerSec,
+               LatencyHistogram responseTime, LatencyHistogram serviceTime) {
+            this.name = name;
+            this.sent = sent;
+            this.errors = errors;
+            this.offeredPerSec = offeredPerSec;
+            this.throughputPerSec = throughputPerSec;
+            this.responseTime = responseTime;
+            this.serviceTime = serviceTime;
+        }
+
+        public long getSent() {
+            return sent;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * Returns rate at which transactions were scheduled.
+         */
+        public double getOfferedPerSec() {
+            return offeredPerSec;
+        }
+
+        /**
+         * Returns rate at which transactions were completed.
+         */
+        public double getThroughputPerSec() {
+            return throughputPerSec;
+        }
+
+        /**
+         * Returns latency from scheduled send time to completion, corrected for coordinated omission.
+         */
+        public LatencyHistogram getResponseTime() {
+            return responseTime;
+        }
+
+        /**
+         * Returns latency from actual send time to completion, which hides delays caused by generator or blocking target.
+         */
+        public LatencyHistogram getServiceTime() {
+            return serviceTime;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s | sent: %d, errors: %d | offered: %.0f/s, throughput: %.0f/s | p50: %dus, p99: %dus, p99.9: %dus, max: %dus"
+                    + " | service time p99: %dus", name, sent, errors, offeredPerSec, throughputPerSec,
+                    responseTime.percentile(50), responseTime.percentile(99), responseTime.percentile(99.9), responseTime.getMaxMicros(),
+                    serviceTime.percentile(99));
+        }
+    }
+
+    private final float[][] transactions;
+    private final float[] times;
+
+    /**
+     * @param data transactions to replay
+     * @param inputColumns columns sent to the target, in the order expected by classifier
+     * @param timeColumn column with time of each transaction in seconds, or null if transactions are replayed only at constant rate
+     */
+    public ReplayLoadGenerator(ColumnChunk data, String[] inputColumns, String timeColumn) {
+        int rows = data.getRowCount();
+        float[][] columns = new float[inputColumns.length][];
+        for (int c = 0; c < inputColumns.length; c++) {
+            columns[c] = data.column(inputColumns[c]);
+        }
+        this.transactions = new float[rows][inputColumns.length];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns.length; c++) {
+                transactions[r][c] = columns[c][r];
+            }
+        }
+        this.times = timeColumn != null ? data.column(timeColumn) : null;
+    }
+
+    public int getTransactionCount() {
+        return transactions.length;
+    }
+
+    /**
+     * Sends transactions at their original times, sped up by the given factor, until all are sent or max duration has passed.
+     */
+    public Report replay(Target target, double speedup, long maxDurationMillis) throws InterruptedException {
+        if (times == null) {
+            throw new IllegalStateException("Generator has no time column");
+        }
+        if (!(speedup > 0)) {
+            throw new IllegalArgumentException("Speedup must be positive: " + speedup);
+        }
+        float first = times[0];
+        return run("replay x" + speedup, target, transactions.length, maxDurationMillis,
+                   i -> (long) ((times[(int) i] - first) * 1e9 / speedup));
+    }
+
+    /**
+     * Sends transactions at constant rate for the given duration, starting again from the first one if all have been sent.
+     */
+    public Report constantRate(Target target, double transactionsPerSec, long durationMillis) throws InterruptedException {
+        if (!(transactionsPerSec > 0)) {
+            throw new IllegalArgumentException("Rate must be positive: " + transactionsPerSec);
+        }
+        long count = (long) Math.ceil(transactionsPerSec * durationMillis / 1000.0);
+        double intervalNanos = 1e9 / transactionsPerSec;
+        return run(String.format("%.0f/s", transactionsPerSec), target, count, durationMillis, i -> (long) (i * intervalNanos));
+    }
+
+    /**
+     * Finds max sustainable throughput: runs at constant rate, doubling it after each step, until p99 response time exceeds the limit,
+     * throughput falls below 95% of offered rate, or there are errors. Then rate is refined by bisection between the last good and the first bad rate.
+     * If start rate is not sustained, it is halved until it is.
+     *
+     * @return the fastest run which met the limit, or null if none did
+     */
+    public Report findMaxThroughput(Target target, double startPerSec, long p99LimitMicros, long stepMillis) throws InterruptedException {
+        Report best = null;
+        double good = 0;
+        double bad = 0;
+        double rate = startPerSec;
+        while (bad == 0 || good == 0 || bad - good > good * 0.05) {
+            Report report = constantRate(target, rate, stepMillis);
+            boolean sustained = report.errors == 0 && report.responseTime.percentile(99) <= p99LimitMicros
+                    && report.throughputPerSec >= report.offeredPerSec * 0.95;
+            System.out.printf(">> %s %s\n", sustained ? "Sustained" : "Not sustained", report);
+            if (sustained) {
+                best = report;
+                good = rate;
+            } else {
+                bad = rate;
+            }
+            if (bad == 0) {
+                rate *= 2;
+            } else if (good == 0) {
+                if (rate < 2) {
+                    break;
+                }
+                rate /= 2;
+            } else {
+                rate = (good + bad) / 2;
+            }
+        }
+        return best;
+    }
+
+    private interface Schedule {
+        long offsetNanos(long transaction);
+    }
+
+    private Report run(String name, Target target, long count, long maxDurationMillis, Schedule schedule) throws InterruptedException {
+        LatencyHistogram responseTime = new LatencyHistogram();
+        LatencyHistogram serviceTime = new LatencyHistogram();
+        AtomicLong errors = new AtomicLong();
+        AtomicLong lastCompletion = new AtomicLong();
+        long maxDurationNanos = TimeUnit.MILLISECONDS.toNanos(maxDurationMillis);
+        long sent = 0;
+        long lastScheduled = 0;
+
+        CountDownLatch completed = new CountDownLatch((int) Math.min(Integer.MAX_VALUE, count));
+        long start = System.nanoTime();
+        for (long i = 0; i < count; i++) {
+            long offset = schedule.offsetNanos(i);
+            if (offset > maxDurationNanos) {
+                break;
+            }
+            long intended = start + offset;
+            // park until shortly before intended time, and spin the rest, since parking can oversleep by tens of microseconds
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                if (wait > SPIN_NANOS) {
+                    LockSupport.parkNanos(wait - SPIN_NANOS);
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
+            lastScheduled = offset;
+            long sentAt = System.nanoTime();
+            sent++;
+            CompletionStage<?> result;
+            try {
+                result = target.submit(transactions[(int) (i % transactions.length)]);
+            } catch (RuntimeException ex) {
+                errors.incrementAndGet();
+                completed.countDown();
+                continue;
+            }
+            result.whenComplete((r, ex) -> {
+                long now = System.nanoTime();
+                if (ex != null) {
+                    errors.incrementAndGet();
+                } else {
+                    responseTime.recordNanos(now - intended);
+                    serviceTime.recordNanos(now - sentAt);
+                }
+                lastCompletion.accumulateAndGet(now, Math::max);
+                completed.countDown();
+            });
+        }
+        for (long i = sent; i < count; i++) {
+            completed.countDown();
+        }
+        if (!completed.await(COMPLETION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            errors.addAndGet(completed.getCount());
+        }
+
+        double offered = lastScheduled > 0 ? (sent - 1) * 1e9 / lastScheduled : 0;
+        long elapsed = Math.max(1, lastCompletion.get() - start);
+        double throughput = (sent - errors.get()) * 1e9 / elapsed;
+        return new Report(name, sent, errors.get(), offered, throughput, responseTime, serviceTime);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String dataFile = args.length > 0 ? args[0] : "creditcard.csv";
+        String modelFile = args.length > 1 ? args[1] : BinaryModel.fileFor("credit_card_fraud.dnet");
+        String endpoint = args.length > 2 ? args[2] : null;
+
+        ColumnChunk data;
+        try (MappedCsvReader csvReader = new MappedCsvReader(Paths.get(dataFile), ',', true)) {
+            data = csvReader.readAll();
+        }
+
+        FeedForwardNetBatchClassifier classifier;
+        if (modelFile.endsWith(BinaryModel.FILE_EXTENSION)) {
+            classifier = BinaryModel.load(Paths.get(modelFile)).createClassifier();
+        } else {
+            FeedForwardNetwork model = FileIO.createFromFile(modelFile, FeedForwardNetwork.class);
+            String pipelineFile = PreprocessingPipeline.fileFor(modelFile);
+            classifier = Files.exists(Paths.get(pipelineFile))
+                    ? new FeedForwardNetBatchClassifier(model, PreprocessingPipeline.load(pipelineFile))
+                    : new FeedForwardNetBatchClassifier(model);
+        }
+
+        // send the columns classifier expects: raw columns of its pipeline, or all columns except Time and Class
+        String[] inputColumns;
+        if (classifier.getPipeline() != null) {
+            inputColumns = classifier.getPipeline().getRawColumns();
+        } else {
+            List<String> names = Arrays.asList(data.getColumnNames());
+            inputColumns = names.stream().filter(n -> !n.equals(DEFAULT_TIME_COLUMN) && !n.equals("Class")).toArray(String[]::new);
+        }
+        boolean hasTime = Arrays.asList(data.getColumnNames()).contains(DEFAULT_TIME_COLUMN);
+
+        // models trained by the webinar demo use velocity features, which are added to the data for in-process scoring,
+        // while scoring service computes them from Time and Amount of each request, so they are not sent to the endpoint
+        String[] requestColumns = inputColumns;
+        if (classifier.getPipeline() != null && VelocityFeatures.neededFor(classifier.getPipeline(), data.getColumnNames())) {
+            VelocityFeatures velocity = new VelocityFeatures(VelocityFeatures.DEFAULT_WINDOWS);
+            data = velocity.addTo(data, DEFAULT_TIME_COLUMN, "Amount");
+            List<String> featureNames = Arrays.asList(velocity.getFeatureNames());
+            requestColumns = Arrays.stream(inputColumns).filter(name -> !featureNames.contains(name)).toArray(String[]::new);
+        }
+        ReplayLoadGenerator generator = new ReplayLoadGenerator(data, inputColumns, hasTime ? DEFAULT_TIME_COLUMN : null);
+
+        Target inProcess = Target.classifier(classifier);
+        generator.constantRate(inProcess, 10_000, 5_000); // warm-up
+        if (hasTime) {
+            System.out.println(generator.replay(inProcess, 1000, 60_000));
+        }
+        System.out.println("In-process classifier, max throughput with p99 under 1 ms:");
+        System.out.println(generator.findMaxThroughput(inProcess, 1000, 1000, 2_000));
+
+        if (endpoint != null) {
+            Target http = Target.http(URI.create(endpoint));
+            ReplayLoadGenerator httpGenerator = requestColumns == inputColumns ? generator
+                    : new ReplayLoadGenerator(data, requestColumns, hasTime ? DEFAULT_TIME_COLUMN : null);
+            System.out.println("Endpoint " + endpoint + ", max throughput with p99 under 10 ms:");
+            System.out.println(httpGenerator.findMaxThroughput(http, 100, 10_000, 5_000));
+        }
+    }
+}
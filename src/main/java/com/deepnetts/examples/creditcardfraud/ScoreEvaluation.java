@@ -0,0 +1,349 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import deepnetts.net.FeedForwardNetwork;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Threshold free evaluation of a binary classifier: ROC and precision-recall curves with areas under them, precision at top k,
+ * and decision threshold with the lowest cost of missed frauds and declined legitimate transactions.
+ *
+ * Everything is computed from one sort of primitive score and label arrays. Transactions are sorted by descending score, and
+ * a single pass counts true and false positives at each distinct score, so the number of curve points is the number of distinct scores
+ * and no confusion matrix is built per threshold. Metrics at any threshold are looked up with binary search over these points.
+ *
+ * A transaction is classified as fraud when its score is greater than or equal to the threshold.
+ */
+public class ScoreEvaluation {
+
+    private static final int SCORING_BLOCK = 4096;
+
+    private final int positives;
+    private final int negatives;
+    private final double totalLoss;
+    private final float[] thresholds;   // distinct scores, descending
+    private final int[] tps;            // true positives with score >= threshold
+    private final int[] fps;            // false positives with score >= threshold
+    private final double[] caughtLoss;  // fraud loss of true positives with score >= threshold
+
+    private ScoreEvaluation(int positives, int negatives, double totalLoss, float[] thresholds, int[] tps, int[] fps, double[] caughtLoss) {
+        this.positives = positives;
+        this.negatives = negatives;
+        this.totalLoss = totalLoss;
+        this.thresholds = thresholds;
+        this.tps = tps;
+        this.fps = fps;
+        this.caughtLoss = caughtLoss;
+    }
+
+    /**
+     * Confusion counts and cost at one decision threshold.
+     */
+    public static final class Threshold {
+        private final float threshold;
+        private final int truePositives;
+        private final int falsePositives;
+        private final int falseNegatives;
+        private final int trueNegatives;
+        private final double cost;
+
+        Threshold(float threshold, int truePositives, int falsePositives, int falseNegatives, int trueNegatives, double cost) {
+            this.threshold = threshold;
+            this.truePositives = truePositives;
+            this.falsePositives = falsePositives;
+            this.falseNegatives = falseNegatives;
+            this.trueNegatives = trueNegatives;
+            this.cost = cost;
+        }
+
+        public float getThreshold() {
+            return threshold;
+        }
+
+        public int getTruePositives() {
+            return truePositives;
+        }
+
+        public int getFalsePositives() {
+            return falsePositives;
+        }
+
+        public int getFalseNegatives() {
+            return falseNegatives;
+        }
+
+        public int getTrueNegatives() {
+            return trueNegatives;
+        }
+
+        public float getPrecision() {
+            int flagged = truePositives + falsePositives;
+            return flagged > 0 ? (float) truePositives / flagged : 1;
+        }
+
+        public float getRecall() {
+            int frauds = truePositives + falseNegatives;
+            return frauds > 0 ? (float) truePositives / frauds : 0;
+        }
+
+        public float getFalsePositiveRate() {
+            int legitimate = falsePositives + trueNegatives;
+            return legitimate > 0 ? (float) falsePositives / legitimate : 0;
+        }
+
+        /**
+         * Returns cost of this threshold, or NaN if it was not computed from a cost model.
+         */
+        public double getCost() {
+            return cost;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("threshold: %.4f, TP: %d, FP: %d, FN: %d, TN: %d, precision: %.4f, recall: %.4f%s",
+                    threshold, truePositives, falsePositives, falseNegatives, trueNegatives, getPrecision(), getRecall(),
+                    Double.isNaN(cost) ? "" : String.format(", cost: %.2f", cost));
+        }
+    }
+
+    /**
+     * Evaluates scores against labels, where label greater than 0.5 is fraud.
+     */
+    public static ScoreEvaluation of(float[] scores, float[] labels) {
+        return of(scores, labels, null);
+    }
+
+    /**
+     * Evaluates scores against labels, with loss caused by each missed fraud, for example transaction amount.
+     * Losses of legitimate transactions are ignored, and null losses count every fraud as 1.
+     */
+    public static ScoreEvaluation of(float[] scores, float[] labels, float[] fraudLosses) {
+        int n = scores.length;
+        if (labels.length != n || (fraudLosses != null && fraudLosses.length != n)) {
+            throw new IllegalArgumentException("Scores, labels and losses must have the same length");
+        }
+
+        // sort key holds score mapped to a long which orders like the float, negated for descending order, and index in lower bits
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            if (Float.isNaN(scores[i])) {
+                throw new IllegalArgumentException("Score of transaction " + i + " is NaN");
+            }
+            int bits = Float.floatToIntBits(scores[i] + 0.0f);  // + 0.0f turns -0 into 0
+            int ordered = bits >= 0 ? bits : bits ^ 0x7FFFFFFF;
+            keys[i] = ((long) -ordered << 32) | i;
+        }
+        Arrays.parallelSort(keys);
+
+        float[] thresholds = new float[n];
+        int[] tps = new int[n];
+        int[] fps = new int[n];
+        double[] caughtLoss = new double[n];
+        int points = 0;
+        int tp = 0;
+        int fp = 0;
+        double loss = 0;
+        for (int k = 0; k < n; k++) {
+            int i = (int) keys[k];
+            if (labels[i] > 0.5f) {
+                tp++;
+                loss += fraudLosses != null ? fraudLosses[i] : 1;
+            } else {
+                fp++;
+            }
+            // close the point after the last transaction with this score
+            if (k == n - 1 || (keys[k + 1] >> 32) != (keys[k] >> 32)) {
+                thresholds[points] = scores[i];
+                tps[points] = tp;
+                fps[points] = fp;
+                caughtLoss[points] = loss;
+                points++;
+            }
+        }
+        return new ScoreEvaluation(tp, fp, loss, Arrays.copyOf(thresholds, points), Arrays.copyOf(tps, points),
+                                   Arrays.copyOf(fps, points), Arrays.copyOf(caughtLoss, points));
+    }
+
+    /**
+     * Scores all rows of the data set with the network, in parallel batches, and evaluates scores against the first target value.
+     * Data set must contain preprocessed inputs, such as data set created by {@link PreprocessingPipeline#transform}.
+     */
+    public static ScoreEvaluation of(FeedForwardNetwork network, ColumnarDataSet dataSet) {
+        return of(network, dataSet, null);
+    }
+
+    /**
+     * Scores the data set like {@link #of(FeedForwardNetwork, ColumnarDataSet)}, with loss caused by each missed fraud, see {@link #of(float[], float[], float[])}.
+     */
+    public static ScoreEvaluation of(FeedForwardNetwork network, ColumnarDataSet dataSet, float[] fraudLosses) {
+        DenseInferenceEngine engine = DenseInferenceEngine.of(network);
+        if (engine.getNumInputs() != dataSet.getNumInputs()) {
+            throw new IllegalArgumentException("Data set has " + dataSet.getNumInputs() + " inputs, network has " + engine.getNumInputs());
+        }
+        float[] values = dataSet.getValues();
+        int rows = dataSet.getRowCount();
+        int stride = dataSet.getStride();
+        float[] scores = new float[rows];
+        IntStream.range(0, (rows + SCORING_BLOCK - 1) / SCORING_BLOCK).parallel().forEach(block -> {
+            int from = block * SCORING_BLOCK;
+            int count = Math.min(SCORING_BLOCK, rows - from);
+            engine.classifyBatch(values, dataSet.offsetOf(from), stride, count, scores, from);
+        });
+        float[] labels = new float[rows];
+        for (int r = 0; r < rows; r++) {
+            labels[r] = values[dataSet.offsetOf(r) + dataSet.getNumInputs()];
+        }
+        return of(scores, labels, fraudLosses);
+    }
+
+    public int getPositives() {
+        return positives;
+    }
+
+    public int getNegatives() {
+        return negatives;
+    }
+
+    /**
+     * Returns number of distinct scores, which is number of points on the curves.
+     */
+    public int getPointCount() {
+        return thresholds.length;
+    }
+
+    /**
+     * Returns area under ROC curve, computed with trapezoidal rule, so that ties are counted as half.
+     * Equals to probability that a random fraud has higher score than a random legitimate transaction.
+     */
+    public double getRocAuc() {
+        if (positives == 0 || negatives == 0) {
+            return Double.NaN;
+        }
+        double area = 0;
+        long prevTp = 0;
+        long prevFp = 0;
+        for (int p = 0; p < thresholds.length; p++) {
+            area += (fps[p] - prevFp) * (double) (tps[p] + prevTp) / 2;
+            prevTp = tps[p];
+            prevFp = fps[p];
+        }
+        return area / ((double) positives * negatives);
+    }
+
+    /**
+     * Returns area under precision-recall curve as average precision: sum of precision at each threshold weighted by increase in recall.
+     * Unlike trapezoidal area, it does not interpolate precision linearly, which would be too optimistic.
+     */
+    public double getPrAuc() {
+        if (positives == 0) {
+            return Double.NaN;
+        }
+        double area = 0;
+        int prevTp = 0;
+        for (int p = 0; p < thresholds.length; p++) {
+            area += (tps[p] - prevTp) * (double) tps[p] / (tps[p] + fps[p]);
+            prevTp = tps[p];
+        }
+        return area / positives;
+    }
+
+    /**
+     * Returns fraction of frauds among k transactions with the highest scores. Transactions tied with the k-th score
+     * are counted proportionally, so result does not depend on order of ties.
+     */
+    public double getPrecisionAtK(int k) {
+        if (k <= 0 || k > positives + negatives) {
+            throw new IllegalArgumentException("k must be between 1 and " + (positives + negatives) + ", but was " + k);
+        }
+        // first point which includes at least k transactions
+        int lo = 0;
+        int hi = thresholds.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (tps[mid] + fps[mid] >= k) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        int prevTp = lo > 0 ? tps[lo - 1] : 0;
+        int prevCount = lo > 0 ? tps[lo - 1] + fps[lo - 1] : 0;
+        int tiedCount = tps[lo] + fps[lo] - prevCount;
+        double truePositives = prevTp + (double) (tps[lo] - prevTp) * (k - prevCount) / tiedCount;
+        return truePositives / k;
+    }
+
+    /**
+     * Returns confusion counts when transactions with score greater than or equal to threshold are classified as fraud.
+     */
+    public Threshold at(float threshold) {
+        // number of points with score >= threshold, thresholds are descending
+        int lo = 0;
+        int hi = thresholds.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (thresholds[mid] >= threshold) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return point(lo - 1, threshold, Double.NaN);
+    }
+
+    /**
+     * Returns threshold which minimizes falseNegativeCost * missed fraud loss + falsePositiveCost * declined legitimate transactions.
+     * Missed fraud loss is number of missed frauds, or sum of their losses if evaluation was created with fraud losses.
+     * If flagging nothing is the cheapest option, returned threshold is above the highest score.
+     */
+    public Threshold getOptimalThreshold(double falseNegativeCost, double falsePositiveCost) {
+        if (falseNegativeCost < 0 || falsePositiveCost < 0) {
+            throw new IllegalArgumentException("Costs must not be negative");
+        }
+        int best = -1;
+        double bestCost = falseNegativeCost * totalLoss;
+        for (int p = 0; p < thresholds.length; p++) {
+            double cost = falseNegativeCost * (totalLoss - caughtLoss[p]) + falsePositiveCost * fps[p];
+            if (cost < bestCost) {
+                best = p;
+                bestCost = cost;
+            }
+        }
+        float threshold = best >= 0 ? thresholds[best] : thresholds.length > 0 ? Math.nextUp(thresholds[0]) : 0.5f;
+        return point(best, threshold, bestCost);
+    }
+
+    /**
+     * Returns ROC curve as rows of {false positive rate, true positive rate, threshold}, starting at (0, 0).
+     */
+    public float[][] getRocCurve() {
+        float[][] curve = new float[thresholds.length + 1][];
+        curve[0] = new float[] {0, 0, thresholds.length > 0 ? Math.nextUp(thresholds[0]) : 1};
+        for (int p = 0; p < thresholds.length; p++) {
+            curve[p + 1] = new float[] {negatives > 0 ? (float) fps[p] / negatives : 0, positives > 0 ? (float) tps[p] / positives : 0, thresholds[p]};
+        }
+        return curve;
+    }
+
+    /**
+     * Returns precision-recall curve as rows of {recall, precision, threshold}, one for each distinct score.
+     */
+    public float[][] getPrCurve() {
+        float[][] curve = new float[thresholds.length][];
+        for (int p = 0; p < thresholds.length; p++) {
+            curve[p] = new float[] {positives > 0 ? (float) tps[p] / positives : 0, (float) tps[p] / (tps[p] + fps[p]), thresholds[p]};
+        }
+        return curve;
+    }
+
+    private Threshold point(int p, float threshold, double cost) {
+        int tp = p >= 0 ? tps[p] : 0;
+        int fp = p >= 0 ? fps[p] : 0;
+        return new Threshold(threshold, tp, fp, positives - tp, negatives - fp, cost);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Frauds: %d, legitimate: %d, ROC AUC: %.4f, PR AUC: %.4f", positives, negatives, getRocAuc(), getPrAuc());
+    }
+}
@@ -0,0 +1,256 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import deepnetts.net.FeedForwardNetwork;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scores transactions on all cores. Feed forward network keeps activations in its layers, so one network cannot score
+ * from several threads at once. Instead of serializing scorers on a lock, each worker thread of the pool has its own replica
+ * of the network, created from a copy of weights made when the pool was created, so results are exactly the same as results
+ * of a single {@link FeedForwardNetBatchClassifier}.
+ *
+ * Work is distributed by fork join pool: batches are split recursively into tasks of {@link #getGrain()} transactions,
+ * which idle workers steal from busy ones. Instances are thread safe.
+ *
+ * Running this class measures throughput for different numbers of threads: ScoringPool [csv file] [model file]
+ */
+public class ScoringPool implements AutoCloseable {
+
+    private static final int DEFAULT_GRAIN = 256;
+
+    private final FeedForwardNetwork weights;
+    private final PreprocessingPipeline pipeline;
+    private final ForkJoinPool pool;
+    private final int numInputs;
+    private final int grain;
+    private final AtomicLong replicaCount = new AtomicLong();
+    private final ThreadLocal<FeedForwardNetBatchClassifier> callerReplicas = ThreadLocal.withInitial(() -> {
+        replicaCount.incrementAndGet();
+        return createClassifier();
+    });
+
+    /**
+     * Creates pool which accepts preprocessed transactions.
+     */
+    public ScoringPool(FeedForwardNetwork network, int threads) {
+        this(network, null, threads, DEFAULT_GRAIN);
+    }
+
+    /**
+     * Creates pool which accepts raw transactions and applies given preprocessing.
+     *
+     * @param threads number of worker threads, usually number of available processors
+     * @param grain max number of transactions scored as one task
+     */
+    public ScoringPool(FeedForwardNetwork network, PreprocessingPipeline pipeline, int threads, int grain) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+        if (grain < 1) {
+            throw new IllegalArgumentException("Grain must be positive: " + grain);
+        }
+        this.weights = BinaryModel.copy(network);
+        this.pipeline = pipeline;
+        this.grain = grain;
+        this.numInputs = createClassifier().getNumInputs();
+        this.pool = new ForkJoinPool(threads, forkJoinPool -> {
+            replicaCount.incrementAndGet();
+            return new Worker(forkJoinPool, createClassifier());
+        }, null, false);
+    }
+
+    /**
+     * Worker thread with its own network replica, which is used only by this thread.
+     */
+    private static final class Worker extends ForkJoinWorkerThread {
+        final FeedForwardNetBatchClassifier classifier;
+
+        Worker(ForkJoinPool pool, FeedForwardNetBatchClassifier classifier) {
+            super(pool);
+            this.classifier = classifier;
+            setName("scoring-pool-" + getPoolIndex());
+            setDaemon(true);
+        }
+    }
+
+    private FeedForwardNetBatchClassifier createClassifier() {
+        FeedForwardNetwork replica = BinaryModel.copy(weights);
+        return pipeline != null ? new FeedForwardNetBatchClassifier(replica, pipeline) : new FeedForwardNetBatchClassifier(replica);
+    }
+
+    /**
+     * Returns replica of the current worker. Tasks can also be run by threads outside of the pool, for example when a caller
+     * waiting for a task helps to complete it, and these threads get their own replica.
+     */
+    private FeedForwardNetBatchClassifier classifier() {
+        Thread thread = Thread.currentThread();
+        if (thread instanceof Worker && ((Worker) thread).getPool() == pool) {
+            return ((Worker) thread).classifier;
+        }
+        return callerReplicas.get();
+    }
+
+    /**
+     * Scores transaction asynchronously, returns future which is completed with fraud probability.
+     */
+    public CompletableFuture<Float> submit(float[] transaction) {
+        checkLength(transaction.length);
+        return CompletableFuture.supplyAsync(() -> classifier().classify(transaction), pool);
+    }
+
+    /**
+     * Scores transaction in the pool, and waits for the result.
+     */
+    public float classify(float[] transaction) {
+        return submit(transaction).join();
+    }
+
+    /**
+     * Scores transactions stored one after another in the flat batch array, splitting them between workers, and waits for all results.
+     */
+    public void classifyBatch(float[] batch, int count, float[] probabilities) {
+        if (count > 0 && (long) count * numInputs > batch.length) {
+            throw new IllegalArgumentException("Batch array is too small for " + count + " transactions");
+        }
+        if (count > probabilities.length) {
+            throw new IllegalArgumentException("Probabilities array is too small for " + count + " results");
+        }
+        pool.invoke(new BatchTask(batch, 0, count, probabilities));
+    }
+
+    public void classifyBatch(float[][] batch, float[] probabilities) {
+        float[] flat = new float[batch.length * numInputs];
+        for (int i = 0; i < batch.length; i++) {
+            checkLength(batch[i].length);
+            System.arraycopy(batch[i], 0, flat, i * numInputs, numInputs);
+        }
+        classifyBatch(flat, batch.length, probabilities);
+    }
+
+    private void checkLength(int length) {
+        if (length != numInputs) {
+            throw new IllegalArgumentException("Transaction has " + length + " values, expected " + numInputs);
+        }
+    }
+
+    private final class BatchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final float[] batch;
+        private final int from;
+        private final int to;
+        private final float[] probabilities;
+
+        BatchTask(float[] batch, int from, int to, float[] probabilities) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+            this.probabilities = probabilities;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                classifier().classifyBatch(batch, from * numInputs, numInputs, to - from, probabilities, from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BatchTask(batch, from, mid, probabilities), new BatchTask(batch, mid, to, probabilities));
+        }
+    }
+
+    /**
+     * Returns number of values in each transaction, which is number of raw inputs if pool has preprocessing pipeline.
+     */
+    public int getNumInputs() {
+        return numInputs;
+    }
+
+    public int getThreads() {
+        return pool.getParallelism();
+    }
+
+    public int getGrain() {
+        return grain;
+    }
+
+    /**
+     * Returns number of network replicas created so far, one for each worker thread the pool has started,
+     * and one for each thread outside of the pool which has run a task.
+     */
+    public long getReplicaCount() {
+        return replicaCount.get();
+    }
+
+    /**
+     * Returns number of tasks stolen by workers from other workers, which shows how work is balanced.
+     */
+    public long getStealCount() {
+        return pool.getStealCount();
+    }
+
+    /**
+     * Shuts down workers and waits for running tasks. If interrupted, stops waiting and keeps the interrupt flag.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+        try {
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String dataFile = args.length > 0 ? args[0] : "creditcard.csv";
+        String modelFile = args.length > 1 ? args[1] : BinaryModel.fileFor("credit_card_fraud.dnet");
+        BinaryModel model = BinaryModel.load(Paths.get(modelFile));
+
+        ColumnChunk data;
+        try (MappedCsvReader csvReader = new MappedCsvReader(Paths.get(dataFile), ',', true)) {
+            data = csvReader.readAll();
+        }
+        if (model.getPipeline() == null) {
+            throw new IllegalArgumentException("Model file has no preprocessing, so transactions cannot be read from csv file: " + modelFile);
+        }
+        // models trained by the webinar demo use velocity features, which are computed from Time and Amount columns
+        if (VelocityFeatures.neededFor(model.getPipeline(), data.getColumnNames())) {
+            data = new VelocityFeatures(VelocityFeatures.DEFAULT_WINDOWS).addTo(data, "Time", "Amount");
+        }
+        String[] columns = model.getPipeline().getRawColumns();
+        int rows = data.getRowCount();
+        int numInputs = columns.length;
+        float[] batch = new float[rows * numInputs];
+        for (int c = 0; c < numInputs; c++) {
+            float[] column = data.column(columns[c]);
+            for (int r = 0; r < rows; r++) {
+                batch[r * numInputs + c] = column[r];
+            }
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+            try (ScoringPool scoringPool = new ScoringPool(model.getNetwork(), model.getPipeline(), threads, DEFAULT_GRAIN)) {
+                float[] probabilities = new float[rows];
+                long start = System.nanoTime();
+                int rounds = 5;
+                for (int i = 0; i < rounds; i++) {
+                    scoringPool.classifyBatch(batch, rows, probabilities);
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf(">> Threads: %d, throughput: %.0f transactions/s, steals: %d\n",
+                        threads, rounds * rows / seconds, scoringPool.getStealCount());
+            }
+            if (threads == cores) {
+                break;
+            }
+        }
+    }
+}
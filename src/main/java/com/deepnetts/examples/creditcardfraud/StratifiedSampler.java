@@ -0,0 +1,322 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.NumericColumn;
+import tech.tablesaw.api.Table;
+
+/**
+ * Samples rows so that classes of the target column have the specified ratio.
+ * All rows of the smallest (minority) class are kept, and from every other class ratio * minority rows are chosen
+ * at random without replacement. Rows keep their original order.
+ *
+ * Tables are sampled using a single pass over target column, which groups row indices by class.
+ * Data read chunk by chunk is sampled with reservoir sampling, so other classes never have to be kept in memory as a whole.
+ */
+public class StratifiedSampler {
+
+    private static final int MISSING = Integer.MIN_VALUE;
+
+    private final String targetColumn;
+    private double ratio = 1;
+    private long seed = 1;
+
+    public StratifiedSampler(String targetColumn) {
+        this.targetColumn = targetColumn;
+    }
+
+    /**
+     * Sets number of rows sampled from each other class per one row of minority class. Default is 1, which gives balanced sample.
+     */
+    public StratifiedSampler ratio(double ratio) {
+        if (!(ratio > 0)) {
+            throw new IllegalArgumentException("Ratio must be positive: " + ratio);
+        }
+        this.ratio = ratio;
+        return this;
+    }
+
+    public StratifiedSampler seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Counts rows of each class in a single pass over the target column. Classes are sorted by value, rows with missing class are not counted.
+     */
+    public static Map<Integer, Integer> countClasses(Table table, String targetColumn) {
+        int[] labels = labels(table, targetColumn);
+        LongCountMap counts = new LongCountMap();
+        for (int label : labels) {
+            if (label != MISSING) {
+                counts.add(label);
+            }
+        }
+        Map<Integer, Integer> result = new TreeMap<>();
+        for (int i = 0; i < counts.size(); i++) {
+            result.put((int) counts.keyAt(i), (int) counts.countAt(i));
+        }
+        return result;
+    }
+
+    public Table sample(Table table) {
+        return table.rows(sampleRows(table));
+    }
+
+    /**
+     * Returns sorted indices of sampled table rows. Rows with missing class are never sampled.
+     */
+    public int[] sampleRows(Table table) {
+        int[] labels = labels(table, targetColumn);
+
+        // group row indices by class: count rows, then place indices of each class into its own segment of one array
+        LongCountMap counts = new LongCountMap();
+        int[] classOf = new int[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            classOf[i] = labels[i] == MISSING ? -1 : counts.add(labels[i]);
+        }
+        int numClasses = counts.size();
+        if (numClasses == 0) {
+            return new int[0];
+        }
+        int[] start = new int[numClasses + 1];
+        for (int c = 0; c < numClasses; c++) {
+            start[c + 1] = start[c] + (int) counts.countAt(c);
+        }
+        int[] rowsByClass = new int[labels.length];
+        int[] pos = Arrays.copyOf(start, numClasses);
+        for (int i = 0; i < labels.length; i++) {
+            if (classOf[i] >= 0) {
+                rowsByClass[pos[classOf[i]]++] = i;
+            }
+        }
+
+        long minority = Long.MAX_VALUE;
+        for (int c = 0; c < numClasses; c++) {
+            minority = Math.min(minority, counts.countAt(c));
+        }
+        int perClass = sampleSize(minority);
+
+        Random random = new Random(seed);
+        int[] sample = new int[labels.length];
+        int size = 0;
+        for (int c = 0; c < numClasses; c++) {
+            int classSize = start[c + 1] - start[c];
+            int n = counts.countAt(c) == minority ? classSize : Math.min(perClass, classSize);
+            // partial Fisher-Yates shuffle of class segment chooses n rows without replacement
+            for (int i = 0; i < n; i++) {
+                int j = start[c] + i + random.nextInt(classSize - i);
+                int tmp = rowsByClass[start[c] + i];
+                rowsByClass[start[c] + i] = rowsByClass[j];
+                rowsByClass[j] = tmp;
+            }
+            System.arraycopy(rowsByClass, start[c], sample, size, n);
+            size += n;
+        }
+        int[] result = Arrays.copyOf(sample, size);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Assigns rows to k folds for cross-validation, so that each class is split evenly among folds.
+     * Rows are visited in random order and rows of each class are dealt to folds in turn.
+     *
+     * @return fold of each row, or -1 for rows with missing class
+     */
+    public int[] folds(Table table, int k) {
+        if (k < 2) {
+            throw new IllegalArgumentException("Number of folds must be at least 2: " + k);
+        }
+        int[] labels = labels(table, targetColumn);
+        int[] order = new int[labels.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Random random = new Random(seed);
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+
+        LongCountMap dealt = new LongCountMap();
+        int[] folds = new int[labels.length];
+        for (int row : order) {
+            if (labels[row] == MISSING) {
+                folds[row] = -1;
+            } else {
+                int c = dealt.add(labels[row]);
+                folds[row] = (int) ((dealt.countAt(c) - 1) % k);
+            }
+        }
+        return folds;
+    }
+
+    /**
+     * Samples data read chunk by chunk, e.g. from {@link MappedCsvReader#chunks(int)}.
+     * All rows of minority class are kept, and rows of every other class are sampled into a reservoir of the given capacity,
+     * which is reduced to ratio * minority rows at the end. Capacity should be at least the expected size of sample for each class,
+     * otherwise sample will contain fewer rows of other classes.
+     *
+     * @param chunks data chunks, all with the same columns
+     * @param minorityClass value of target column for minority class
+     * @param reservoirCapacity max number of rows kept for each other class
+     * @return sampled rows in their original order
+     */
+    public ColumnChunk sample(Iterator<ColumnChunk> chunks, int minorityClass, int reservoirCapacity) {
+        if (reservoirCapacity < 1) {
+            throw new IllegalArgumentException("Reservoir capacity must be positive: " + reservoirCapacity);
+        }
+        Random random = new Random(seed);
+        Reservoir minority = null;
+        Map<Integer, Reservoir> others = new TreeMap<>();
+        String[] columnNames = null;
+        long rowNumber = 0;
+
+        while (chunks.hasNext()) {
+            ColumnChunk chunk = chunks.next();
+            if (columnNames == null) {
+                columnNames = chunk.getColumnNames();
+                minority = new Reservoir(columnNames.length, Integer.MAX_VALUE);
+            }
+            float[] target = chunk.column(targetColumn);
+            for (int row = 0; row < chunk.getRowCount(); row++, rowNumber++) {
+                if (Float.isNaN(target[row])) {
+                    continue;
+                }
+                int label = (int) target[row];
+                if (label == minorityClass) {
+                    minority.add(chunk, row, rowNumber, random);
+                } else {
+                    int numColumns = columnNames.length;
+                    others.computeIfAbsent(label, l -> new Reservoir(numColumns, reservoirCapacity))
+                          .add(chunk, row, rowNumber, random);
+                }
+            }
+        }
+        if (columnNames == null) {
+            throw new IllegalArgumentException("No data chunks to sample");
+        }
+
+        int perClass = sampleSize(minority.size);
+        Reservoir sample = minority;
+        for (Reservoir reservoir : others.values()) {
+            reservoir.shuffle(random);
+            sample.addAll(reservoir, Math.min(perClass, reservoir.size));
+        }
+        return sample.toChunk(columnNames);
+    }
+
+    private int sampleSize(long minorityCount) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.round(minorityCount * ratio));
+    }
+
+    /**
+     * Returns class of each row, where missing class is Integer.MIN_VALUE (the same as missing value in IntColumn).
+     */
+    private static int[] labels(Table table, String targetColumn) {
+        if (table.column(targetColumn) instanceof IntColumn) {
+            return table.intColumn(targetColumn).asIntArray();
+        }
+        NumericColumn<?> column = table.numberColumn(targetColumn);
+        int[] labels = new int[column.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = column.isMissing(i) ? MISSING : (int) column.getDouble(i);
+        }
+        return labels;
+    }
+
+    /**
+     * Rows stored in one row-major array, together with their positions in input.
+     * Uses algorithm R: once full, n-th row replaces a random stored row with probability capacity / n.
+     */
+    private static final class Reservoir {
+
+        private final int numColumns;
+        private final int capacity;
+        private float[] values;
+        private long[] rowNumbers;
+        private int size;
+        private long seen;
+
+        Reservoir(int numColumns, int capacity) {
+            this.numColumns = numColumns;
+            this.capacity = capacity;
+            this.values = new float[16 * numColumns];
+            this.rowNumbers = new long[16];
+        }
+
+        void add(ColumnChunk chunk, int row, long rowNumber, Random random) {
+            seen++;
+            int slot;
+            if (size < capacity) {
+                slot = size++;
+                ensureCapacity(size);
+            } else {
+                long j = random.nextLong(seen);
+                if (j >= capacity) {
+                    return;
+                }
+                slot = (int) j;
+            }
+            for (int col = 0; col < numColumns; col++) {
+                values[slot * numColumns + col] = chunk.get(row, col);
+            }
+            rowNumbers[slot] = rowNumber;
+        }
+
+        void addAll(Reservoir other, int count) {
+            ensureCapacity(size + count);
+            System.arraycopy(other.values, 0, values, size * numColumns, count * numColumns);
+            System.arraycopy(other.rowNumbers, 0, rowNumbers, size, count);
+            size += count;
+        }
+
+        /**
+         * Shuffles stored rows, so that any prefix is a random sample of them.
+         */
+        void shuffle(Random random) {
+            float[] tmp = new float[numColumns];
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                System.arraycopy(values, i * numColumns, tmp, 0, numColumns);
+                System.arraycopy(values, j * numColumns, values, i * numColumns, numColumns);
+                System.arraycopy(tmp, 0, values, j * numColumns, numColumns);
+                long n = rowNumbers[i];
+                rowNumbers[i] = rowNumbers[j];
+                rowNumbers[j] = n;
+            }
+        }
+
+        ColumnChunk toChunk(String[] columnNames) {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(rowNumbers[a], rowNumbers[b]));
+
+            float[][] columns = new float[numColumns][size];
+            for (int i = 0; i < size; i++) {
+                int offset = order[i] * numColumns;
+                for (int col = 0; col < numColumns; col++) {
+                    columns[col][i] = values[offset + col];
+                }
+            }
+            return new ColumnChunk(columnNames, columns, size);
+        }
+
+        private void ensureCapacity(int rows) {
+            if (rows > rowNumbers.length) {
+                int newLength = Math.max(rows, rowNumbers.length * 2);
+                values = Arrays.copyOf(values, newLength * numColumns);
+                rowNumbers = Arrays.copyOf(rowNumbers, newLength);
+            }
+        }
+    }
+}
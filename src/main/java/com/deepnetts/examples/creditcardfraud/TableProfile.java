@@ -0,0 +1,89 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import java.util.Collections;
+import java.util.List;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.LongColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+/**
+ * Profiles of all columns in a table, created by {@link ColumnProfiler}.
+ * Profile is a snapshot of the data at the time it was created.
+ */
+public class TableProfile {
+
+    private final int rowCount;
+    private final List<String> columnNames;
+    private final List<ColumnProfile> columns;
+
+    TableProfile(Table table, List<ColumnProfile> columns) {
+        this.rowCount = table.rowCount();
+        this.columnNames = Collections.unmodifiableList(table.columnNames());
+        this.columns = Collections.unmodifiableList(columns);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public List<ColumnProfile> getColumns() {
+        return columns;
+    }
+
+    public ColumnProfile get(String columnName) {
+        int idx = columnNames.indexOf(columnName);
+        if (idx < 0) {
+            throw new IllegalArgumentException("Column not found in profile: " + columnName);
+        }
+        return columns.get(idx);
+    }
+
+    /**
+     * Returns true if this profile has been created for a table with the same rows and columns as the given one.
+     * Changes of values are not detected, so profile should be discarded when values are changed.
+     */
+    public boolean matches(Table table) {
+        return table.rowCount() == rowCount && table.columnNames().equals(columnNames);
+    }
+
+    /**
+     * Returns summary of all columns as a table, with one row per column.
+     */
+    public Table toTable() {
+        StringColumn name = StringColumn.create("Column");
+        StringColumn type = StringColumn.create("Type");
+        LongColumn count = LongColumn.create("Count");
+        LongColumn missing = LongColumn.create("Missing");
+        DoubleColumn min = DoubleColumn.create("Min");
+        DoubleColumn q1 = DoubleColumn.create("Q1");
+        DoubleColumn median = DoubleColumn.create("Median");
+        DoubleColumn mean = DoubleColumn.create("Mean");
+        DoubleColumn q3 = DoubleColumn.create("Q3");
+        DoubleColumn max = DoubleColumn.create("Max");
+        DoubleColumn std = DoubleColumn.create("Std. Dev");
+        LongColumn distinct = LongColumn.create("Distinct (approx)");
+
+        for (ColumnProfile column : columns) {
+            name.append(column.getName());
+            type.append(column.getType());
+            count.append(column.getCount());
+            missing.append(column.getMissing());
+            min.append(column.getMin());
+            q1.append(column.getQuartile1());
+            median.append(column.getMedian());
+            mean.append(column.getMean());
+            q3.append(column.getQuartile3());
+            max.append(column.getMax());
+            std.append(column.getStandardDeviation());
+            distinct.append(column.getDistinctEstimate());
+        }
+
+        return Table.create("Column profile", name, type, count, missing, min, q1, median, mean, q3, max, std, distinct);
+    }
+
+    @Override
+    public String toString() {
+        return toTable().printAll();
+    }
+}
@@ -0,0 +1,367 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import deepnetts.net.train.BackpropagationTrainer;
+import deepnetts.net.train.TrainingEvent;
+import deepnetts.net.train.TrainingListener;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Collects statistics of each training epoch: training and validation loss, duration, throughput, allocated bytes and GC time.
+ * Statistics are emitted as JFR events (recorded when Flight Recorder is running, e.g. with -XX:StartFlightRecording),
+ * and written to any number of sinks, such as CSV or JSON lines file.
+ *
+ * Optionally stops training when validation loss has not improved for the given number of epochs (patience).
+ * Validation loss is computed by trainer only when network is trained with validation set, using trainer.train(trainingSet, validationSet).
+ *
+ * Usage: neuralNet.getTrainer().addListener(new TrainingMonitor(trainingSet.size()).addSink(TrainingMonitor.csv(path)));
+ */
+public class TrainingMonitor implements TrainingListener, AutoCloseable {
+
+    /**
+     * Statistics of one epoch.
+     */
+    public static final class EpochStats {
+        private final int epoch;
+        private final float trainingLoss;
+        private final float validationLoss;
+        private final float trainingAccuracy;
+        private final long durationNanos;
+        private final int samples;
+        private final long allocatedBytes;
+        private final long gcCount;
+        private final long gcMillis;
+
+        EpochStats(int epoch, float trainingLoss, float validationLoss, float trainingAccuracy, long durationNanos, int samples,
+                   long allocatedBytes, long gcCount, long gcMillis) {
+            this.epoch = epoch;
+            this.trainingLoss = trainingLoss;
+            this.validationLoss = validationLoss;
+            this.trainingAccuracy = trainingAccuracy;
+            this.durationNanos = durationNanos;
+            this.samples = samples;
+            this.allocatedBytes = allocatedBytes;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        public int getEpoch() {
+            return epoch;
+        }
+
+        public float getTrainingLoss() {
+            return trainingLoss;
+        }
+
+        /**
+         * Returns validation loss, NaN if network is trained without validation set.
+         */
+        public float getValidationLoss() {
+            return validationLoss;
+        }
+
+        public float getTrainingAccuracy() {
+            return trainingAccuracy;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        public double getSamplesPerSecond() {
+            return durationNanos > 0 ? samples * 1e9 / durationNanos : 0;
+        }
+
+        /**
+         * Returns bytes allocated by all live threads during epoch, -1 if JVM does not measure allocations.
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public long getGcCount() {
+            return gcCount;
+        }
+
+        public long getGcMillis() {
+            return gcMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "Epoch %d | loss: %.6f | validation loss: %.6f | %.1f ms | %.0f samples/s | allocated: %d KB | GC: %d (%d ms)",
+                    epoch, trainingLoss, validationLoss, durationNanos / 1e6, getSamplesPerSecond(), allocatedBytes / 1024, gcCount, gcMillis);
+        }
+    }
+
+    /**
+     * Receives statistics after each epoch.
+     */
+    public interface Sink extends AutoCloseable {
+
+        void epoch(EpochStats stats);
+
+        @Override
+        default void close() {
+        }
+    }
+
+    @Name("com.deepnetts.examples.creditcardfraud.TrainingEpoch")
+    @Label("Training Epoch")
+    @Category({"Deep Netts", "Training"})
+    @Description("Statistics of one neural network training epoch")
+    static final class EpochEvent extends jdk.jfr.Event {
+        @Label("Epoch")
+        int epoch;
+
+        @Label("Training Loss")
+        float trainingLoss;
+
+        @Label("Validation Loss")
+        float validationLoss;
+
+        @Label("Training Accuracy")
+        float trainingAccuracy;
+
+        @Label("Samples per Second")
+        double samplesPerSecond;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocatedBytes;
+
+        @Label("GC Count")
+        long gcCount;
+
+        @Label("GC Time")
+        @Timespan(Timespan.MILLISECONDS)
+        long gcTime;
+    }
+
+    private final int samplesPerEpoch;
+    private final List<Sink> sinks = new ArrayList<>();
+    private final List<EpochStats> epochs = new ArrayList<>();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private int patience;
+    private float minDelta;
+    private float bestValidationLoss = Float.POSITIVE_INFINITY;
+    private int bestEpoch;
+
+    private EpochEvent event;
+    private long epochStart;
+    private long allocatedAtStart;
+    private long gcCountAtStart;
+    private long gcMillisAtStart;
+
+    /**
+     * @param samplesPerEpoch number of training samples, used to compute throughput
+     */
+    public TrainingMonitor(int samplesPerEpoch) {
+        this.samplesPerEpoch = samplesPerEpoch;
+    }
+
+    public TrainingMonitor addSink(Sink sink) {
+        sinks.add(sink);
+        return this;
+    }
+
+    /**
+     * Stops training when validation loss has not decreased by more than minDelta for patience epochs.
+     */
+    public TrainingMonitor earlyStopping(int patience, float minDelta) {
+        if (patience < 1) {
+            throw new IllegalArgumentException("Patience must be positive: " + patience);
+        }
+        this.patience = patience;
+        this.minDelta = minDelta;
+        return this;
+    }
+
+    @Override
+    public void handleEvent(TrainingEvent trainingEvent) {
+        switch (trainingEvent.getType()) {
+            case STARTED:
+                bestValidationLoss = Float.POSITIVE_INFINITY;
+                bestEpoch = 0;
+                startEpoch();
+                break;
+            case EPOCH_FINISHED:
+                finishEpoch(trainingEvent.getSource());
+                startEpoch();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void startEpoch() {
+        event = new EpochEvent();
+        event.begin();
+        epochStart = System.nanoTime();
+        allocatedAtStart = allocatedBytes();
+        long[] gc = gcCountAndMillis();
+        gcCountAtStart = gc[0];
+        gcMillisAtStart = gc[1];
+    }
+
+    private void finishEpoch(BackpropagationTrainer trainer) {
+        long duration = System.nanoTime() - epochStart;
+        long allocated = allocatedAtStart < 0 ? -1 : allocatedBytes() - allocatedAtStart;
+        long[] gc = gcCountAndMillis();
+        float validationLoss = trainer.getValidationLoss();
+        if (validationLoss == 0) {
+            validationLoss = Float.NaN; // trainer does not compute validation loss without validation set
+        }
+        EpochStats stats = new EpochStats(trainer.getCurrentEpoch(), trainer.getTrainingLoss(), validationLoss, trainer.getTrainingAccuracy(),
+                duration, samplesPerEpoch, allocated, gc[0] - gcCountAtStart, gc[1] - gcMillisAtStart);
+        epochs.add(stats);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.epoch = stats.epoch;
+            event.trainingLoss = stats.trainingLoss;
+            event.validationLoss = stats.validationLoss;
+            event.trainingAccuracy = stats.trainingAccuracy;
+            event.samplesPerSecond = stats.getSamplesPerSecond();
+            event.allocatedBytes = stats.allocatedBytes;
+            event.gcCount = stats.gcCount;
+            event.gcTime = stats.gcMillis;
+            event.commit();
+        }
+        for (Sink sink : sinks) {
+            sink.epoch(stats);
+        }
+
+        if (patience > 0 && !Float.isNaN(validationLoss)) {
+            if (validationLoss < bestValidationLoss - minDelta) {
+                bestValidationLoss = validationLoss;
+                bestEpoch = stats.epoch;
+            } else if (stats.epoch - bestEpoch >= patience) {
+                System.out.printf(">> Early stopping at epoch %d, best validation loss %.6f at epoch %d\n", stats.epoch, bestValidationLoss, bestEpoch);
+                trainer.stop();
+            }
+        }
+    }
+
+    /**
+     * Returns statistics of all epochs so far.
+     */
+    public List<EpochStats> getEpochs() {
+        return epochs;
+    }
+
+    /**
+     * Returns epoch with the lowest validation loss, 0 if there is no validation loss or early stopping is not enabled.
+     */
+    public int getBestEpoch() {
+        return bestEpoch;
+    }
+
+    @Override
+    public void close() {
+        for (Sink sink : sinks) {
+            sink.close();
+        }
+    }
+
+    private long allocatedBytes() {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        if (!allocations.isThreadAllocatedMemorySupported() || !allocations.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long bytes : allocations.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    private static long[] gcCountAndMillis() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[] {count, millis};
+    }
+
+    /**
+     * Writes statistics of each epoch as a line of CSV file with header.
+     */
+    public static Sink csv(Path file) throws IOException {
+        Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        writer.write("epoch,trainingLoss,validationLoss,trainingAccuracy,durationMs,samplesPerSecond,allocatedBytes,gcCount,gcMillis\n");
+        return new WriterSink(writer, false);
+    }
+
+    /**
+     * Writes statistics of each epoch as one JSON object per line.
+     */
+    public static Sink json(Path file) throws IOException {
+        return new WriterSink(Files.newBufferedWriter(file, StandardCharsets.UTF_8), true);
+    }
+
+    private static final class WriterSink implements Sink {
+        private final Writer writer;
+        private final boolean json;
+
+        WriterSink(Writer writer, boolean json) {
+            this.writer = writer;
+            this.json = json;
+        }
+
+        @Override
+        public void epoch(EpochStats s) {
+            String format = json
+                    ? "{\"epoch\":%d,\"trainingLoss\":%s,\"validationLoss\":%s,\"trainingAccuracy\":%s,\"durationMs\":%.3f,"
+                      + "\"samplesPerSecond\":%.1f,\"allocatedBytes\":%d,\"gcCount\":%d,\"gcMillis\":%d}\n"
+                    : "%d,%s,%s,%s,%.3f,%.1f,%d,%d,%d\n";
+            try {
+                writer.write(String.format(Locale.ROOT, format, s.epoch, number(s.trainingLoss), number(s.validationLoss), number(s.trainingAccuracy),
+                        s.durationNanos / 1e6, s.getSamplesPerSecond(), s.allocatedBytes, s.gcCount, s.gcMillis));
+                writer.flush(); // keep file current while training runs
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        /**
+         * NaN is written as empty CSV value, or null in JSON.
+         */
+        private String number(float value) {
+            return Float.isNaN(value) ? (json ? "null" : "") : Float.toString(value);
+        }
+
+        @Override
+        public void close() {
+            try {
+                writer.close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import deepnetts.net.layers.activation.ActivationType;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Dense kernel using JDK Vector API (jdk.incubator.vector module), which compiles to SIMD instructions of the processor.
+ * This class is loaded only when the module is available, see {@link DenseInferenceEngine}.
+ */
+final class VectorDenseKernel implements DenseKernel {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_64;
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_128;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_256;
+    private static final DenseKernel.Scalar SCALAR = new DenseKernel.Scalar();
+
+    @Override
+    public int lanes() {
+        return Math.max(FLOATS.length(), BYTES.length());
+    }
+
+    @Override
+    public void dense(float[] weights, float[] biases, float[] inputs, int numInputs, float[] outputs, int numOutputs) {
+        int bound = FLOATS.loopBound(numInputs);
+        for (int o = 0; o < numOutputs; o++) {
+            int w = o * numInputs;
+            FloatVector acc = FloatVector.zero(FLOATS);
+            int i = 0;
+            for (; i < bound; i += FLOATS.length()) {
+                FloatVector x = FloatVector.fromArray(FLOATS, inputs, i);
+                acc = FloatVector.fromArray(FLOATS, weights, w + i).fma(x, acc);
+            }
+            float sum = biases[o] + acc.reduceLanes(VectorOperators.ADD);
+            for (; i < numInputs; i++) {
+                sum += weights[w + i] * inputs[i];
+            }
+            outputs[o] = sum;
+        }
+    }
+
+    /**
+     * Computes sigmoid and tanh with vector exp, using the same formulas as scalar kernel. Vector exp may differ from Math.exp in the last bits.
+     */
+    @Override
+    public void activate(ActivationType activation, float[] values, int count) {
+        if (activation != ActivationType.SIGMOID && activation != ActivationType.TANH) {
+            SCALAR.activate(activation, values, count);
+            return;
+        }
+        int bound = FLOATS.loopBound(count);
+        int i = 0;
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector x = FloatVector.fromArray(FLOATS, values, i);
+            FloatVector one = FloatVector.broadcast(FLOATS, 1);
+            FloatVector y;
+            if (activation == ActivationType.SIGMOID) {
+                y = one.div(x.neg().lanewise(VectorOperators.EXP).add(1));
+            } else {
+                y = one.sub(FloatVector.broadcast(FLOATS, 2).div(x.mul(2).lanewise(VectorOperators.EXP).add(1)));
+            }
+            y.intoArray(values, i);
+        }
+        if (i < count) {
+            SCALAR.activate(activation, values, i, count);
+        }
+    }
+
+    @Override
+    public void denseInt8(byte[] weights, float[] weightScales, float[] biases, byte[] inputs, float inputScale, int numInputs, float[] outputs, int numOutputs) {
+        // 8 bytes are widened to 8 shorts and multiplied, products fit in short range (127 * 127), and are then widened to ints and summed
+        int bound = BYTES.loopBound(numInputs);
+        for (int o = 0; o < numOutputs; o++) {
+            int w = o * numInputs;
+            IntVector acc = IntVector.zero(INTS);
+            int i = 0;
+            for (; i < bound; i += BYTES.length()) {
+                ShortVector x = (ShortVector) ByteVector.fromArray(BYTES, inputs, i).convertShape(VectorOperators.B2S, SHORTS, 0);
+                ShortVector wv = (ShortVector) ByteVector.fromArray(BYTES, weights, w + i).convertShape(VectorOperators.B2S, SHORTS, 0);
+                acc = acc.add(x.mul(wv).convertShape(VectorOperators.S2I, INTS, 0));
+            }
+            int sum = acc.reduceLanes(VectorOperators.ADD);
+            for (; i < numInputs; i++) {
+                sum += weights[w + i] * inputs[i];
+            }
+            outputs[o] = biases[o] + sum * weightScales[o] * inputScale;
+        }
+    }
+}
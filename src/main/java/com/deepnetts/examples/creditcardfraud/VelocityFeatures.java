@@ -0,0 +1,222 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Velocity features computed from transaction time: for each window length, number of transactions and sum of their amounts
+ * in the last window seconds, and difference between transaction amount and mean amount in the window.
+ * Features of a transaction are computed from transactions before it, so they can be computed the same way live, when
+ * the transaction is scored, and in batch over data sorted by time.
+ *
+ * Features are computed incrementally. Recent transactions are kept in a ring buffer which covers the longest window,
+ * and each window keeps position of its oldest transaction and running count and sum, which are updated when transactions
+ * enter and leave the window, so each transaction takes O(1) amortized time per window.
+ *
+ * Data set has no card or customer id, so velocity is computed over all transactions.
+ * Times must not decrease, unless late transactions are accepted with {@link #acceptLate(boolean)}.
+ * Methods are synchronized, so one instance can be shared by scoring threads.
+ *
+ * Example:
+ * <pre>
+ * VelocityFeatures velocity = new VelocityFeatures(60, 600, 3600);
+ * ColumnChunk withFeatures = velocity.addTo(chunk, "Time", "Amount");   // batch, chunk by chunk in time order
+ * float[] inputs = velocity.append(transaction, time, amount);         // live, with the same instance or a new one
+ * </pre>
+ */
+public class VelocityFeatures {
+
+    public static final int[] DEFAULT_WINDOWS = {60, 600, 3600};
+
+    private final int[] windows;
+    private final String[] featureNames;
+
+    private float[] times = new float[1024];
+    private float[] amounts = new float[1024];
+    private long added;                 // number of transactions added so far, next transaction goes to index added & mask
+    private final long[] oldest;        // sequence number of the oldest transaction in each window
+    private final double[] sums;        // sum of amounts in each window
+    private float lastTime = Float.NEGATIVE_INFINITY;
+    private boolean acceptLate;
+
+    /**
+     * Creates features for the given window lengths in seconds, default is 1 minute, 10 minutes and 1 hour.
+     */
+    public VelocityFeatures(int... windowSeconds) {
+        if (windowSeconds.length == 0) {
+            windowSeconds = DEFAULT_WINDOWS;
+        }
+        this.windows = windowSeconds.clone();
+        for (int w : windows) {
+            if (w <= 0) {
+                throw new IllegalArgumentException("Window length must be positive: " + w);
+            }
+        }
+        this.oldest = new long[windows.length];
+        this.sums = new double[windows.length];
+        this.featureNames = new String[windows.length * 3];
+        for (int w = 0; w < windows.length; w++) {
+            featureNames[w * 3] = "Count_" + windows[w] + "s";
+            featureNames[w * 3 + 1] = "AmountSum_" + windows[w] + "s";
+            featureNames[w * 3 + 2] = "AmountDeviation_" + windows[w] + "s";
+        }
+    }
+
+    public int[] getWindows() {
+        return windows.clone();
+    }
+
+    /**
+     * Returns names of feature columns, three for each window.
+     */
+    public String[] getFeatureNames() {
+        return featureNames.clone();
+    }
+
+    public int getNumFeatures() {
+        return featureNames.length;
+    }
+
+    /**
+     * Sets whether transaction with time before the previous transaction is accepted and counted at time of the previous one,
+     * instead of throwing exception. Live transactions scored by concurrent requests can arrive slightly out of order.
+     */
+    public synchronized VelocityFeatures acceptLate(boolean acceptLate) {
+        this.acceptLate = acceptLate;
+        return this;
+    }
+
+    /**
+     * Returns true if pipeline has velocity features with default windows among its input columns, as models trained by the webinar demo.
+     * Entry points which read raw transactions use it to decide whether features have to be computed from Time and Amount.
+     */
+    public static boolean usedBy(PreprocessingPipeline pipeline) {
+        List<String> inputColumns = Arrays.asList(pipeline.getInputColumns());
+        return inputColumns.containsAll(Arrays.asList(new VelocityFeatures(DEFAULT_WINDOWS).getFeatureNames()));
+    }
+
+    /**
+     * Returns true if pipeline uses velocity features with default windows, and they are not among the given columns,
+     * so they have to be computed from Time and Amount columns.
+     */
+    public static boolean neededFor(PreprocessingPipeline pipeline, String[] columns) {
+        return usedBy(pipeline) && !Arrays.asList(columns).containsAll(Arrays.asList(new VelocityFeatures(DEFAULT_WINDOWS).getFeatureNames()));
+    }
+
+    /**
+     * Writes features of the transaction to features array starting at offset, and adds the transaction to windows.
+     *
+     * @throws IllegalArgumentException if time is before time of the previous transaction, and late transactions are not accepted
+     */
+    public synchronized void update(float time, float amount, float[] features, int offset) {
+        if (time < lastTime) {
+            if (!acceptLate) {
+                throw new IllegalArgumentException("Transactions must be ordered by time, got " + time + " after " + lastTime);
+            }
+            time = lastTime;
+        }
+        if (Float.isNaN(amount)) {
+            amount = 0;
+        }
+        int mask = times.length - 1;
+        for (int w = 0; w < windows.length; w++) {
+            float start = time - windows[w];
+            while (oldest[w] < added && times[(int) oldest[w] & mask] <= start) {
+                sums[w] -= amounts[(int) oldest[w] & mask];
+                oldest[w]++;
+            }
+            long count = added - oldest[w];
+            if (count == 0) {
+                sums[w] = 0;    // clears rounding error accumulated by subtracting
+            }
+            features[offset + w * 3] = count;
+            features[offset + w * 3 + 1] = (float) sums[w];
+            features[offset + w * 3 + 2] = count > 0 ? (float) (amount - sums[w] / count) : 0;
+        }
+
+        if (added - minOldest() == times.length) {
+            grow();
+            mask = times.length - 1;
+        }
+        times[(int) added & mask] = time;
+        amounts[(int) added & mask] = amount;
+        for (int w = 0; w < windows.length; w++) {
+            sums[w] += amount;
+        }
+        added++;
+        lastTime = time;
+    }
+
+    /**
+     * Returns new array with features of the transaction appended to it, and adds the transaction to windows.
+     * Order of values matches columns of chunk returned by {@link #addTo(ColumnChunk, String, String)}, without time and target columns.
+     */
+    public float[] append(float[] transaction, float time, float amount) {
+        float[] extended = Arrays.copyOf(transaction, transaction.length + featureNames.length);
+        update(time, amount, extended, transaction.length);
+        return extended;
+    }
+
+    /**
+     * Returns new chunk with feature columns added after columns of the given chunk. Rows must be sorted by time,
+     * and chunks of the same file have to be added in order, since windows continue from the previous chunk.
+     */
+    public synchronized ColumnChunk addTo(ColumnChunk chunk, String timeColumn, String amountColumn) {
+        int rows = chunk.getRowCount();
+        float[] time = chunk.column(timeColumn);
+        float[] amount = chunk.column(amountColumn);
+        int numColumns = chunk.getColumnCount();
+
+        String[] names = Arrays.copyOf(chunk.getColumnNames(), numColumns + featureNames.length);
+        System.arraycopy(featureNames, 0, names, numColumns, featureNames.length);
+        float[][] columns = new float[names.length][];
+        for (int c = 0; c < numColumns; c++) {
+            columns[c] = chunk.column(c);
+        }
+        for (int f = 0; f < featureNames.length; f++) {
+            columns[numColumns + f] = new float[rows];
+        }
+
+        float[] features = new float[featureNames.length];
+        for (int r = 0; r < rows; r++) {
+            update(time[r], amount[r], features, 0);
+            for (int f = 0; f < features.length; f++) {
+                columns[numColumns + f][r] = features[f];
+            }
+        }
+        return new ColumnChunk(names, columns, rows);
+    }
+
+    /**
+     * Clears all windows, for example before processing another file.
+     */
+    public synchronized void reset() {
+        added = 0;
+        Arrays.fill(oldest, 0);
+        Arrays.fill(sums, 0);
+        lastTime = Float.NEGATIVE_INFINITY;
+    }
+
+    private long minOldest() {
+        long min = added;
+        for (long o : oldest) {
+            min = Math.min(min, o);
+        }
+        return min;
+    }
+
+    /**
+     * Doubles the ring buffer, keeping transactions at positions given by their sequence numbers.
+     */
+    private void grow() {
+        int capacity = times.length * 2;
+        float[] newTimes = new float[capacity];
+        float[] newAmounts = new float[capacity];
+        for (long s = minOldest(); s < added; s++) {
+            newTimes[(int) s & (capacity - 1)] = times[(int) s & (times.length - 1)];
+            newAmounts[(int) s & (capacity - 1)] = amounts[(int) s & (amounts.length - 1)];
+        }
+        times = newTimes;
+        amounts = newAmounts;
+    }
+}
@@ -0,0 +1,142 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import deepnetts.net.FeedForwardNetwork;
+import deepnetts.net.layers.AbstractLayer;
+import deepnetts.net.layers.activation.ActivationType;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Saves and loads a trained network with its preprocessing, and checks that damaged or newer files are rejected.
+ */
+public class BinaryModelTest {
+
+    private static final int VERSION_OFFSET = 4;
+    private static final int CHECKSUM_OFFSET = 16;
+    private static final int HEADER_SIZE = 24;
+
+    private static FeedForwardNetwork network;
+    private static PreprocessingPipeline pipeline;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    public static void train() {
+        ColumnChunk data;
+        try (MappedCsvReader csvReader = new MappedCsvReader(TestNetworks.BALANCED_CSV)) {
+            data = csvReader.readAll();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        pipeline = PreprocessingPipeline.builder()
+                                        .dropColumns("Time")
+                                        .scaling(PreprocessingPipeline.Scaling.MAX)
+                                        .fit(data);
+        network = TestNetworks.trained(pipeline.transform(data), 8, ActivationType.TANH);
+    }
+
+    @Test
+    public void loadsBitExactWeightsAndPipeline() throws IOException {
+        Path file = tempDir.resolve("model" + BinaryModel.FILE_EXTENSION);
+        BinaryModel.save(network, pipeline, file);
+        BinaryModel model = BinaryModel.load(file);
+
+        List<AbstractLayer> expected = network.getLayers();
+        List<AbstractLayer> actual = model.getNetwork().getLayers();
+        assertEquals(expected.size(), actual.size());
+        for (int l = 1; l < expected.size(); l++) {
+            assertEquals(expected.get(l).getActivationType(), actual.get(l).getActivationType());
+            assertBitsEqual(expected.get(l).getWeights().getValues(), actual.get(l).getWeights().getValues());
+            assertBitsEqual(expected.get(l).getBiases(), actual.get(l).getBiases());
+        }
+        assertEquals(network.getOutputLayer().getLossType(), model.getNetwork().getOutputLayer().getLossType());
+
+        PreprocessingPipeline loaded = model.getPipeline();
+        assertEquals(pipeline.getTargetColumn(), loaded.getTargetColumn());
+        assertEquals(pipeline.getScaling(), loaded.getScaling());
+        assertArrayEquals(pipeline.getRawColumns(), loaded.getRawColumns());
+        assertArrayEquals(pipeline.getInputColumns(), loaded.getInputColumns());
+        assertArrayEquals(pipeline.getRawIndexes(), loaded.getRawIndexes());
+        assertBitsEqual(pipeline.getFill(), loaded.getFill());
+        assertBitsEqual(pipeline.getOffset(), loaded.getOffset());
+        assertBitsEqual(pipeline.getScale(), loaded.getScale());
+    }
+
+    @Test
+    public void savesNetworkWithoutPipeline() throws IOException {
+        Path file = tempDir.resolve("network" + BinaryModel.FILE_EXTENSION);
+        BinaryModel.save(network, null, file);
+        BinaryModel model = BinaryModel.load(file);
+        assertNull(model.getPipeline());
+        assertBitsEqual(network.getOutputLayer().getWeights().getValues(), model.getNetwork().getOutputLayer().getWeights().getValues());
+    }
+
+    @Test
+    public void rejectsChangedPayload() throws IOException {
+        Path file = saved("payload");
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 3] ^= 0x10;
+        Files.write(file, bytes);
+        assertRejected(file, "checksum");
+    }
+
+    @Test
+    public void rejectsChangedChecksum() throws IOException {
+        Path file = saved("checksum");
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[CHECKSUM_OFFSET] ^= 0x01;
+        Files.write(file, bytes);
+        assertRejected(file, "checksum");
+    }
+
+    @Test
+    public void rejectsNewerVersion() throws IOException {
+        Path file = saved("version");
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(VERSION_OFFSET, BinaryModel.VERSION + 1);
+        Files.write(file, bytes);
+        assertRejected(file, "version");
+    }
+
+    @Test
+    public void rejectsTruncatedFile() throws IOException {
+        Path file = saved("truncated");
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, HEADER_SIZE + 10));
+        assertRejected(file, "truncated");
+    }
+
+    private Path saved(String name) throws IOException {
+        Path file = tempDir.resolve(name + BinaryModel.FILE_EXTENSION);
+        BinaryModel.save(network, pipeline, file);
+        return file;
+    }
+
+    private static void assertRejected(Path file, String reason) {
+        IOException ex = assertThrows(IOException.class, () -> BinaryModel.load(file));
+        assertTrue(ex.getMessage().contains(reason), ex.getMessage());
+    }
+
+    private static void assertBitsEqual(float[] expected, float[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(Float.floatToIntBits(expected[i]), Float.floatToIntBits(actual[i]), "value " + i);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import deepnetts.data.DataSets;
+import deepnetts.data.MLDataItem;
+import deepnetts.data.TabularDataSet;
+import deepnetts.util.Tensor;
+import org.junit.jupiter.api.Test;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.Table;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Checks that items create tensors of their rows once, and that changes made through tensors reach the buffer.
+ */
+public class ColumnarDataSetTest {
+
+    private static ColumnarDataSet dataSet() {
+        float[] values = {1, 2, 0,
+                          3, 4, 1,
+                          5, 6, 0};
+        return new ColumnarDataSet(values, 3, 2, 1, new String[] {"a", "b", "Class"});
+    }
+
+    @Test
+    public void itemsKeepTensorsOfBufferRows() {
+        ColumnarDataSet dataSet = dataSet();
+        MLDataItem item = dataSet.get(1);
+        Tensor input = item.getInput();
+        assertArrayEquals(new float[] {3, 4}, input.getValues());
+        assertArrayEquals(new float[] {1}, item.getTargetOutput().getValues());
+        assertSame(input, item.getInput());
+        assertSame(item.getTargetOutput(), item.getTargetOutput());
+    }
+
+    @Test
+    public void changesThroughTensorsReachBuffer() {
+        ColumnarDataSet dataSet = dataSet();
+        MLDataItem item = dataSet.get(2);
+        item.getInput().getValues()[1] = 0.5f;
+        item.getTargetOutput().set(0, 1);
+
+        float[] copy = new float[2];
+        ((ColumnarDataSet.RowView) item).copyInputTo(copy, 0);
+        assertArrayEquals(new float[] {5, 0.5f}, copy);
+        assertArrayEquals(new float[] {1, 2, 0, 3, 4, 1, 5, 0.5f, 1}, dataSet.getValues());
+    }
+
+    @Test
+    public void scaleToMaxScalesCreatedDataSet() {
+        Table table = Table.create("transactions",
+                DoubleColumn.create("a", 1, 3, 5),
+                DoubleColumn.create("b", -2, 4, 8),
+                IntColumn.create("Class", 0, 1, 0));
+        TabularDataSet<MLDataItem> dataSet = DataPreparation.createDataSet(table);
+        DataSets.scaleToMax(dataSet);
+
+        assertArrayEquals(new float[] {0.2f, -0.25f}, dataSet.get(0).getInput().getValues(), 1e-6f);
+        assertArrayEquals(new float[] {0.6f, 0.5f}, dataSet.get(1).getInput().getValues(), 1e-6f);
+        assertArrayEquals(new float[] {1, 1}, dataSet.get(2).getInput().getValues(), 1e-6f);
+        float[] values = ((ColumnarDataSet) dataSet).getValues();
+        assertEquals(0.6f, values[3], 1e-6f);
+        assertEquals(0.5f, values[4], 1e-6f);
+        assertEquals(1, values[5]);
+    }
+}
@@ -0,0 +1,68 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import deepnetts.net.FeedForwardNetwork;
+import deepnetts.net.layers.activation.ActivationType;
+import java.util.ArrayList;
+import java.util.List;
+import javax.visrec.ml.classification.BinaryClassifier;
+import javax.visrec.ri.ml.classification.FeedForwardNetBinaryClassifier;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that inference engine gives the same probabilities as Deep Netts classifier for trained networks,
+ * with both kernels, float and int8 precision, and hidden layer widths which are not multiples of the vector length.
+ */
+public class DenseInferenceEngineTest {
+
+    private static final float TOLERANCE = 1e-5f;
+    private static final float INT8_TOLERANCE = 0.02f;
+
+    private static ColumnarDataSet dataSet;
+    private static List<FeedForwardNetwork> networks;
+
+    @BeforeAll
+    public static void train() {
+        dataSet = TestNetworks.balancedDataSet();
+        networks = new ArrayList<>();
+        networks.add(TestNetworks.trained(dataSet, 32, ActivationType.TANH));
+        networks.add(TestNetworks.trained(dataSet, 13, ActivationType.TANH));
+        networks.add(TestNetworks.trained(dataSet, 13, ActivationType.RELU));
+    }
+
+    static List<Arguments> engines() {
+        List<Arguments> arguments = new ArrayList<>();
+        for (DenseKernel kernel : DenseKernelTest.kernels()) {
+            for (DenseInferenceEngine.Precision precision : DenseInferenceEngine.Precision.values()) {
+                arguments.add(Arguments.of(kernel, precision));
+            }
+        }
+        return arguments;
+    }
+
+    @ParameterizedTest
+    @MethodSource("engines")
+    public void matchesClassifier(DenseKernel kernel, DenseInferenceEngine.Precision precision) {
+        float tolerance = precision == DenseInferenceEngine.Precision.INT8 ? INT8_TOLERANCE : TOLERANCE;
+        int rows = dataSet.getRowCount();
+        for (FeedForwardNetwork network : networks) {
+            BinaryClassifier<float[]> classifier = new FeedForwardNetBinaryClassifier(network);
+            DenseInferenceEngine engine = DenseInferenceEngine.of(network, precision, kernel);
+
+            float[] probabilities = new float[rows];
+            engine.classifyBatch(dataSet.getValues(), 0, dataSet.getStride(), rows, probabilities, 0);
+            for (int r = 0; r < rows; r++) {
+                float[] transaction = TestNetworks.inputs(dataSet, r);
+                String where = kernel.getClass().getSimpleName() + ", " + precision + ", "
+                        + network.getLayers().get(1).getWidth() + " " + network.getLayers().get(1).getActivationType() + ", row " + r;
+                assertEquals(classifier.classify(transaction), probabilities[r], tolerance, where);
+                // Vector API reductions may be compiled differently between calls, which changes the last bits
+                assertEquals(probabilities[r], engine.classify(transaction), 1e-6f, where);
+            }
+        }
+    }
+}
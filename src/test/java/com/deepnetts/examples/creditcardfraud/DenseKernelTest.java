@@ -0,0 +1,137 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import deepnetts.net.layers.activation.ActivationType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks scalar and Vector API kernels against reference computed in double precision,
+ * with widths which are not multiples of the vector length, so both vector loops and scalar tails are used.
+ */
+public class DenseKernelTest {
+
+    private static final int[] WIDTHS = {1, 3, 7, 8, 15, 17, 29, 31, 33, 80, 101};
+    private static final int NUM_OUTPUTS = 5;
+
+    static List<DenseKernel> kernels() {
+        List<DenseKernel> kernels = new ArrayList<>();
+        kernels.add(new DenseKernel.Scalar());
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            kernels.add(new VectorDenseKernel());
+        }
+        return kernels;
+    }
+
+    @ParameterizedTest
+    @MethodSource("kernels")
+    public void denseMatchesReference(DenseKernel kernel) {
+        SplittableRandom random = new SplittableRandom(1);
+        for (int numInputs : WIDTHS) {
+            float[] weights = randomValues(random, numInputs * NUM_OUTPUTS, 1);
+            float[] biases = randomValues(random, NUM_OUTPUTS, 1);
+            float[] inputs = randomValues(random, numInputs, 3);
+            float[] outputs = new float[NUM_OUTPUTS];
+            kernel.dense(weights, biases, inputs, numInputs, outputs, NUM_OUTPUTS);
+
+            for (int o = 0; o < NUM_OUTPUTS; o++) {
+                double expected = biases[o];
+                double magnitude = Math.abs(biases[o]);
+                for (int i = 0; i < numInputs; i++) {
+                    expected += (double) weights[o * numInputs + i] * inputs[i];
+                    magnitude += Math.abs(weights[o * numInputs + i] * inputs[i]);
+                }
+                assertEquals(expected, outputs[o], 1e-6 * magnitude, kernel.getClass().getSimpleName() + ", width " + numInputs + ", output " + o);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("kernels")
+    public void denseInt8MatchesReference(DenseKernel kernel) {
+        SplittableRandom random = new SplittableRandom(2);
+        for (int numInputs : WIDTHS) {
+            byte[] weights = randomBytes(random, numInputs * NUM_OUTPUTS);
+            byte[] inputs = randomBytes(random, numInputs);
+            float[] weightScales = randomValues(random, NUM_OUTPUTS, 0.01f);
+            float[] biases = randomValues(random, NUM_OUTPUTS, 1);
+            float inputScale = 0.02f;
+            float[] outputs = new float[NUM_OUTPUTS];
+            kernel.denseInt8(weights, weightScales, biases, inputs, inputScale, numInputs, outputs, NUM_OUTPUTS);
+
+            for (int o = 0; o < NUM_OUTPUTS; o++) {
+                int sum = 0;
+                for (int i = 0; i < numInputs; i++) {
+                    sum += weights[o * numInputs + i] * inputs[i];
+                }
+                // integer sums are exact, so both kernels must give exactly the same result
+                assertEquals(biases[o] + sum * weightScales[o] * inputScale, outputs[o], kernel.getClass().getSimpleName() + ", width " + numInputs + ", output " + o);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("kernels")
+    public void activationsMatchReference(DenseKernel kernel) {
+        SplittableRandom random = new SplittableRandom(3);
+        for (int count : WIDTHS) {
+            float[] values = randomValues(random, count, 6);
+            values[0] = 60;             // exp(2x) overflows for tanh
+            values[count / 2] = -60;
+            for (ActivationType activation : new ActivationType[] {ActivationType.SIGMOID, ActivationType.TANH, ActivationType.RELU, ActivationType.LEAKY_RELU}) {
+                float[] outputs = values.clone();
+                kernel.activate(activation, outputs, count);
+                for (int i = 0; i < count; i++) {
+                    String where = kernel.getClass().getSimpleName() + ", " + activation + ", width " + count + ", value " + values[i];
+                    assertEquals(reference(activation, values[i]), outputs[i], 1e-6, where);
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("kernels")
+    public void activateChangesOnlyFirstValues(DenseKernel kernel) {
+        float[] values = {-1, 2, -3, 4, -5, 6, -7, 8, -9, 10, -11, 12, -13, 14, -15, 16, -17};
+        float[] outputs = values.clone();
+        kernel.activate(ActivationType.TANH, outputs, 13);
+        for (int i = 13; i < values.length; i++) {
+            assertEquals(values[i], outputs[i]);
+        }
+    }
+
+    private static double reference(ActivationType activation, float x) {
+        switch (activation) {
+            case SIGMOID:
+                return 1 / (1 + Math.exp(-x));
+            case TANH:
+                return Math.tanh(x);
+            case RELU:
+                return Math.max(0, x);
+            case LEAKY_RELU:
+                return x > 0 ? x : DenseKernel.LEAKY_RELU_SLOPE * x;
+            default:
+                return x;
+        }
+    }
+
+    private static float[] randomValues(SplittableRandom random, int count, float range) {
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (float) random.nextDouble(-range, range);
+        }
+        return values;
+    }
+
+    private static byte[] randomBytes(SplittableRandom random, int count) {
+        byte[] values = new byte[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (byte) random.nextInt(-127, 128);
+        }
+        return values;
+    }
+}
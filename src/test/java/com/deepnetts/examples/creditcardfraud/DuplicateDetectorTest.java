@@ -0,0 +1,99 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks that duplicates are found within a chunk and across chunks, and counted in groups by their first occurrence.
+ */
+public class DuplicateDetectorTest {
+
+    private static final String[] COLUMNS = {"Time", "V1", "Amount"};
+
+    private static ColumnChunk chunk(float[]... rows) {
+        float[][] columns = new float[COLUMNS.length][rows.length];
+        for (int r = 0; r < rows.length; r++) {
+            for (int c = 0; c < COLUMNS.length; c++) {
+                columns[c][r] = rows[r][c];
+            }
+        }
+        return new ColumnChunk(COLUMNS, columns, rows.length);
+    }
+
+    @Test
+    public void findsDuplicatesWithinChunk() {
+        DuplicateDetector duplicates = new DuplicateDetector(COLUMNS);
+        int[] kept = duplicates.add(chunk(
+                new float[] {0, 1.5f, 10},
+                new float[] {1, Float.NaN, 20},
+                new float[] {0, 1.5f, 10},
+                new float[] {1, Float.NaN, 20},
+                new float[] {0, -0.0f, 10},
+                new float[] {0, 0.0f, 10},
+                new float[] {0, 1.5f, 10}));
+
+        assertArrayEquals(new int[] {0, 1, 4}, kept);
+        assertEquals(7, duplicates.getRowCount());
+        assertEquals(3, duplicates.getUniqueCount());
+        assertEquals(4, duplicates.getDuplicateCount());
+        assertEquals(3, duplicates.getDuplicateGroupCount());
+        assertArrayEquals(new long[] {2, 1}, duplicates.getGroupSizeCounts(3));
+        assertEquals(0, duplicates.getLargestGroups(1).get(0).getFirstRow());
+        assertEquals(3, duplicates.getLargestGroups(1).get(0).getSize());
+    }
+
+    @Test
+    public void findsDuplicatesAcrossChunks() {
+        DuplicateDetector duplicates = new DuplicateDetector(COLUMNS);
+        assertArrayEquals(new int[] {0, 1}, duplicates.add(chunk(
+                new float[] {0, 1.5f, 10},
+                new float[] {1, 2.5f, 20})));
+        assertArrayEquals(new int[] {1}, duplicates.add(chunk(
+                new float[] {1, 2.5f, 20},
+                new float[] {2, 2.5f, 20},
+                new float[] {0, 1.5f, 10})));
+
+        assertEquals(5, duplicates.getRowCount());
+        assertEquals(3, duplicates.getUniqueCount());
+        assertEquals(2, duplicates.getDuplicateGroupCount());
+        assertEquals(1, duplicates.getLargestGroups(10).get(1).getFirstRow());
+    }
+
+    @Test
+    public void comparesOnlyKeyColumns() {
+        DuplicateDetector replays = new DuplicateDetector(COLUMNS, "V1", "Amount");
+        int[] kept = replays.add(chunk(
+                new float[] {0, 1.5f, 10},
+                new float[] {5, 1.5f, 10},
+                new float[] {9, 1.5f, 11}));
+        assertArrayEquals(new int[] {0, 2}, kept);
+        assertEquals(1, replays.getDuplicateCount());
+    }
+
+    @Test
+    public void keepsDistinctRowsWhenTableGrows() {
+        int rows = 5000;
+        float[][] columns = new float[COLUMNS.length][rows];
+        for (int r = 0; r < rows; r++) {
+            columns[0][r] = r % 2000;
+            columns[1][r] = (r % 2000) * 0.25f;
+            columns[2][r] = 1;
+        }
+        DuplicateDetector duplicates = new DuplicateDetector(COLUMNS);
+        int[] kept = duplicates.add(new ColumnChunk(COLUMNS, columns, rows));
+        assertEquals(2000, kept.length);
+        assertEquals(1999, kept[kept.length - 1]);
+        assertEquals(3000, duplicates.getDuplicateCount());
+        assertEquals(2000, duplicates.getDuplicateGroupCount());
+    }
+
+    @Test
+    public void rejectsChunkWithOtherColumns() {
+        DuplicateDetector duplicates = new DuplicateDetector(COLUMNS);
+        ColumnChunk other = new ColumnChunk(new String[] {"Time", "V2", "Amount"}, new float[3][1], 1);
+        assertThrows(IllegalArgumentException.class, () -> duplicates.add(other));
+    }
+}
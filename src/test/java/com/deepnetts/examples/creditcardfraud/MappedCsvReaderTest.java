@@ -0,0 +1,119 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.tablesaw.api.NumericColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.io.csv.CsvReadOptions;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that MappedCsvReader reads the same values as Tablesaw, rounded to float.
+ */
+public class MappedCsvReaderTest {
+
+    private static final String BALANCED_CSV = "creditcard-balanced.csv";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void readsSameValuesAsTablesaw() throws IOException {
+        assertSameAsTablesaw(Paths.get(BALANCED_CSV));
+    }
+
+    @Test
+    public void readsMissingValuesAndExponents() throws IOException {
+        Path csvFile = tempDir.resolve("missing.csv");
+        Files.writeString(csvFile, "V1,V2,Amount,Class\n"
+                + "1.5e-3,-2.5E+2,NaN,0\n"
+                + ",1e10,12.5,1\n"
+                + "-7.25E-12,NULL,,\n"
+                + "nan,-,0.000000000000123456789,1\n"
+                + "3,4.,\"5\",0\n");
+        assertSameAsTablesaw(csvFile);
+
+        try (MappedCsvReader csvReader = new MappedCsvReader(csvFile, ',', true)) {
+            ColumnChunk chunk = csvReader.readAll();
+            assertEquals(1.5e-3f, chunk.get(0, 0));
+            assertEquals(-250f, chunk.get(0, 1));
+            assertEquals(1e10f, chunk.get(1, 1));
+            assertTrue(Float.isNaN(chunk.get(0, 2)));
+            assertTrue(Float.isNaN(chunk.get(1, 0)));
+            assertTrue(Float.isNaN(chunk.get(2, 1)));
+            assertTrue(Float.isNaN(chunk.get(2, 3)));
+            assertTrue(Float.isNaN(chunk.get(3, 1)));
+        }
+    }
+
+    @Test
+    public void chunksMatchBulkRead() throws IOException {
+        ColumnChunk all;
+        try (MappedCsvReader csvReader = new MappedCsvReader(BALANCED_CSV)) {
+            all = csvReader.readAll();
+        }
+        try (MappedCsvReader csvReader = new MappedCsvReader(BALANCED_CSV)) {
+            int row = 0;
+            for (Iterator<ColumnChunk> chunks = csvReader.chunks(97); chunks.hasNext(); ) {
+                ColumnChunk chunk = chunks.next();
+                for (int r = 0; r < chunk.getRowCount(); r++, row++) {
+                    for (int c = 0; c < all.getColumnCount(); c++) {
+                        assertEquals(all.get(row, c), chunk.get(r, c), "row " + row + ", column " + c);
+                    }
+                }
+            }
+            assertEquals(all.getRowCount(), row);
+        }
+    }
+
+    @Test
+    public void dataPreparationLoadsFloatValues() throws IOException {
+        Table tablesaw = Table.read().csv(BALANCED_CSV);
+        Table table = new DataPreparation(BALANCED_CSV).getData();
+
+        assertEquals(tablesaw.columnNames(), table.columnNames());
+        assertEquals(tablesaw.rowCount(), table.rowCount());
+        for (int c = 0; c < table.columnCount(); c++) {
+            assertEquals(tablesaw.column(c).type(), table.column(c).type(), table.column(c).name());
+            NumericColumn<?> expected = (NumericColumn<?>) tablesaw.column(c);
+            NumericColumn<?> actual = (NumericColumn<?>) table.column(c);
+            for (int r = 0; r < table.rowCount(); r++) {
+                assertEquals((float) expected.getDouble(r), actual.getDouble(r), actual.name() + ", row " + r);
+            }
+        }
+    }
+
+    private static void assertSameAsTablesaw(Path csvFile) throws IOException {
+        Table table = Table.read().usingOptions(CsvReadOptions.builder(csvFile.toFile())
+                .header(true)
+                .missingValueIndicator("NaN", "", " ", "-", "nan", "NULL"));
+        ColumnChunk chunk;
+        try (MappedCsvReader csvReader = new MappedCsvReader(csvFile, ',', true)) {
+            chunk = csvReader.readAll();
+        }
+
+        assertArrayEquals(table.columnNames().toArray(new String[0]), chunk.getColumnNames());
+        assertEquals(table.rowCount(), chunk.getRowCount());
+        for (int c = 0; c < table.columnCount(); c++) {
+            NumericColumn<?> column = (NumericColumn<?>) table.column(c);
+            for (int r = 0; r < table.rowCount(); r++) {
+                String where = column.name() + ", row " + r;
+                if (column.isMissing(r)) {
+                    assertTrue(Float.isNaN(chunk.get(r, c)), where);
+                } else {
+                    assertFalse(Float.isNaN(chunk.get(r, c)), where);
+                    assertEquals((float) column.getDouble(r), chunk.get(r, c), where);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks curves and metrics against values computed by hand for a small set of scores with ties and negative scores.
+ * Distinct scores in descending order, with true and false positives at or above each of them:
+ * <pre>
+ *  score   TP  FP
+ *   0.9     1   0
+ *   0.8     2   1    tie of a fraud and a legitimate transaction
+ *   0.5     2   2
+ *  -0.2     3   3    tie of a fraud and a legitimate transaction
+ *  -1.5     3   4
+ * </pre>
+ */
+public class ScoreEvaluationTest {
+
+    // transactions are not sorted by score, so that evaluation has to sort them
+    private static final float[] SCORES = {-0.2f, 0.8f, -1.5f, 0.9f, 0.5f, 0.8f, -0.2f};
+    private static final float[] LABELS = {0, 1, 0, 1, 0, 0, 1};
+    private static final float[] LOSSES = {0, 10, 0, 100, 0, 0, 1};
+
+    @Test
+    public void countsPointsOfDistinctScores() {
+        ScoreEvaluation evaluation = ScoreEvaluation.of(SCORES, LABELS);
+        assertEquals(3, evaluation.getPositives());
+        assertEquals(4, evaluation.getNegatives());
+        assertEquals(5, evaluation.getPointCount());
+    }
+
+    @Test
+    public void rocAucCountsTiesAsHalf() {
+        // frauds beat 4 + 3.5 + 1.5 of 12 fraud and legitimate pairs
+        assertEquals(0.75, ScoreEvaluation.of(SCORES, LABELS).getRocAuc(), 1e-12);
+    }
+
+    @Test
+    public void prAucIsAveragePrecision() {
+        // precision where recall increases: 1/1, 2/3 and 3/6
+        assertEquals((1 + 2.0 / 3 + 0.5) / 3, ScoreEvaluation.of(SCORES, LABELS).getPrAuc(), 1e-12);
+    }
+
+    @Test
+    public void precisionAtKSplitsTies() {
+        ScoreEvaluation evaluation = ScoreEvaluation.of(SCORES, LABELS);
+        assertEquals(1, evaluation.getPrecisionAtK(1), 1e-12);
+        assertEquals(1.5 / 2, evaluation.getPrecisionAtK(2), 1e-12);
+        assertEquals(2.0 / 3, evaluation.getPrecisionAtK(3), 1e-12);
+        assertEquals(2.5 / 5, evaluation.getPrecisionAtK(5), 1e-12);
+        assertEquals(3.0 / 7, evaluation.getPrecisionAtK(7), 1e-12);
+        assertThrows(IllegalArgumentException.class, () -> evaluation.getPrecisionAtK(8));
+    }
+
+    @Test
+    public void thresholdIncludesEqualScores() {
+        ScoreEvaluation evaluation = ScoreEvaluation.of(SCORES, LABELS);
+        assertCounts(evaluation.at(0.8f), 2, 1, 1, 3);
+        assertCounts(evaluation.at(0.85f), 1, 0, 2, 4);
+        assertCounts(evaluation.at(-0.2f), 3, 3, 0, 1);
+        assertCounts(evaluation.at(-1.5f), 3, 4, 0, 0);
+        assertCounts(evaluation.at(2), 0, 0, 3, 4);
+    }
+
+    @Test
+    public void optimalThresholdMinimizesCostOfLosses() {
+        // flagging nothing costs 111, and thresholds from the highest cost 11, 1 + 5, 1 + 10, 15 and 20
+        ScoreEvaluation.Threshold best = ScoreEvaluation.of(SCORES, LABELS, LOSSES).getOptimalThreshold(1, 5);
+        assertEquals(0.8f, best.getThreshold());
+        assertEquals(6, best.getCost(), 1e-12);
+        assertCounts(best, 2, 1, 1, 3);
+    }
+
+    @Test
+    public void optimalThresholdCanFlagNothing() {
+        ScoreEvaluation evaluation = ScoreEvaluation.of(new float[] {0.9f, 0.1f}, new float[] {0, 1});
+        ScoreEvaluation.Threshold best = evaluation.getOptimalThreshold(1, 10);
+        assertEquals(Math.nextUp(0.9f), best.getThreshold());
+        assertEquals(1, best.getCost(), 1e-12);
+        assertCounts(best, 0, 0, 1, 1);
+    }
+
+    @Test
+    public void curvesStartAtHighestScore() {
+        ScoreEvaluation evaluation = ScoreEvaluation.of(SCORES, LABELS);
+        float[][] roc = evaluation.getRocCurve();
+        assertEquals(6, roc.length);
+        assertArrayEquals(new float[] {0, 0, Math.nextUp(0.9f)}, roc[0]);
+        assertArrayEquals(new float[] {0.25f, 2 / 3f, 0.8f}, roc[2]);
+        assertArrayEquals(new float[] {1, 1, -1.5f}, roc[5]);
+
+        float[][] pr = evaluation.getPrCurve();
+        assertArrayEquals(new float[] {1 / 3f, 1, 0.9f}, pr[0]);
+        assertArrayEquals(new float[] {1, 0.5f, -0.2f}, pr[3]);
+    }
+
+    @Test
+    public void negativeAndPositiveZeroAreTied() {
+        ScoreEvaluation evaluation = ScoreEvaluation.of(new float[] {0.0f, -0.0f, -Float.MIN_VALUE}, new float[] {1, 0, 0});
+        assertEquals(2, evaluation.getPointCount());
+        assertEquals(0.75, evaluation.getRocAuc(), 1e-12);
+    }
+
+    @Test
+    public void rejectsNaNScores() {
+        assertThrows(IllegalArgumentException.class, () -> ScoreEvaluation.of(new float[] {0.5f, Float.NaN}, new float[] {1, 0}));
+    }
+
+    private static void assertCounts(ScoreEvaluation.Threshold threshold, int tp, int fp, int fn, int tn) {
+        assertEquals(tp, threshold.getTruePositives(), "true positives");
+        assertEquals(fp, threshold.getFalsePositives(), "false positives");
+        assertEquals(fn, threshold.getFalseNegatives(), "false negatives");
+        assertEquals(tn, threshold.getTrueNegatives(), "true negatives");
+    }
+}
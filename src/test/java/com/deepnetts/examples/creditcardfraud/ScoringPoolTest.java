@@ -0,0 +1,127 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import deepnetts.net.FeedForwardNetwork;
+import deepnetts.net.layers.activation.ActivationType;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Scores the same transactions concurrently from several submitting threads, mixing batch, single and asynchronous
+ * requests, and checks that every result has exactly the same bits as result of a single threaded classifier.
+ */
+public class ScoringPoolTest {
+
+    private static final int SUBMITTERS = 4;
+    private static final int ROUNDS = 5;
+
+    private static FeedForwardNetwork network;
+    private static float[] batch;
+    private static int rows;
+    private static int numInputs;
+    private static float[] expected;
+
+    @BeforeAll
+    public static void train() {
+        ColumnarDataSet dataSet = TestNetworks.balancedDataSet();
+        network = TestNetworks.trained(dataSet, 32, ActivationType.TANH);
+        rows = dataSet.getRowCount();
+        numInputs = dataSet.getNumInputs();
+        batch = new float[rows * numInputs];
+        for (int r = 0; r < rows; r++) {
+            System.arraycopy(TestNetworks.inputs(dataSet, r), 0, batch, r * numInputs, numInputs);
+        }
+        expected = new float[rows];
+        new FeedForwardNetBatchClassifier(network).classifyBatch(batch, rows, expected);
+    }
+
+    @Test
+    public void concurrentResultsMatchSingleClassifier() throws InterruptedException {
+        try (ScoringPool pool = new ScoringPool(network, null, 3, 16)) {
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            List<Thread> submitters = new ArrayList<>();
+            for (int s = 0; s < SUBMITTERS; s++) {
+                int offset = s;
+                Thread submitter = new Thread(() -> {
+                    try {
+                        for (int round = 0; round < ROUNDS; round++) {
+                            float[] probabilities = new float[rows];
+                            pool.classifyBatch(batch, rows, probabilities);
+                            assertBitsEqual(expected, probabilities, "batch");
+
+                            List<CompletableFuture<Float>> futures = new ArrayList<>();
+                            for (int r = offset; r < rows; r += 7) {
+                                futures.add(pool.submit(transaction(r)));
+                            }
+                            for (int r = offset, i = 0; r < rows; r += 7, i++) {
+                                assertBitsEqual(expected[r], futures.get(i).join(), "submitted row " + r);
+                            }
+                            for (int r = offset + round; r < rows; r += 31) {
+                                assertBitsEqual(expected[r], pool.classify(transaction(r)), "classified row " + r);
+                            }
+                        }
+                    } catch (Throwable ex) {
+                        failure.compareAndSet(null, ex);
+                    }
+                }, "submitter-" + s);
+                submitters.add(submitter);
+                submitter.start();
+            }
+            for (Thread submitter : submitters) {
+                submitter.join();
+            }
+            assertNull(failure.get(), () -> "Submitter failed: " + failure.get());
+            assertTrue(pool.getReplicaCount() >= 2, "replicas: " + pool.getReplicaCount());
+        }
+    }
+
+    @Test
+    public void rawTransactionsMatchSingleClassifier() throws IOException {
+        ColumnChunk data;
+        try (MappedCsvReader csvReader = new MappedCsvReader(TestNetworks.BALANCED_CSV)) {
+            data = csvReader.readAll();
+        }
+        PreprocessingPipeline pipeline = PreprocessingPipeline.builder()
+                                                              .scaling(PreprocessingPipeline.Scaling.MAX)
+                                                              .fit(data);
+        String[] columns = pipeline.getRawColumns();
+        float[] raw = new float[rows * columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            float[] column = data.column(columns[c]);
+            for (int r = 0; r < rows; r++) {
+                raw[r * columns.length + c] = column[r];
+            }
+        }
+        float[] single = new float[rows];
+        new FeedForwardNetBatchClassifier(network, pipeline).classifyBatch(raw, rows, single);
+
+        try (ScoringPool pool = new ScoringPool(network, pipeline, 2, 16)) {
+            float[] probabilities = new float[rows];
+            pool.classifyBatch(raw, rows, probabilities);
+            assertBitsEqual(single, probabilities, "raw batch");
+        }
+    }
+
+    private static float[] transaction(int row) {
+        return Arrays.copyOfRange(batch, row * numInputs, (row + 1) * numInputs);
+    }
+
+    private static void assertBitsEqual(float[] expected, float[] actual, String what) {
+        for (int r = 0; r < expected.length; r++) {
+            assertBitsEqual(expected[r], actual[r], what + ", row " + r);
+        }
+    }
+
+    private static void assertBitsEqual(float expected, float actual, String what) {
+        assertEquals(Float.floatToIntBits(expected), Float.floatToIntBits(actual), () -> what + ": " + actual + ", expected " + expected);
+    }
+}
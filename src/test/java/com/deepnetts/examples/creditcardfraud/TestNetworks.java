@@ -0,0 +1,61 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import deepnetts.net.FeedForwardNetwork;
+import deepnetts.net.layers.activation.ActivationType;
+import deepnetts.net.loss.LossType;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Data and small trained networks shared by tests.
+ */
+final class TestNetworks {
+
+    static final String BALANCED_CSV = "creditcard-balanced.csv";
+
+    private TestNetworks() {
+    }
+
+    /**
+     * Returns creditcard-balanced.csv scaled to max, with Class as target.
+     */
+    static ColumnarDataSet balancedDataSet() {
+        ColumnChunk data;
+        try (MappedCsvReader csvReader = new MappedCsvReader(BALANCED_CSV)) {
+            data = csvReader.readAll();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        PreprocessingPipeline preprocessing = PreprocessingPipeline.builder()
+                                                                   .scaling(PreprocessingPipeline.Scaling.MAX)
+                                                                   .fit(data);
+        return preprocessing.transform(data);
+    }
+
+    /**
+     * Returns network with one hidden layer, trained for a few epochs, so that its weights are not just random initial values.
+     */
+    static FeedForwardNetwork trained(ColumnarDataSet dataSet, int hiddenUnits, ActivationType hiddenActivation) {
+        FeedForwardNetwork neuralNet = FeedForwardNetwork.builder()
+                .addInputLayer(dataSet.getNumInputs())
+                .addFullyConnectedLayer(hiddenUnits, hiddenActivation)
+                .addOutputLayer(1, ActivationType.SIGMOID)
+                .lossFunction(LossType.CROSS_ENTROPY)
+                .randomSeed(123)
+                .build();
+        neuralNet.getTrainer().setStopError(0.01f)
+                              .setStopEpochs(20)
+                              .setLearningRate(0.001f);
+        neuralNet.train(dataSet);
+        return neuralNet;
+    }
+
+    /**
+     * Returns inputs of the row as a new array.
+     */
+    static float[] inputs(ColumnarDataSet dataSet, int row) {
+        float[] transaction = new float[dataSet.getNumInputs()];
+        System.arraycopy(dataSet.getValues(), dataSet.offsetOf(row), transaction, 0, transaction.length);
+        return transaction;
+    }
+}
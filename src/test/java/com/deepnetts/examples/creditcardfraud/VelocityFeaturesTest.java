@@ -0,0 +1,97 @@
+package com.deepnetts.examples.creditcardfraud;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks counts and sums of windows against direct computation over all earlier transactions,
+ * while ring buffer grows and old transactions leave the windows.
+ */
+public class VelocityFeaturesTest {
+
+    private static final int[] WINDOWS = {10, 100};
+
+    @Test
+    public void windowsMatchDirectComputation() {
+        int n = 6000;
+        Random random = new Random(7);
+        float[] times = new float[n];
+        float[] amounts = new float[n];
+        float time = 0;
+        for (int i = 0; i < n; i++) {
+            // dense bursts keep more than 1024 transactions in the longest window, so the ring buffer has to grow
+            time += i % 1500 < 1200 ? random.nextFloat() * 0.1f : random.nextFloat() * 5;
+            times[i] = time;
+            amounts[i] = (float) Math.floor(random.nextFloat() * 500) / 4;
+        }
+
+        VelocityFeatures velocity = new VelocityFeatures(WINDOWS);
+        float[] features = new float[velocity.getNumFeatures()];
+        for (int i = 0; i < n; i++) {
+            velocity.update(times[i], amounts[i], features, 0);
+            for (int w = 0; w < WINDOWS.length; w++) {
+                int count = 0;
+                double sum = 0;
+                for (int j = 0; j < i; j++) {
+                    if (times[j] > times[i] - WINDOWS[w]) {
+                        count++;
+                        sum += amounts[j];
+                    }
+                }
+                String what = "transaction " + i + ", window " + WINDOWS[w];
+                assertEquals(count, features[w * 3], what);
+                assertEquals(sum, features[w * 3 + 1], 1e-3 * Math.max(1, sum), what);
+                assertEquals(count > 0 ? amounts[i] - sum / count : 0, features[w * 3 + 2], 1e-3 * Math.max(1, amounts[i]), what);
+            }
+        }
+    }
+
+    @Test
+    public void emptyWindowsAfterGap() {
+        VelocityFeatures velocity = new VelocityFeatures(WINDOWS);
+        float[] features = new float[velocity.getNumFeatures()];
+        velocity.update(0, 5, features, 0);
+        velocity.update(5, 7, features, 0);
+        assertArrayEquals(new float[] {1, 5, 2, 1, 5, 2}, features);
+        velocity.update(12, 1, features, 0);
+        assertArrayEquals(new float[] {1, 7, -6, 2, 12, -5}, features);
+        velocity.update(500, 3, features, 0);
+        assertArrayEquals(new float[] {0, 0, 0, 0, 0, 0}, features);
+    }
+
+    @Test
+    public void chunksContinueWindows() {
+        float[] times = {0, 1, 2, 3, 4, 5};
+        float[] amounts = {1, 2, 3, 4, 5, 6};
+        VelocityFeatures live = new VelocityFeatures(WINDOWS);
+        VelocityFeatures batch = new VelocityFeatures(WINDOWS);
+        String[] names = {"Time", "Amount"};
+        ColumnChunk first = batch.addTo(new ColumnChunk(names, new float[][] {{0, 1, 2}, {1, 2, 3}}, 3), "Time", "Amount");
+        ColumnChunk second = batch.addTo(new ColumnChunk(names, new float[][] {{3, 4, 5}, {4, 5, 6}}, 3), "Time", "Amount");
+        for (int i = 0; i < times.length; i++) {
+            float[] extended = live.append(new float[] {times[i], amounts[i]}, times[i], amounts[i]);
+            ColumnChunk chunk = i < 3 ? first : second;
+            for (int c = 0; c < extended.length; c++) {
+                assertEquals(chunk.get(i % 3, c), extended[c], "transaction " + i + ", column " + c);
+            }
+        }
+    }
+
+    @Test
+    public void lateTransactionsAreRejectedOrClamped() {
+        VelocityFeatures velocity = new VelocityFeatures(WINDOWS);
+        float[] features = new float[velocity.getNumFeatures()];
+        velocity.update(20, 1, features, 0);
+        assertThrows(IllegalArgumentException.class, () -> velocity.update(5, 1, features, 0));
+
+        velocity.acceptLate(true).update(5, 2, features, 0);
+        velocity.update(25, 4, features, 0);
+        // late transaction was counted at time 20, so both are still in the 10 second window at 25
+        assertEquals(2, features[0]);
+        assertEquals(3, features[1]);
+    }
+}